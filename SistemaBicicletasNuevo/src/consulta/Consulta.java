@@ -0,0 +1,61 @@
+
+package consulta;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Parte común de las consultas: el orden y el límite de los resultados.
+ * Cada subclase agrega sus filtros, que {@link PlanificadorConsultas} usa
+ * para elegir el acceso más barato.
+ *
+ * @param <T> Tipo de las entidades consultadas.
+ * @param <C> Tipo concreto de la consulta, para encadenar llamadas.
+ */
+public abstract class Consulta<T, C extends Consulta<T, C>> {
+    private Comparator<? super T> orden;
+    private long limite = Long.MAX_VALUE;
+
+    /**
+     * Ordena los resultados. Sin orden, los resultados llegan en el orden en
+     * que los entrega el acceso elegido, que no está garantizado.
+     *
+     * @param orden Criterio de orden.
+     * @return Esta misma consulta.
+     */
+    public C ordenarPor(Comparator<? super T> orden) {
+        this.orden = orden;
+        return propia();
+    }
+
+    /**
+     * Limita el número de resultados.
+     *
+     * @param maximo Número máximo de resultados.
+     * @return Esta misma consulta.
+     */
+    public C limite(long maximo) {
+        if (maximo < 0) {
+            throw new IllegalArgumentException("El límite no puede ser negativo: " + maximo);
+        }
+        this.limite = maximo;
+        return propia();
+    }
+
+    Comparator<? super T> getOrden() { return orden; }
+
+    long getLimite() { return limite; }
+
+    /** Devuelve esta consulta con su tipo concreto. */
+    abstract C propia();
+
+    /**
+     * Arma el predicado con todos los filtros, con los valores que tienen
+     * ahora; cambiar la consulta después no afecta al predicado.
+     */
+    abstract Predicate<T> predicado();
+
+    /** Describe cada filtro activo, para explicar el plan. */
+    abstract List<String> describirFiltros();
+}
@@ -0,0 +1,110 @@
+
+package consulta;
+
+import modelo.Bicicleta;
+import modelo.EstadoBicicleta;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Consulta de bicicletas por ID, modelo, estado y estación.
+ */
+public class ConsultaBicicletas extends Consulta<Bicicleta, ConsultaBicicletas> {
+    private String id;
+    private String modelo;
+    private EstadoBicicleta estado;
+    private String estacion;
+
+    /**
+     * Filtra por ID.
+     *
+     * @param id ID de la bicicleta.
+     * @return Esta misma consulta.
+     */
+    public ConsultaBicicletas id(String id) {
+        this.id = id;
+        return this;
+    }
+
+    /**
+     * Filtra por modelo exacto, tal como se registró.
+     *
+     * @param modelo Modelo de bicicleta.
+     * @return Esta misma consulta.
+     */
+    public ConsultaBicicletas modelo(String modelo) {
+        this.modelo = modelo;
+        return this;
+    }
+
+    /**
+     * Filtra por estado.
+     *
+     * @param estado Estado de la bicicleta.
+     * @return Esta misma consulta.
+     */
+    public ConsultaBicicletas estado(EstadoBicicleta estado) {
+        this.estado = estado;
+        return this;
+    }
+
+    /**
+     * Filtra las bicicletas disponibles.
+     *
+     * @return Esta misma consulta.
+     */
+    public ConsultaBicicletas disponibles() {
+        return estado(EstadoBicicleta.DISPONIBLE);
+    }
+
+    /**
+     * Filtra por la estación donde está la bicicleta.
+     *
+     * @param estacion ID de la estación.
+     * @return Esta misma consulta.
+     */
+    public ConsultaBicicletas estacion(String estacion) {
+        this.estacion = estacion;
+        return this;
+    }
+
+    String getId() { return id; }
+
+    String getModelo() { return modelo; }
+
+    EstadoBicicleta getEstado() { return estado; }
+
+    @Override
+    ConsultaBicicletas propia() { return this; }
+
+    @Override
+    Predicate<Bicicleta> predicado() {
+        String id = this.id;
+        String modelo = this.modelo;
+        EstadoBicicleta estado = this.estado;
+        String estacion = this.estacion;
+        return b -> (id == null || id.equals(b.getId()))
+                && (modelo == null || modelo.equals(b.getModelo()))
+                && (estado == null || estado == b.getEstado())
+                && (estacion == null || estacion.equals(b.getEstacion()));
+    }
+
+    @Override
+    List<String> describirFiltros() {
+        List<String> filtros = new ArrayList<>();
+        if (id != null) {
+            filtros.add("id = " + id);
+        }
+        if (modelo != null) {
+            filtros.add("modelo = " + modelo);
+        }
+        if (estado != null) {
+            filtros.add("estado = " + estado);
+        }
+        if (estacion != null) {
+            filtros.add("estación = " + estacion);
+        }
+        return filtros;
+    }
+}
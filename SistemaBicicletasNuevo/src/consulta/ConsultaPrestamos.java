@@ -0,0 +1,136 @@
+
+package consulta;
+
+import modelo.Prestamo;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Consulta de préstamos por ID, usuario, bicicleta, si siguen activos y
+ * rango de fechas de préstamo. Incluye los préstamos archivados.
+ */
+public class ConsultaPrestamos extends Consulta<Prestamo, ConsultaPrestamos> {
+    private String id;
+    private String idUsuario;
+    private String idBicicleta;
+    private Boolean activos;
+    private long desde = Long.MIN_VALUE;
+    private long hasta = Long.MAX_VALUE;
+    private ZoneId zona;
+
+    /**
+     * Filtra por ID.
+     *
+     * @param id ID del préstamo.
+     * @return Esta misma consulta.
+     */
+    public ConsultaPrestamos id(String id) {
+        this.id = id;
+        return this;
+    }
+
+    /**
+     * Filtra los préstamos de un usuario.
+     *
+     * @param idUsuario ID del usuario.
+     * @return Esta misma consulta.
+     */
+    public ConsultaPrestamos usuario(String idUsuario) {
+        this.idUsuario = idUsuario;
+        return this;
+    }
+
+    /**
+     * Filtra los préstamos de una bicicleta.
+     *
+     * @param idBicicleta ID de la bicicleta.
+     * @return Esta misma consulta.
+     */
+    public ConsultaPrestamos bicicleta(String idBicicleta) {
+        this.idBicicleta = idBicicleta;
+        return this;
+    }
+
+    /**
+     * Filtra por si el préstamo sigue activo.
+     *
+     * @param activos {@code true} para los que no se han devuelto, {@code false} para los devueltos.
+     * @return Esta misma consulta.
+     */
+    public ConsultaPrestamos activos(boolean activos) {
+        this.activos = activos;
+        return this;
+    }
+
+    /**
+     * Filtra los préstamos hechos dentro de un rango de fechas.
+     *
+     * @param desde Inicio del rango, incluido.
+     * @param hasta Fin del rango, excluido.
+     * @param zona  Zona horaria en que están expresadas las fechas, normalmente
+     *              la del reloj del servicio de préstamos.
+     * @return Esta misma consulta.
+     */
+    public ConsultaPrestamos entre(LocalDateTime desde, LocalDateTime hasta, ZoneId zona) {
+        this.zona = zona;
+        this.desde = desde.atZone(zona).toInstant().toEpochMilli();
+        this.hasta = hasta.atZone(zona).toInstant().toEpochMilli();
+        return this;
+    }
+
+    String getId() { return id; }
+
+    String getIdUsuario() { return idUsuario; }
+
+    Boolean getActivos() { return activos; }
+
+    @Override
+    ConsultaPrestamos propia() { return this; }
+
+    @Override
+    Predicate<Prestamo> predicado() {
+        String id = this.id;
+        String idUsuario = this.idUsuario;
+        String idBicicleta = this.idBicicleta;
+        Boolean activos = this.activos;
+        long desde = this.desde;
+        long hasta = this.hasta;
+        return p -> (id == null || id.equals(p.getId()))
+                && (idUsuario == null || idUsuario.equals(p.getIdUsuario()))
+                && (idBicicleta == null || idBicicleta.equals(p.getIdBicicleta()))
+                && (activos == null || activos != p.estaDevuelto())
+                && p.getMarcaPrestamo() >= desde && p.getMarcaPrestamo() < hasta;
+    }
+
+    @Override
+    List<String> describirFiltros() {
+        List<String> filtros = new ArrayList<>();
+        if (id != null) {
+            filtros.add("id = " + id);
+        }
+        if (idUsuario != null) {
+            filtros.add("usuario = " + idUsuario);
+        }
+        if (idBicicleta != null) {
+            filtros.add("bicicleta = " + idBicicleta);
+        }
+        if (activos != null) {
+            filtros.add(activos ? "activo" : "devuelto");
+        }
+        if (desde != Long.MIN_VALUE || hasta != Long.MAX_VALUE) {
+            filtros.add("fecha de préstamo en [" + aFecha(desde, zona) + ", " + aFecha(hasta, zona) + ")");
+        }
+        return filtros;
+    }
+
+    private static String aFecha(long marca, ZoneId zona) {
+        if (marca == Long.MIN_VALUE || marca == Long.MAX_VALUE) {
+            return "-";
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(marca), zona).toString();
+    }
+}
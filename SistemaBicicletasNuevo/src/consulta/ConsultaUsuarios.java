@@ -0,0 +1,62 @@
+
+package consulta;
+
+import modelo.Usuario;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Consulta de usuarios por ID y por si tienen un préstamo activo.
+ */
+public class ConsultaUsuarios extends Consulta<Usuario, ConsultaUsuarios> {
+    private String id;
+    private Boolean conPrestamo;
+
+    /**
+     * Filtra por ID.
+     *
+     * @param id ID del usuario.
+     * @return Esta misma consulta.
+     */
+    public ConsultaUsuarios id(String id) {
+        this.id = id;
+        return this;
+    }
+
+    /**
+     * Filtra por si el usuario tiene un préstamo activo.
+     *
+     * @param conPrestamo {@code true} para los que tienen préstamo, {@code false} para los que no.
+     * @return Esta misma consulta.
+     */
+    public ConsultaUsuarios conPrestamo(boolean conPrestamo) {
+        this.conPrestamo = conPrestamo;
+        return this;
+    }
+
+    String getId() { return id; }
+
+    @Override
+    ConsultaUsuarios propia() { return this; }
+
+    @Override
+    Predicate<Usuario> predicado() {
+        String id = this.id;
+        Boolean conPrestamo = this.conPrestamo;
+        return u -> (id == null || id.equals(u.getId()))
+                && (conPrestamo == null || conPrestamo == u.tienePrestamo());
+    }
+
+    @Override
+    List<String> describirFiltros() {
+        List<String> filtros = new ArrayList<>();
+        if (id != null) {
+            filtros.add("id = " + id);
+        }
+        if (conPrestamo != null) {
+            filtros.add("tienePrestamo = " + conPrestamo);
+        }
+        return filtros;
+    }
+}
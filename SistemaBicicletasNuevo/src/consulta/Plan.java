@@ -0,0 +1,129 @@
+
+package consulta;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Plan de ejecución de una consulta: el acceso elegido, los que se
+ * descartaron por más caros y los filtros que se aplican sobre lo leído.
+ *
+ * El plan no lee nada al crearse. {@link #ejecutar()} devuelve un flujo
+ * perezoso: las filas se leen a medida que se consumen, salvo que la
+ * consulta pida un orden, que obliga a leer todas antes de entregar la
+ * primera. Se puede ejecutar varias veces; cada vez lee el estado actual.
+ *
+ * @param <T> Tipo de las entidades consultadas.
+ */
+public class Plan<T> {
+    private final String entidad;
+    private final Acceso<T> acceso;
+    private final List<Acceso<T>> descartados;
+    private final List<String> filtros;
+    private final Predicate<T> predicado;
+    private final Comparator<? super T> orden;
+    private final long limite;
+
+    /**
+     * Forma de leer las entidades candidatas, con su costo estimado en filas leídas.
+     */
+    static final class Acceso<T> {
+        final String descripcion;
+        final long filas;
+        final boolean paralelo;
+        final Supplier<Stream<T>> fuente;
+
+        Acceso(String descripcion, long filas, boolean paralelo, Supplier<Stream<T>> fuente) {
+            this.descripcion = descripcion;
+            this.filas = filas;
+            this.paralelo = paralelo;
+            this.fuente = fuente;
+        }
+    }
+
+    /**
+     * Elige el acceso que lee menos filas; a igual costo, el primero de la lista.
+     */
+    Plan(String entidad, List<Acceso<T>> accesos, Consulta<T, ?> consulta) {
+        Acceso<T> elegido = accesos.get(0);
+        for (Acceso<T> candidato : accesos) {
+            if (candidato.filas < elegido.filas) {
+                elegido = candidato;
+            }
+        }
+        this.entidad = entidad;
+        this.acceso = elegido;
+        this.descartados = new ArrayList<>(accesos);
+        this.descartados.remove(elegido);
+        this.filtros = consulta.describirFiltros();
+        this.predicado = consulta.predicado();
+        this.orden = consulta.getOrden();
+        this.limite = consulta.getLimite();
+    }
+
+    /**
+     * Ejecuta el plan.
+     *
+     * @return Flujo perezoso con los resultados, ya filtrados, ordenados y limitados.
+     */
+    public Stream<T> ejecutar() {
+        Stream<T> resultados = acceso.fuente.get().filter(predicado);
+        if (orden != null) {
+            resultados = resultados.sorted(orden);
+        } else if (acceso.paralelo) {
+            // Sin orden pedido, el límite no necesita respetar el orden de las claves
+            resultados = resultados.unordered();
+        }
+        return limite < Long.MAX_VALUE ? resultados.limit(limite) : resultados;
+    }
+
+    /**
+     * Obtiene la descripción del acceso elegido.
+     *
+     * @return Descripción del acceso.
+     */
+    public String getAcceso() { return acceso.descripcion; }
+
+    /**
+     * Obtiene cuántas filas estima leer el acceso elegido.
+     *
+     * @return Filas estimadas.
+     */
+    public long getFilasEstimadas() { return acceso.filas; }
+
+    /**
+     * Indica si el acceso elegido lee en paralelo.
+     *
+     * @return true si es un recorrido paralelo.
+     */
+    public boolean isParalelo() { return acceso.paralelo; }
+
+    /**
+     * Explica el plan en texto: acceso elegido, filtros, orden, límite y
+     * accesos descartados con su costo.
+     *
+     * @return Descripción de varias líneas.
+     */
+    public String explicar() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Consulta de ").append(entidad).append('\n');
+        sb.append("  acceso: ").append(acceso.descripcion).append(" (~").append(acceso.filas).append(" filas)\n");
+        sb.append("  filtros: ").append(filtros.isEmpty() ? "ninguno" : String.join(", ", filtros)).append('\n');
+        sb.append("  orden: ").append(orden != null ? "sí" : "no");
+        sb.append(", límite: ").append(limite < Long.MAX_VALUE ? String.valueOf(limite) : "ninguno").append('\n');
+        for (Acceso<T> descartado : descartados) {
+            sb.append("  descartado: ").append(descartado.descripcion)
+              .append(" (~").append(descartado.filas).append(" filas)\n");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return explicar();
+    }
+}
@@ -0,0 +1,196 @@
+
+package consulta;
+
+import dao.BicicletaDAO;
+import dao.ConteoModelo;
+import dao.PrestamoDAO;
+import dao.UsuarioDAO;
+import modelo.Bicicleta;
+import modelo.Prestamo;
+import modelo.Usuario;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Planificador de consultas sobre los DAOs de bicicletas, usuarios y
+ * préstamos.
+ *
+ * Para cada consulta reúne los accesos que sus filtros permiten, estima
+ * cuántas filas leería cada uno con lo que los DAOs ya saben (contadores
+ * por modelo, préstamo activo por usuario) y elige el más barato:
+ * <ul>
+ *   <li>Por ID, a través del diccionario de IDs: una fila.</li>
+ *   <li>Bicicletas por modelo exacto: las claves guardadas de ese modelo.</li>
+ *   <li>Préstamos de un usuario: su préstamo activo, o su historial
+ *   (incluido el archivado) si no se piden solo los activos.</li>
+ *   <li>Préstamos activos sin usuario: el préstamo activo de cada usuario,
+ *   sin leer el archivo, donde todos están devueltos.</li>
+ *   <li>Si nada de lo anterior aplica o sale más caro, un recorrido por
+ *   claves, en paralelo a partir de {@value #UMBRAL_PARALELO} filas.</li>
+ * </ul>
+ * Todos los filtros se vuelven a aplicar sobre lo leído, así que el acceso
+ * elegido nunca cambia el resultado, solo su costo.
+ */
+public class PlanificadorConsultas {
+    /** Filas a partir de las cuales un recorrido se hace en paralelo. */
+    public static final int UMBRAL_PARALELO = 10_000;
+    /** Préstamos que se suponen en el historial de un usuario al estimar su costo. */
+    static final int HISTORIAL_ESTIMADO = 32;
+
+    private final BicicletaDAO bicicletaDAO;
+    private final UsuarioDAO usuarioDAO;
+    private final PrestamoDAO prestamoDAO;
+
+    /**
+     * Constructor que recibe los DAOs a consultar.
+     *
+     * @param bicicletaDAO DAO de bicicletas.
+     * @param usuarioDAO   DAO de usuarios.
+     * @param prestamoDAO  DAO de préstamos.
+     */
+    public PlanificadorConsultas(BicicletaDAO bicicletaDAO, UsuarioDAO usuarioDAO, PrestamoDAO prestamoDAO) {
+        this.bicicletaDAO = bicicletaDAO;
+        this.usuarioDAO = usuarioDAO;
+        this.prestamoDAO = prestamoDAO;
+    }
+
+    /**
+     * Planifica una consulta de bicicletas.
+     *
+     * @param consulta Consulta a planificar.
+     * @return El plan, listo para explicar o ejecutar.
+     */
+    public Plan<Bicicleta> planificar(ConsultaBicicletas consulta) {
+        List<Plan.Acceso<Bicicleta>> accesos = new ArrayList<>();
+        String id = consulta.getId();
+        if (id != null) {
+            accesos.add(new Plan.Acceso<>("ID " + id, 1, false,
+                    () -> Stream.ofNullable(bicicletaDAO.buscarPorId(id))));
+        }
+        String modelo = consulta.getModelo();
+        if (modelo != null) {
+            ConteoModelo conteo = bicicletaDAO.obtenerConteo(modelo);
+            accesos.add(new Plan.Acceso<>("claves del modelo " + modelo, conteo != null ? conteo.getTotal() : 0, false,
+                    () -> bicicletaDAO.clavesDeModelo(modelo).mapToObj(bicicletaDAO::buscarPorClave)));
+        }
+        accesos.add(recorrido("bicicletas", bicicletaDAO::limiteClaves, bicicletaDAO::buscarPorClave));
+        return new Plan<>("bicicletas", accesos, consulta);
+    }
+
+    /**
+     * Planifica una consulta de usuarios.
+     *
+     * @param consulta Consulta a planificar.
+     * @return El plan, listo para explicar o ejecutar.
+     */
+    public Plan<Usuario> planificar(ConsultaUsuarios consulta) {
+        List<Plan.Acceso<Usuario>> accesos = new ArrayList<>();
+        String id = consulta.getId();
+        if (id != null) {
+            accesos.add(new Plan.Acceso<>("ID " + id, 1, false,
+                    () -> Stream.ofNullable(usuarioDAO.buscarPorId(id))));
+        }
+        accesos.add(recorrido("usuarios", usuarioDAO::limiteClaves, usuarioDAO::buscarPorClave));
+        return new Plan<>("usuarios", accesos, consulta);
+    }
+
+    /**
+     * Planifica una consulta de préstamos.
+     *
+     * @param consulta Consulta a planificar.
+     * @return El plan, listo para explicar o ejecutar.
+     */
+    public Plan<Prestamo> planificar(ConsultaPrestamos consulta) {
+        List<Plan.Acceso<Prestamo>> accesos = new ArrayList<>();
+        boolean soloActivos = Boolean.TRUE.equals(consulta.getActivos());
+        String id = consulta.getId();
+        if (id != null) {
+            accesos.add(new Plan.Acceso<>("ID " + id, 1, false, () -> {
+                Prestamo prestamo = prestamoDAO.buscarPorId(id);
+                if (prestamo != null) {
+                    return Stream.of(prestamo);
+                }
+                // Los archivados conservan su ID pero solo se encuentran recorriendo el archivo
+                return prestamoDAO.estaArchivado(id) ? flujo(prestamoDAO.recorrerArchivados()) : Stream.empty();
+            }));
+        }
+        String idUsuario = consulta.getIdUsuario();
+        if (idUsuario != null) {
+            Usuario usuario = usuarioDAO.buscarPorId(idUsuario);
+            if (usuario == null) {
+                accesos.add(new Plan.Acceso<>("usuario inexistente " + idUsuario, 0, false, Stream::empty));
+            } else if (soloActivos) {
+                accesos.add(new Plan.Acceso<>("préstamo activo del usuario " + idUsuario, 1, false,
+                        () -> Stream.ofNullable(prestamoDAO.buscarPrestamoActivo(usuario.getClave()))));
+            } else {
+                accesos.add(new Plan.Acceso<>("historial del usuario " + idUsuario, HISTORIAL_ESTIMADO, false,
+                        () -> prestamoDAO.obtenerPorUsuario(usuario.getClave()).stream()));
+            }
+        }
+        if (soloActivos) {
+            accesos.add(recorrido("préstamos activos por usuario", usuarioDAO::limiteClaves,
+                    prestamoDAO::buscarPrestamoActivo));
+        }
+        Plan.Acceso<Prestamo> enMemoria = recorrido("préstamos", prestamoDAO::limiteClaves, prestamoDAO::buscarPorClave);
+        if (soloActivos) {
+            accesos.add(enMemoria);
+        } else {
+            accesos.add(new Plan.Acceso<>(enMemoria.descripcion + " y del archivo", enMemoria.filas, enMemoria.paralelo,
+                    () -> Stream.concat(flujo(prestamoDAO.recorrerArchivados()), enMemoria.fuente.get())));
+        }
+        return new Plan<>("préstamos", accesos, consulta);
+    }
+
+    /**
+     * Recorre una tabla por claves, en paralelo si es grande. El límite de
+     * claves se vuelve a leer en cada ejecución.
+     */
+    private static <T> Plan.Acceso<T> recorrido(String tabla, IntSupplier limite, IntFunction<T> porClave) {
+        int filas = limite.getAsInt();
+        boolean paralelo = filas >= UMBRAL_PARALELO;
+        return new Plan.Acceso<>("recorrido " + (paralelo ? "paralelo " : "") + "de " + tabla, filas, paralelo, () -> {
+            IntStream claves = IntStream.range(0, limite.getAsInt());
+            return (paralelo ? claves.parallel() : claves).mapToObj(porClave).filter(Objects::nonNull);
+        });
+    }
+
+    private static <T> Stream<T> flujo(Iterable<T> iterable) {
+        return StreamSupport.stream(iterable.spliterator(), false);
+    }
+
+    /**
+     * Planifica y ejecuta una consulta de bicicletas.
+     *
+     * @param consulta Consulta a ejecutar.
+     * @return Flujo perezoso con los resultados.
+     */
+    public Stream<Bicicleta> ejecutar(ConsultaBicicletas consulta) {
+        return planificar(consulta).ejecutar();
+    }
+
+    /**
+     * Planifica y ejecuta una consulta de usuarios.
+     *
+     * @param consulta Consulta a ejecutar.
+     * @return Flujo perezoso con los resultados.
+     */
+    public Stream<Usuario> ejecutar(ConsultaUsuarios consulta) {
+        return planificar(consulta).ejecutar();
+    }
+
+    /**
+     * Planifica y ejecuta una consulta de préstamos.
+     *
+     * @param consulta Consulta a ejecutar.
+     * @return Flujo perezoso con los resultados.
+     */
+    public Stream<Prestamo> ejecutar(ConsultaPrestamos consulta) {
+        return planificar(consulta).ejecutar();
+    }
+}
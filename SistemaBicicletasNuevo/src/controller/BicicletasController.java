@@ -1,321 +1,669 @@
-
-package controller;
-
-import java.time.format.DateTimeFormatter;
-import java.util.List;
-
-import javax.swing.JOptionPane;
-
-import dao.BicicletaDAO;
-import dao.PrestamoDAO;
-import dao.UsuarioDAO;
-import modelo.Bicicleta;
-import modelo.Prestamo;
-import modelo.Usuario;
-import servicio.BicicletaService;
-import servicio.PrestamoService;
-import servicio.UsuarioService;
-import ui.AppBicicletas;
-
-/**
- * Controlador principal de la aplicación de préstamo de bicicletas.
- * Maneja la interacción entre la interfaz gráfica (vista) y la lógica de negocio (servicios).
- * 
- * Se encarga de:
- * 
- * - Registrar bicicletas y usuarios
- * - Consultar información
- * - Realizar y registrar préstamos y devoluciones
- * - Mostrar historial de préstamos
- * 
- * @author 
- */
-public class BicicletasController {
-    // Servicios que manejan la lógica de negocio
-    private BicicletaService bicicletaService;
-    private UsuarioService usuarioService;
-    private PrestamoService prestamoService;
-
-    private AppBicicletas view = new AppBicicletas();
-    
-    /**
-     * Constructor principal que inicializa servicios, DAOs, vista y listeners.
-     */
-    public BicicletasController(){
-        view.setVisible(true);
-        // Inicializar DAOs y servicios
-        BicicletaDAO bicicletaDAO = new BicicletaDAO();
-        UsuarioDAO usuarioDAO = new UsuarioDAO();
-        PrestamoDAO prestamoDAO = new PrestamoDAO();
-        
-        bicicletaService = new BicicletaService(bicicletaDAO);
-        usuarioService = new UsuarioService(usuarioDAO);
-        prestamoService = new PrestamoService(prestamoDAO, usuarioDAO, bicicletaDAO);
-
-        view.btnConsultarBici.addActionListener(e -> consultarBicicleta());
-        view.btnBicisDisponibles.addActionListener(e -> mostrarBicicletasDisponibles());
-        view.btnConsultarUsr.addActionListener(e -> consultarUsuario());
-        view.btnHistorial.addActionListener(e -> mostrarHistorialUsuario());
-
-        for(int i = 0; i<view.boton.length; i++){
-            switch (i) {
-                case 0:
-                    view.boton[i].addActionListener(e -> registrarBicicleta());
-                    break;
-                case 1:
-                    view.boton[i].addActionListener(e -> registrarUsuario());
-                    break;
-                case 2:
-                    view.boton[i].addActionListener(e -> realizarPrestamo());
-                    break;
-                case 3:
-                    view.boton[i].addActionListener(e -> registrarDevolucion());
-                    break;
-            }
-        }
-
-        cargarDatosEjemplo();
-    }
-
-    /**
-     * Carga un conjunto de bicicletas y usuarios de ejemplo al iniciar la aplicación.
-     */
-    private void cargarDatosEjemplo() {
-        // Bicicletas de ejemplo
-        bicicletaService.registrarBicicleta("B001", "Montaña");
-        bicicletaService.registrarBicicleta("B002", "Urbana");
-        bicicletaService.registrarBicicleta("B003", "Carrera");
-        
-        // Usuarios de ejemplo
-        usuarioService.registrarUsuario("2225851", "Jonathan Morales");
-        usuarioService.registrarUsuario("U002", "Erick Vargas");
-        usuarioService.registrarUsuario("U003", "Angel Reyes");
-    }
-    
-    /*
-     * Consulta los datos de una bicicleta con base en el ID ingresado
-     * y los muestra en los campos de texto correspondientes.
-     */
-    private void consultarBicicleta() {
-        String id = view.txtIdBicicleta.getText().trim();
-        
-        if (id.isEmpty()) {
-            JOptionPane.showMessageDialog(view, 
-                "Por favor ingrese un ID de bicicleta", 
-                "Campo requerido", JOptionPane.WARNING_MESSAGE);
-            return;
-        }
-        
-        Bicicleta bici = bicicletaService.buscarBicicleta(id);
-        
-        if (bici != null) {
-            view.txtModeloBicicleta.setText(bici.getModelo());
-            view.txtEstadoBicicleta.setText(bici.isDisponible() ? "Disponible" : "Prestada");
-        } else {
-            JOptionPane.showMessageDialog(view, 
-                "Bicicleta no encontrada", 
-                "Error", JOptionPane.ERROR_MESSAGE);
-            limpiarCamposBicicleta();
-        }
-    }
-    
-    /**
-     * Muestra en un área de texto todas las bicicletas que están disponibles actualmente.
-     */
-    private void mostrarBicicletasDisponibles() {
-        List<Bicicleta> disponibles = bicicletaService.obtenerBicicletasDisponibles();
-        StringBuilder sb = new StringBuilder("BICICLETAS DISPONIBLES:\n");
-        
-        if (disponibles.isEmpty()) {
-            sb.append("No hay bicicletas disponibles en este momento.");
-        } else {
-            for (Bicicleta b : disponibles) {
-                sb.append("- ID: ").append(b.getId()).append(", Modelo: ").append(b.getModelo()).append("\n");
-            }
-        }
-        
-        view.txtHistorial.setText(sb.toString());
-    }
-
-    /**
-     * Consulta los datos de un usuario, su estado de préstamo y la bicicleta actual, si aplica.
-     */
-    private void consultarUsuario() {
-        String id = view.txtIdUsuario.getText().trim();
-        
-        if (id.isEmpty()) {
-            JOptionPane.showMessageDialog(view, 
-                "Por favor ingrese un ID de usuario", 
-                "Campo requerido", JOptionPane.WARNING_MESSAGE);
-            return;
-        }
-        
-        Usuario usuario = usuarioService.buscarUsuario(id);
-        
-        if (usuario != null) {
-            view.txtNombreUsuario.setText(usuario.getNombre());
-            view.txtEstadoUsuario.setText(usuario.tienePrestamo() ? "Con préstamo" : "Sin préstamo");
-            
-            if (usuario.tienePrestamo()) {
-                Prestamo prestamo = prestamoService.buscarPrestamoActivo(id);
-                if (prestamo != null) {
-                    Bicicleta bici = bicicletaService.buscarBicicleta(prestamo.getIdBicicleta());
-                    view.txtBicicletaUsuario.setText(bici != null ? bici.getId() + " - " + bici.getModelo() : "No encontrada");
-                }
-            } else {
-                view.txtBicicletaUsuario.setText("");
-            }
-        } else {
-            JOptionPane.showMessageDialog(view, 
-                "Usuario no encontrado", 
-                "Error", JOptionPane.ERROR_MESSAGE);
-            limpiarCamposUsuario();
-        }
-    }
-    
-    /*
-     * Muestra el historial de préstamos realizados por un usuario,
-     * incluyendo fechas y datos de la bicicleta prestada.
-     */
-    private void mostrarHistorialUsuario() {
-        String idUsuario = view.txtIdUsuario.getText().trim();
-        
-        if (idUsuario.isEmpty()) {
-            JOptionPane.showMessageDialog(view, 
-                "Por favor ingrese un ID de usuario", 
-                "Campo requerido", JOptionPane.WARNING_MESSAGE);
-            return;
-        }
-        
-        Usuario usuario = usuarioService.buscarUsuario(idUsuario);
-        if (usuario == null) {
-            JOptionPane.showMessageDialog(view, 
-                "Usuario no encontrado", 
-                "Error", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-        
-        List<Prestamo> historial = prestamoService.obtenerHistorialUsuario(idUsuario);
-        
-        if (historial.isEmpty()) {
-            view.txtHistorial.setText("El usuario no tiene préstamos registrados.");
-            return;
-        }
-        
-        StringBuilder sb = new StringBuilder("HISTORIAL DE PRÉSTAMOS PARA " + usuario.getNombre() + ":\n\n");
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
-        
-        for (Prestamo p : historial) {
-            Bicicleta bici = bicicletaService.buscarBicicleta(p.getIdBicicleta());
-            
-            sb.append("ID Préstamo: ").append(p.getId()).append("\n");
-            sb.append("Bicicleta: ").append(bici.getModelo()).append(" (ID: ").append(bici.getId()).append(")\n");
-            sb.append("Fecha préstamo: ").append(p.getFechaPrestamo().format(formatter)).append("\n");
-            
-            if (p.getFechaDevolucion() != null) {
-                sb.append("Fecha devolución: ").append(p.getFechaDevolucion().format(formatter)).append("\n");
-            } else {
-                sb.append("(Préstamo activo)\n");
-            }
-            
-            sb.append("----------------------------------------\n");
-        }
-        
-        view.txtHistorial.setText(sb.toString());
-    }
-
-    /**
-     * Solicita al usuario el ID y modelo de una nueva bicicleta y la registra.
-     */
-    private void registrarBicicleta() {
-        String id = JOptionPane.showInputDialog(view, "Ingrese ID de la bicicleta:");
-        if (id == null || id.trim().isEmpty()) return;
-        
-        String modelo = JOptionPane.showInputDialog(view, "Ingrese modelo de la bicicleta:");
-        if (modelo == null || modelo.trim().isEmpty()) return;
-        
-        bicicletaService.registrarBicicleta(id, modelo);
-        JOptionPane.showMessageDialog(view, "Bicicleta registrada exitosamente");
-    }
-    
-    /**
-     * Solicita al usuario el ID y nombre de un nuevo usuario y lo registra.
-     */
-    private void registrarUsuario() {
-        String id = JOptionPane.showInputDialog(view, "Ingrese ID del usuario:");
-        if (id == null || id.trim().isEmpty()) return;
-        
-        String nombre = JOptionPane.showInputDialog(view, "Ingrese nombre del usuario:");
-        if (nombre == null || nombre.trim().isEmpty()) return;
-        
-        usuarioService.registrarUsuario(id, nombre);
-        JOptionPane.showMessageDialog(view, "Usuario registrado exitosamente");
-    }
-    
-    /**
-     * Realiza un préstamo de bicicleta para un usuario si cumple las condiciones.
-     */
-    private void realizarPrestamo() {
-        String idUsuario = JOptionPane.showInputDialog(view, "Ingrese ID del usuario:");
-        if (idUsuario == null || idUsuario.trim().isEmpty()) return;
-        
-        String idBicicleta = JOptionPane.showInputDialog(view, "Ingrese ID de la bicicleta:");
-        if (idBicicleta == null || idBicicleta.trim().isEmpty()) return;
-        
-        String idPrestamo = "P" + (1000 + (int)(Math.random() * 9000));
-        
-        boolean exito = prestamoService.realizarPrestamo(idPrestamo, idUsuario, idBicicleta);
-        
-        if (exito) {
-            JOptionPane.showMessageDialog(view, 
-                "Préstamo realizado exitosamente\n" +
-                "ID de préstamo: " + idPrestamo, 
-                "Éxito", JOptionPane.INFORMATION_MESSAGE);
-        } else {
-            JOptionPane.showMessageDialog(view, 
-                "No se pudo realizar el préstamo. Verifique:\n" +
-                "- Que el usuario existe y no tiene préstamos activos\n" +
-                "- Que la bicicleta existe y está disponible", 
-                "Error", JOptionPane.ERROR_MESSAGE);
-        }
-    }
-    
-    /**
-     * Registra la devolución de una bicicleta si el préstamo está activo.
-     */
-    private void registrarDevolucion() {
-        String idPrestamo = JOptionPane.showInputDialog(view, "Ingrese ID del préstamo:");
-        if (idPrestamo == null || idPrestamo.trim().isEmpty()) return;
-        
-        boolean exito = prestamoService.registrarDevolucion(idPrestamo);
-        
-        if (exito) {
-            JOptionPane.showMessageDialog(view, 
-                "Devolución registrada exitosamente", 
-                "Éxito", JOptionPane.INFORMATION_MESSAGE);
-        } else {
-            JOptionPane.showMessageDialog(view, 
-                "No se pudo registrar la devolución. Verifique:\n" +
-                "- Que el ID del préstamo es correcto\n" +
-                "- Que el préstamo no ha sido devuelto previamente", 
-                "Error", JOptionPane.ERROR_MESSAGE);
-        }
-    }
-
-    /**
-     * Limpia los campos de texto relacionados con una bicicleta.
-     */
-    private void limpiarCamposBicicleta() {
-        view.txtModeloBicicleta.setText("");
-        view.txtEstadoBicicleta.setText("");
-    }
-    
-    /**
-     * Limpia los campos de texto relacionados con un usuario.
-     */
-    private void limpiarCamposUsuario() {
-        view.txtNombreUsuario.setText("");
-        view.txtEstadoUsuario.setText("");
-        view.txtBicicletaUsuario.setText("");
-    }
-}
+
+package controller;
+
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+import dao.AlmacenEstados;
+import dao.ArchivoPrestamos;
+import dao.BicicletaDAO;
+import dao.ConteoModelo;
+import dao.DiarioOperaciones;
+import dao.PrestamoDAO;
+import dao.RegistroCambios;
+import dao.UsuarioDAO;
+import modelo.Bicicleta;
+import modelo.EstadoUsuario;
+import modelo.Prestamo;
+import modelo.Reserva;
+import modelo.Usuario;
+import monitoreo.EventoAccion;
+import replicacion.ServidorReplicacion;
+import servicio.ArchivadoService;
+import servicio.BicicletaService;
+import servicio.ControlAdmision;
+import servicio.EscrituraDiferidaService;
+import servicio.ExportacionService;
+import servicio.PrestamoService;
+import servicio.UsuarioService;
+import servicio.VerificadorConsistencia;
+import ui.AppBicicletas;
+import ui.Autocompletado;
+
+/**
+ * Controlador principal de la aplicación de préstamo de bicicletas.
+ * Maneja la interacción entre la interfaz gráfica (vista) y la lógica de negocio (servicios).
+ * 
+ * Se encarga de:
+ * 
+ * - Registrar bicicletas y usuarios
+ * - Consultar información
+ * - Realizar y registrar préstamos y devoluciones
+ * - Mostrar historial de préstamos
+ * 
+ * @author 
+ */
+public class BicicletasController {
+    /** Propiedad del sistema con el puerto en el que se transmite el diario a las réplicas. */
+    public static final String PROPIEDAD_PUERTO_REPLICACION = "bicicletas.replicacion.puerto";
+    /** Propiedad del sistema con el directorio donde se archivan los préstamos antiguos; se vacía al arrancar. */
+    public static final String PROPIEDAD_DIRECTORIO_ARCHIVO = "bicicletas.archivo.directorio";
+    /** Propiedad del sistema con los días desde la devolución tras los que se archiva un préstamo. */
+    public static final String PROPIEDAD_DIAS_ARCHIVO = "bicicletas.archivo.dias";
+    /** Propiedad del sistema con el archivo donde se guarda en diferido el estado de bicicletas y usuarios. */
+    public static final String PROPIEDAD_ARCHIVO_ESTADOS = "bicicletas.estados.archivo";
+    /** Propiedad del sistema con los milisegundos entre escrituras del estado. */
+    public static final String PROPIEDAD_VENTANA_ESTADOS = "bicicletas.estados.ventanaMs";
+    /** Propiedad del sistema con los minutos entre pasadas de la verificación de consistencia en segundo plano. */
+    public static final String PROPIEDAD_MINUTOS_VERIFICACION = "bicicletas.verificacion.minutos";
+    /** Propiedad del sistema que imprime en la salida estándar los tiempos de cada fase del arranque. */
+    public static final String PROPIEDAD_MEDIR_ARRANQUE = "bicicletas.arranque.medir";
+
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    // Servicios que manejan la lógica de negocio
+    private BicicletaService bicicletaService;
+    private UsuarioService usuarioService;
+    private PrestamoService prestamoService;
+    // Los préstamos y reservas de la ventana pasan por el control de admisión
+    private ControlAdmision controlAdmision;
+    private ExportacionService exportacionService;
+
+    private AppBicicletas view;
+    private final RegistroCambios registroCambios = new RegistroCambios();
+    // Se crea la primera vez que se exporta
+    private JFileChooser selectorArchivos;
+    
+    /**
+     * Constructor principal que inicializa servicios, DAOs, vista y listeners,
+     * y carga los datos de ejemplo antes de devolver el control.
+     */
+    public BicicletasController(){
+        this(false, new MedicionArranque());
+    }
+
+    /**
+     * Constructor que permite elegir el modo de arranque.
+     * 
+     * En el arranque rápido la ventana se muestra en cuanto se construye y los
+     * datos se cargan en segundo plano, en paralelo por DAO; mientras tanto las
+     * acciones quedan deshabilitadas. En ambos modos cada fase se registra en
+     * la medición indicada.
+     * 
+     * @param arranqueRapido {@code true} para cargar los datos en segundo plano.
+     * @param medicion       Registro de tiempos de las fases del arranque.
+     */
+    public BicicletasController(boolean arranqueRapido, MedicionArranque medicion){
+        view = new AppBicicletas();
+        medicion.marcar("ventana construida");
+        view.setVisible(true);
+        medicion.marcar("ventana visible");
+        
+        // Inicializar DAOs y servicios; el diario solo se lleva si hay réplicas
+        String puertoReplicacion = System.getProperty(PROPIEDAD_PUERTO_REPLICACION);
+        DiarioOperaciones diario = puertoReplicacion != null ? new DiarioOperaciones() : null;
+        BicicletaDAO bicicletaDAO = new BicicletaDAO(diario, registroCambios);
+        UsuarioDAO usuarioDAO = new UsuarioDAO(diario, registroCambios);
+        ArchivoPrestamos archivo = crearArchivo();
+        PrestamoDAO prestamoDAO = new PrestamoDAO(diario, archivo, registroCambios);
+        
+        bicicletaService = new BicicletaService(bicicletaDAO);
+        usuarioService = new UsuarioService(usuarioDAO);
+        prestamoService = new PrestamoService(prestamoDAO, usuarioDAO, bicicletaDAO);
+        controlAdmision = new ControlAdmision(prestamoService);
+        exportacionService = new ExportacionService(prestamoDAO, usuarioDAO, bicicletaDAO, prestamoService.getZona());
+
+        view.btnConsultarBici.addActionListener(medida("consultarBicicleta", this::consultarBicicleta));
+        view.btnBicisDisponibles.addActionListener(medida("mostrarBicicletasDisponibles", this::mostrarBicicletasDisponibles));
+        view.btnReservarBici.addActionListener(medida("reservarBicicleta", this::reservarBicicleta));
+        view.btnConsultarUsr.addActionListener(medida("consultarUsuario", this::consultarUsuario));
+        view.btnHistorial.addActionListener(medida("mostrarHistorialUsuario", this::mostrarHistorialUsuario));
+        view.btnExportar.addActionListener(medida("exportarDatos", this::exportarDatos));
+
+        new Autocompletado<Usuario>(view.txtIdUsuario,
+                texto -> usuarioService.buscarPorNombre(texto, Autocompletado.MAXIMO_SUGERENCIAS),
+                u -> u.getId() + " - " + u.getNombre(),
+                u -> { view.txtIdUsuario.setText(u.getId()); consultarUsuario(); });
+        new Autocompletado<Bicicleta>(view.txtIdBicicleta,
+                texto -> bicicletaService.buscarPorModelo(texto, Autocompletado.MAXIMO_SUGERENCIAS),
+                b -> b.getId() + " - " + b.getModelo() + " (" + describirEstado(b) + ")",
+                b -> { view.txtIdBicicleta.setText(b.getId()); consultarBicicleta(); });
+
+        for(int i = 0; i<view.boton.length; i++){
+            switch (i) {
+                case 0:
+                    view.boton[i].addActionListener(medida("registrarBicicleta", this::registrarBicicleta));
+                    break;
+                case 1:
+                    view.boton[i].addActionListener(medida("registrarUsuario", this::registrarUsuario));
+                    break;
+                case 2:
+                    view.boton[i].addActionListener(medida("realizarPrestamo", this::realizarPrestamo));
+                    break;
+                case 3:
+                    view.boton[i].addActionListener(medida("registrarDevolucion", this::registrarDevolucion));
+                    break;
+            }
+        }
+
+        if (diario != null) {
+            iniciarReplicacion(diario, bicicletaDAO, usuarioDAO, prestamoDAO, puertoReplicacion);
+        }
+        if (archivo != null) {
+            long dias = Long.getLong(PROPIEDAD_DIAS_ARCHIVO, 30);
+            new ArchivadoService(prestamoDAO, Duration.ofDays(dias)).iniciar(Duration.ofHours(1));
+        }
+        String archivoEstados = System.getProperty(PROPIEDAD_ARCHIVO_ESTADOS);
+        if (archivoEstados != null) {
+            iniciarEscrituraDiferida(archivoEstados, bicicletaDAO, usuarioDAO, prestamoDAO);
+        }
+        Long minutosVerificacion = Long.getLong(PROPIEDAD_MINUTOS_VERIFICACION);
+        if (minutosVerificacion != null) {
+            new VerificadorConsistencia(prestamoService, prestamoDAO, usuarioDAO, bicicletaDAO)
+                    .iniciar(Duration.ofMinutes(minutosVerificacion), VerificadorConsistencia.FRACCION_PREDETERMINADA, true);
+        }
+
+        medicion.marcar("controlador listo");
+
+        if (arranqueRapido) {
+            view.habilitarAcciones(false);
+            view.txtHistorial.setText("Cargando datos...");
+            cargarDatosEnParalelo(medicion);
+        } else {
+            cargarDatosEjemplo();
+            medicion.marcar("datos cargados");
+            imprimirMedicion(medicion);
+        }
+    }
+
+    /**
+     * Carga los datos de cada DAO en paralelo fuera del hilo de eventos y,
+     * al terminar, habilita las acciones de la ventana.
+     */
+    private void cargarDatosEnParalelo(MedicionArranque medicion) {
+        CompletableFuture<Void> bicicletas = CompletableFuture.runAsync(this::cargarBicicletasEjemplo);
+        CompletableFuture<Void> usuarios = CompletableFuture.runAsync(this::cargarUsuariosEjemplo);
+        
+        CompletableFuture.allOf(bicicletas, usuarios).whenComplete((r, error) -> SwingUtilities.invokeLater(() -> {
+            medicion.marcar("datos cargados");
+            view.habilitarAcciones(true);
+            view.txtHistorial.setText(error == null ? "" : "Error al cargar los datos: " + error.getMessage());
+            medicion.marcar("acciones habilitadas");
+            imprimirMedicion(medicion);
+        }));
+    }
+
+    /**
+     * Imprime los tiempos del arranque si se pidió con {@link #PROPIEDAD_MEDIR_ARRANQUE}.
+     */
+    private static void imprimirMedicion(MedicionArranque medicion) {
+        if (Boolean.getBoolean(PROPIEDAD_MEDIR_ARRANQUE)) {
+            System.out.println(medicion.resumen());
+        }
+    }
+
+    /**
+     * Crea el almacén frío de préstamos si se configuró su directorio.
+     */
+    private ArchivoPrestamos crearArchivo() {
+        String directorio = System.getProperty(PROPIEDAD_DIRECTORIO_ARCHIVO);
+        if (directorio == null) {
+            return null;
+        }
+        try {
+            return new ArchivoPrestamos(Paths.get(directorio));
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(view, 
+                "No se pudo preparar el archivo de préstamos en " + directorio + ": " + e.getMessage(), 
+                "Error", JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
+    }
+
+    /**
+     * Empieza a guardar en segundo plano el estado de bicicletas y usuarios.
+     * Al cerrar la aplicación se escribe lo que quede pendiente.
+     */
+    private void iniciarEscrituraDiferida(String archivoEstados, BicicletaDAO bicicletaDAO,
+            UsuarioDAO usuarioDAO, PrestamoDAO prestamoDAO) {
+        try {
+            AlmacenEstados almacen = AlmacenEstados.crear(Paths.get(archivoEstados));
+            EscrituraDiferidaService escritura = new EscrituraDiferidaService(
+                    registroCambios, bicicletaDAO, usuarioDAO, prestamoDAO, almacen);
+            escritura.iniciar(Duration.ofMillis(Long.getLong(PROPIEDAD_VENTANA_ESTADOS, 1000)));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    escritura.detener();
+                    almacen.cerrar();
+                } catch (IOException e) {
+                    System.err.println("No se pudo guardar el estado pendiente: " + e.getMessage());
+                }
+            }, "escritura-diferida-cierre"));
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(view, 
+                "No se pudo abrir el archivo de estados " + archivoEstados + ": " + e.getMessage(), 
+                "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Abre el puerto de replicación para que procesos seguidores reciban el diario.
+     */
+    private void iniciarReplicacion(DiarioOperaciones diario, BicicletaDAO bicicletaDAO, UsuarioDAO usuarioDAO,
+            PrestamoDAO prestamoDAO, String puerto) {
+        try {
+            new ServidorReplicacion(diario, bicicletaDAO, usuarioDAO, prestamoDAO, Integer.parseInt(puerto.trim())).iniciar();
+        } catch (IOException | NumberFormatException e) {
+            JOptionPane.showMessageDialog(view, 
+                "No se pudo iniciar la replicación en el puerto " + puerto + ": " + e.getMessage(), 
+                "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Obtiene el registro de cambios de los DAOs, para que otros sistemas
+     * consuman los cambios por incrementos con {@link RegistroCambios#cambiosDesde(long)}.
+     *
+     * @return El registro de cambios de la aplicación.
+     */
+    public RegistroCambios getRegistroCambios() {
+        return registroCambios;
+    }
+
+    /**
+     * Envuelve el manejador de un botón para que emita un {@link EventoAccion}
+     * de JFR con su duración en el hilo de Swing y los IDs escritos en la
+     * ventana en ese momento.
+     *
+     * @param accion    Nombre de la acción.
+     * @param manejador Código que atiende el botón.
+     * @return El oyente a registrar en el botón.
+     */
+    private ActionListener medida(String accion, Runnable manejador) {
+        return e -> {
+            EventoAccion evento = new EventoAccion(accion);
+            boolean completada = false;
+            try {
+                manejador.run();
+                completada = true;
+            } finally {
+                evento.terminar(view.txtIdUsuario.getText(), view.txtIdBicicleta.getText(), completada ? 1 : 0);
+            }
+        };
+    }
+
+    /**
+     * Carga un conjunto de bicicletas y usuarios de ejemplo al iniciar la aplicación.
+     */
+    private void cargarDatosEjemplo() {
+        cargarBicicletasEjemplo();
+        cargarUsuariosEjemplo();
+    }
+
+    /**
+     * Registra las bicicletas de ejemplo.
+     */
+    private void cargarBicicletasEjemplo() {
+        bicicletaService.registrarBicicleta("B001", "Montaña");
+        bicicletaService.registrarBicicleta("B002", "Urbana");
+        bicicletaService.registrarBicicleta("B003", "Carrera");
+    }
+
+    /**
+     * Registra los usuarios de ejemplo.
+     */
+    private void cargarUsuariosEjemplo() {
+        usuarioService.registrarUsuario("2225851", "Jonathan Morales");
+        usuarioService.registrarUsuario("U002", "Erick Vargas");
+        usuarioService.registrarUsuario("U003", "Angel Reyes");
+    }
+    
+    /*
+     * Consulta los datos de una bicicleta con base en el ID ingresado
+     * y los muestra en los campos de texto correspondientes.
+     */
+    private void consultarBicicleta() {
+        String id = view.txtIdBicicleta.getText().trim();
+        
+        if (id.isEmpty()) {
+            JOptionPane.showMessageDialog(view, 
+                "Por favor ingrese un ID de bicicleta", 
+                "Campo requerido", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        Bicicleta bici = bicicletaService.buscarBicicleta(id);
+        
+        if (bici != null) {
+            view.txtModeloBicicleta.setText(bici.getModelo());
+            view.txtEstadoBicicleta.setText(describirEstado(bici));
+        } else {
+            JOptionPane.showMessageDialog(view, 
+                "Bicicleta no encontrada", 
+                "Error", JOptionPane.ERROR_MESSAGE);
+            limpiarCamposBicicleta();
+        }
+    }
+    
+    /**
+     * Aparta la bicicleta indicada en el campo de ID para el usuario que se solicite.
+     */
+    private void reservarBicicleta() {
+        String idBicicleta = view.txtIdBicicleta.getText().trim();
+        
+        if (idBicicleta.isEmpty()) {
+            JOptionPane.showMessageDialog(view, 
+                "Por favor ingrese un ID de bicicleta", 
+                "Campo requerido", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        String idUsuario = JOptionPane.showInputDialog(view, "Ingrese ID del usuario:");
+        if (idUsuario == null || idUsuario.trim().isEmpty()) return;
+        
+        boolean exito = controlAdmision.reservarBicicleta(null, idUsuario, idBicicleta);
+        
+        if (exito) {
+            JOptionPane.showMessageDialog(view, 
+                "Bicicleta reservada por " + PrestamoService.DURACION_RESERVA.toMinutes() + " minutos", 
+                "Éxito", JOptionPane.INFORMATION_MESSAGE);
+            consultarBicicleta();
+        } else {
+            JOptionPane.showMessageDialog(view, 
+                "No se pudo reservar la bicicleta. Verifique:\n" +
+                "- Que el usuario existe y no tiene préstamos ni reservas activas\n" +
+                "- Que la bicicleta existe y está disponible", 
+                "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    /**
+     * Devuelve el texto que describe el estado actual de una bicicleta.
+     */
+    private String describirEstado(Bicicleta bici) {
+        switch (bici.getEstado()) {
+            case DISPONIBLE:
+                return "Disponible";
+            case RESERVADA:
+                Reserva reserva = prestamoService.buscarReserva(bici.getId());
+                return reserva != null ? "Reservada por " + reserva.getIdUsuario() : "Reservada";
+            default:
+                return "Prestada";
+        }
+    }
+    
+    /**
+     * Muestra en un área de texto todas las bicicletas que están disponibles actualmente.
+     */
+    private void mostrarBicicletasDisponibles() {
+        List<Bicicleta> disponibles = bicicletaService.obtenerBicicletasDisponibles();
+        StringBuilder sb = new StringBuilder("BICICLETAS DISPONIBLES:\n");
+        
+        if (disponibles.isEmpty()) {
+            sb.append("No hay bicicletas disponibles en este momento.");
+        } else {
+            for (Bicicleta b : disponibles) {
+                sb.append("- ID: ").append(b.getId()).append(", Modelo: ").append(b.getModelo()).append("\n");
+            }
+        }
+        
+        sb.append("\nRESUMEN POR MODELO:\n");
+        for (ConteoModelo conteo : bicicletaService.obtenerConteosPorModelo()) {
+            sb.append("- ").append(conteo.getModelo()).append(": ")
+              .append(conteo.getDisponibles()).append(" de ").append(conteo.getTotal()).append(" disponibles\n");
+        }
+        
+        view.txtHistorial.setText(sb.toString());
+    }
+
+    /**
+     * Consulta los datos de un usuario, su estado de préstamo y la bicicleta actual, si aplica.
+     */
+    private void consultarUsuario() {
+        String id = view.txtIdUsuario.getText().trim();
+        
+        if (id.isEmpty()) {
+            JOptionPane.showMessageDialog(view, 
+                "Por favor ingrese un ID de usuario", 
+                "Campo requerido", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        // Una sola lectura de la vista de estados; no se buscan préstamo ni bicicleta por separado
+        EstadoUsuario estado = prestamoService.consultarEstadoUsuario(id);
+        
+        if (estado != null) {
+            view.txtNombreUsuario.setText(estado.getNombre());
+            
+            if (estado.tienePrestamo()) {
+                view.txtEstadoUsuario.setText("Con préstamo desde " + estado.getFechaPrestamo(prestamoService.getZona()).format(FORMATO_FECHA));
+                view.txtBicicletaUsuario.setText(estado.getIdBicicleta() + " - " + estado.getModeloBicicleta());
+            } else {
+                view.txtEstadoUsuario.setText("Sin préstamo");
+                view.txtBicicletaUsuario.setText("");
+            }
+        } else {
+            JOptionPane.showMessageDialog(view, 
+                "Usuario no encontrado", 
+                "Error", JOptionPane.ERROR_MESSAGE);
+            limpiarCamposUsuario();
+        }
+    }
+    
+    /*
+     * Muestra el historial de préstamos realizados por un usuario,
+     * incluyendo fechas y datos de la bicicleta prestada.
+     */
+    private void mostrarHistorialUsuario() {
+        String idUsuario = view.txtIdUsuario.getText().trim();
+        
+        if (idUsuario.isEmpty()) {
+            JOptionPane.showMessageDialog(view, 
+                "Por favor ingrese un ID de usuario", 
+                "Campo requerido", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        Usuario usuario = usuarioService.buscarUsuario(idUsuario);
+        if (usuario == null) {
+            JOptionPane.showMessageDialog(view, 
+                "Usuario no encontrado", 
+                "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        List<Prestamo> historial = prestamoService.obtenerHistorialUsuario(idUsuario);
+        
+        if (historial.isEmpty()) {
+            view.txtHistorial.setText("El usuario no tiene préstamos registrados.");
+            return;
+        }
+        
+        StringBuilder sb = new StringBuilder("HISTORIAL DE PRÉSTAMOS PARA " + usuario.getNombre() + ":\n\n");
+        
+        ZoneId zona = prestamoService.getZona();
+        for (Prestamo p : historial) {
+            Bicicleta bici = bicicletaService.buscarBicicletaPorClave(p.getClaveBicicleta());
+            
+            sb.append("ID Préstamo: ").append(p.getId()).append("\n");
+            sb.append("Bicicleta: ").append(bici.getModelo()).append(" (ID: ").append(bici.getId()).append(")\n");
+            sb.append("Fecha préstamo: ").append(p.getFechaPrestamo(zona).format(FORMATO_FECHA)).append("\n");
+            
+            if (p.getFechaDevolucion(zona) != null) {
+                sb.append("Fecha devolución: ").append(p.getFechaDevolucion(zona).format(FORMATO_FECHA)).append("\n");
+            } else {
+                sb.append("(Préstamo activo)\n");
+            }
+            
+            sb.append("----------------------------------------\n");
+        }
+        
+        view.txtHistorial.setText(sb.toString());
+    }
+
+    /**
+     * Exporta a un archivo el historial completo, el historial del usuario
+     * indicado o la disponibilidad de bicicletas, en CSV o JSON Lines.
+     */
+    private void exportarDatos() {
+        String[] reportes = {"Historial completo", "Historial del usuario", "Disponibilidad"};
+        int reporte = JOptionPane.showOptionDialog(view, "Seleccione el reporte a exportar:", "Exportar",
+                JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, reportes, reportes[0]);
+        if (reporte < 0) return;
+        
+        String idUsuario = view.txtIdUsuario.getText().trim();
+        if (reporte == 1 && idUsuario.isEmpty()) {
+            JOptionPane.showMessageDialog(view, 
+                "Por favor ingrese un ID de usuario", 
+                "Campo requerido", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        String[] formatos = {"CSV", "JSON Lines"};
+        int formato = JOptionPane.showOptionDialog(view, "Seleccione el formato:", "Exportar",
+                JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, formatos, formatos[0]);
+        if (formato < 0) return;
+        ExportacionService.Formato seleccionado = formato == 0 ? ExportacionService.Formato.CSV : ExportacionService.Formato.JSONL;
+        
+        if (selectorArchivos == null) {
+            selectorArchivos = new JFileChooser();
+        }
+        JFileChooser selector = selectorArchivos;
+        selector.setSelectedFile(new File(formato == 0 ? "reporte.csv" : "reporte.jsonl"));
+        if (selector.showSaveDialog(view) != JFileChooser.APPROVE_OPTION) return;
+        
+        try {
+            long total;
+            switch (reporte) {
+                case 0:
+                    total = exportacionService.exportarHistorial(selector.getSelectedFile().toPath(), seleccionado);
+                    break;
+                case 1:
+                    total = exportacionService.exportarHistorialUsuario(idUsuario, selector.getSelectedFile().toPath(), seleccionado);
+                    break;
+                default:
+                    total = exportacionService.exportarDisponibilidad(selector.getSelectedFile().toPath(), seleccionado);
+            }
+            
+            if (total < 0) {
+                JOptionPane.showMessageDialog(view, 
+                    "Usuario no encontrado", 
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(view, 
+                    "Exportación completada: " + total + " registros", 
+                    "Éxito", JOptionPane.INFORMATION_MESSAGE);
+            }
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(view, 
+                "No se pudo exportar: " + ex.getMessage(), 
+                "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Solicita al usuario el ID y modelo de una nueva bicicleta y la registra.
+     */
+    private void registrarBicicleta() {
+        String id = JOptionPane.showInputDialog(view, "Ingrese ID de la bicicleta:");
+        if (id == null || id.trim().isEmpty()) return;
+        
+        String modelo = JOptionPane.showInputDialog(view, "Ingrese modelo de la bicicleta:");
+        if (modelo == null || modelo.trim().isEmpty()) return;
+        
+        bicicletaService.registrarBicicleta(id, modelo);
+        JOptionPane.showMessageDialog(view, "Bicicleta registrada exitosamente");
+    }
+    
+    /**
+     * Solicita al usuario el ID y nombre de un nuevo usuario y lo registra.
+     */
+    private void registrarUsuario() {
+        String id = JOptionPane.showInputDialog(view, "Ingrese ID del usuario:");
+        if (id == null || id.trim().isEmpty()) return;
+        
+        String nombre = JOptionPane.showInputDialog(view, "Ingrese nombre del usuario:");
+        if (nombre == null || nombre.trim().isEmpty()) return;
+        
+        usuarioService.registrarUsuario(id, nombre);
+        JOptionPane.showMessageDialog(view, "Usuario registrado exitosamente");
+    }
+    
+    /**
+     * Realiza un préstamo de bicicleta para un usuario si cumple las condiciones.
+     */
+    private void realizarPrestamo() {
+        String idUsuario = JOptionPane.showInputDialog(view, "Ingrese ID del usuario:");
+        if (idUsuario == null || idUsuario.trim().isEmpty()) return;
+        
+        String idBicicleta = JOptionPane.showInputDialog(view, "Ingrese ID de la bicicleta:");
+        if (idBicicleta == null || idBicicleta.trim().isEmpty()) return;
+        
+        String idPrestamo = "P" + (1000 + (int)(Math.random() * 9000));
+        
+        boolean exito = controlAdmision.realizarPrestamo(null, idPrestamo, idUsuario, idBicicleta);
+        
+        if (exito) {
+            JOptionPane.showMessageDialog(view, 
+                "Préstamo realizado exitosamente\n" +
+                "ID de préstamo: " + idPrestamo, 
+                "Éxito", JOptionPane.INFORMATION_MESSAGE);
+        } else {
+            JOptionPane.showMessageDialog(view, 
+                "No se pudo realizar el préstamo. Verifique:\n" +
+                "- Que el usuario existe y no tiene préstamos activos\n" +
+                "- Que la bicicleta existe y está disponible", 
+                "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    /**
+     * Registra la devolución de una bicicleta si el préstamo está activo.
+     */
+    private void registrarDevolucion() {
+        String idPrestamo = JOptionPane.showInputDialog(view, "Ingrese ID del préstamo:");
+        if (idPrestamo == null || idPrestamo.trim().isEmpty()) return;
+        
+        boolean exito = prestamoService.registrarDevolucion(idPrestamo);
+        
+        if (exito) {
+            JOptionPane.showMessageDialog(view, 
+                "Devolución registrada exitosamente", 
+                "Éxito", JOptionPane.INFORMATION_MESSAGE);
+        } else {
+            JOptionPane.showMessageDialog(view, 
+                "No se pudo registrar la devolución. Verifique:\n" +
+                "- Que el ID del préstamo es correcto\n" +
+                "- Que el préstamo no ha sido devuelto previamente", 
+                "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Limpia los campos de texto relacionados con una bicicleta.
+     */
+    private void limpiarCamposBicicleta() {
+        view.txtModeloBicicleta.setText("");
+        view.txtEstadoBicicleta.setText("");
+    }
+    
+    /**
+     * Limpia los campos de texto relacionados con un usuario.
+     */
+    private void limpiarCamposUsuario() {
+        view.txtNombreUsuario.setText("");
+        view.txtEstadoUsuario.setText("");
+        view.txtBicicletaUsuario.setText("");
+    }
+}
@@ -0,0 +1,53 @@
+
+package controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registra cuánto tarda cada fase del arranque de la aplicación, medido desde
+ * que se crea el objeto, para dar seguimiento al tiempo hasta la primera
+ * interacción posible.
+ */
+public class MedicionArranque {
+    private final long inicio = System.nanoTime();
+    private final List<String> fases = new ArrayList<>();
+    private final List<Long> tiempos = new ArrayList<>();
+
+    /**
+     * Registra que terminó una fase del arranque.
+     *
+     * @param fase Nombre de la fase.
+     */
+    public synchronized void marcar(String fase) {
+        fases.add(fase);
+        tiempos.add(System.nanoTime() - inicio);
+    }
+
+    /**
+     * Obtiene los milisegundos transcurridos hasta una fase registrada.
+     *
+     * @param fase Nombre de la fase.
+     * @return Milisegundos desde el inicio, o -1 si la fase no se ha registrado.
+     */
+    public synchronized long milisegundosHasta(String fase) {
+        int i = fases.indexOf(fase);
+        return i >= 0 ? tiempos.get(i) / 1_000_000 : -1;
+    }
+
+    /**
+     * Devuelve un resumen de una línea con todas las fases y sus tiempos.
+     *
+     * @return Resumen de la forma {@code fase=12ms, fase=30ms}.
+     */
+    public synchronized String resumen() {
+        StringBuilder sb = new StringBuilder("Arranque: ");
+        for (int i = 0; i < fases.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(fases.get(i)).append('=').append(tiempos.get(i) / 1_000_000).append("ms");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,296 @@
+
+package dao;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Copia en disco del estado de bicicletas y usuarios, escrita por lotes.
+ *
+ * El archivo es una secuencia de lotes. Cada lote lleva la última secuencia
+ * del {@link RegistroCambios} que incluye, los estados nuevos y un CRC32 al
+ * final. Se agrega con una sola escritura y se fuerza a disco antes de
+ * aceptar el siguiente, así que el archivo siempre refleja el estado tal como
+ * era en alguna secuencia. Un lote cortado por una caída falla la
+ * comprobación al abrir el archivo y se descarta entero: nunca quedan
+ * aplicados la mitad de sus cambios.
+ *
+ * Cuando el archivo crece más de {@value #UMBRAL_COMPACTACION} bytes por
+ * encima del tamaño del estado, se reescribe con un solo lote en un archivo
+ * temporal que luego reemplaza al original.
+ *
+ * El almacén guarda una sola ejecución: las secuencias del registro de
+ * cambios vuelven a empezar en cada arranque. Para escribir se usa
+ * {@link #crear(Path)}, que aparta la copia de la ejecución anterior; con
+ * {@link #abrir(Path)} se lee una copia existente, por ejemplo esa anterior.
+ * La aplicación no restaura estos estados al arrancar: las bicicletas y los
+ * usuarios se cargan de nuevo y los préstamos no se guardan aquí, así que
+ * los estados solos contradirían a los préstamos.
+ *
+ * Formato: cabecera {@code BICIEST1} y, por lote, su longitud, la secuencia,
+ * el número de entradas, cada entrada (tipo, ID y valor) y el CRC32.
+ */
+public class AlmacenEstados {
+    private static final long CABECERA = 0x4249434945535431L; // "BICIEST1"
+    private static final int UMBRAL_COMPACTACION = 4 * 1024 * 1024;
+    private static final byte BICICLETA = 'B';
+    private static final byte USUARIO = 'U';
+
+    private final Path archivo;
+    private FileChannel canal;
+    private final Map<String, String> estadosBicicletas = new HashMap<>();
+    private final Map<String, Boolean> prestamosUsuarios = new HashMap<>();
+    private long ultimaSecuencia;
+    private long lotesEscritos;
+    private long bytesEstado;
+
+    private AlmacenEstados(Path archivo) {
+        this.archivo = archivo;
+    }
+
+    /**
+     * Crea un almacén vacío para una ejecución nueva. Si el archivo ya existe,
+     * se conserva renombrado con la extensión {@code .anterior}, reemplazando
+     * a la copia apartada antes.
+     *
+     * @param archivo Archivo del almacén.
+     * @return El almacén vacío, listo para recibir lotes.
+     * @throws IOException Si no se puede apartar la copia anterior o crear el archivo.
+     */
+    public static AlmacenEstados crear(Path archivo) throws IOException {
+        if (Files.exists(archivo)) {
+            Files.move(archivo, archivo.resolveSibling(archivo.getFileName() + ".anterior"),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        return abrir(archivo);
+    }
+
+    /**
+     * Abre el almacén, o lo crea vacío si el archivo no existe. Los lotes
+     * completos se cargan en memoria y un lote final incompleto se elimina.
+     *
+     * @param archivo Archivo del almacén.
+     * @return El almacén listo para recibir lotes.
+     * @throws IOException Si el archivo no es un almacén o no se puede leer.
+     */
+    public static AlmacenEstados abrir(Path archivo) throws IOException {
+        AlmacenEstados almacen = new AlmacenEstados(archivo);
+        almacen.canal = FileChannel.open(archivo, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (almacen.canal.size() == 0) {
+            escribirTodo(almacen.canal, ByteBuffer.allocate(8).putLong(0, CABECERA));
+            almacen.canal.force(true);
+        } else {
+            almacen.recuperar();
+        }
+        return almacen;
+    }
+
+    private void recuperar() throws IOException {
+        ByteBuffer cabecera = leer(0, 8);
+        if (cabecera == null || cabecera.getLong() != CABECERA) {
+            throw new IOException("No es un almacén de estados: " + archivo);
+        }
+        long posicion = 8;
+        ByteBuffer longitud;
+        while ((longitud = leer(posicion, 4)) != null) {
+            int bytes = longitud.getInt();
+            ByteBuffer lote = bytes >= 16 ? leer(posicion + 4, bytes) : null;
+            if (lote == null) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(lote.array(), 0, bytes - 4);
+            if ((int) crc.getValue() != lote.getInt(bytes - 4)) {
+                break;
+            }
+            aplicar(new DataInputStream(new ByteArrayInputStream(lote.array(), 0, bytes - 4)));
+            posicion += 4 + bytes;
+        }
+        // Lo que sigue al último lote válido es una escritura interrumpida
+        canal.truncate(posicion);
+        canal.position(posicion);
+        canal.force(true);
+    }
+
+    private void aplicar(DataInputStream lote) throws IOException {
+        ultimaSecuencia = lote.readLong();
+        int entradas = lote.readInt();
+        for (int i = 0; i < entradas; i++) {
+            byte tipo = lote.readByte();
+            String id = lote.readUTF();
+            String valor = lote.readUTF();
+            if (tipo == BICICLETA) {
+                estadosBicicletas.put(id, valor);
+            } else {
+                prestamosUsuarios.put(id, Boolean.valueOf(valor));
+            }
+        }
+    }
+
+    /** Lee bytes del archivo, o devuelve null si el archivo termina antes. */
+    private ByteBuffer leer(long desde, int bytes) throws IOException {
+        if (desde + bytes > canal.size()) {
+            return null;
+        }
+        ByteBuffer bufer = ByteBuffer.allocate(bytes);
+        while (bufer.hasRemaining()) {
+            if (canal.read(bufer, desde + bufer.position()) < 0) {
+                return null;
+            }
+        }
+        bufer.flip();
+        return bufer;
+    }
+
+    /**
+     * Agrega un lote de estados y lo fuerza a disco antes de volver. Si la
+     * escritura falla, el archivo se recorta a como estaba antes del lote,
+     * para que un reintento no quede detrás de un lote a medias.
+     *
+     * @param secuencia    Última secuencia del registro de cambios incluida en el lote.
+     * @param bicicletas   Estado nuevo de cada bicicleta modificada.
+     * @param usuarios     Si cada usuario modificado tiene préstamo activo.
+     * @throws IOException Si ocurre un error al escribir.
+     */
+    public synchronized void escribirLote(long secuencia, Map<String, String> bicicletas,
+            Map<String, Boolean> usuarios) throws IOException {
+        long inicio = canal.position();
+        try {
+            escribirTodo(canal, ByteBuffer.wrap(codificar(secuencia, bicicletas, usuarios)));
+            canal.force(false);
+        } catch (IOException e) {
+            // La recuperación se detiene en el primer lote dañado y descartaría todo lo posterior
+            try {
+                canal.truncate(inicio);
+                canal.position(inicio);
+            } catch (IOException recorte) {
+                e.addSuppressed(recorte);
+            }
+            throw e;
+        }
+        estadosBicicletas.putAll(bicicletas);
+        prestamosUsuarios.putAll(usuarios);
+        ultimaSecuencia = secuencia;
+        lotesEscritos++;
+
+        if (canal.size() > bytesEstado + UMBRAL_COMPACTACION) {
+            compactar();
+        }
+    }
+
+    /**
+     * Reescribe el archivo con un único lote que contiene el estado actual.
+     */
+    private void compactar() throws IOException {
+        byte[] estado = codificar(ultimaSecuencia, estadosBicicletas, prestamosUsuarios);
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        try (FileChannel nuevo = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            escribirTodo(nuevo, ByteBuffer.allocate(8).putLong(0, CABECERA));
+            escribirTodo(nuevo, ByteBuffer.wrap(estado));
+            nuevo.force(true);
+        }
+        // El canal se cierra antes de reemplazar el archivo (en algunos sistemas
+        // no se puede reemplazar un archivo abierto) y se reabre pase lo que
+        // pase: si el reemplazo falla, el original sigue completo y se sigue
+        // agregando a él
+        canal.close();
+        try {
+            Files.move(temporal, archivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            bytesEstado = estado.length;
+        } finally {
+            canal = FileChannel.open(archivo, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            canal.position(canal.size());
+        }
+    }
+
+    private static byte[] codificar(long secuencia, Map<String, String> bicicletas,
+            Map<String, Boolean> usuarios) throws IOException {
+        ByteArrayOutputStream datos = new ByteArrayOutputStream(64 + 32 * (bicicletas.size() + usuarios.size()));
+        DataOutputStream salida = new DataOutputStream(datos);
+        salida.writeInt(0); // longitud, se completa al final
+        salida.writeLong(secuencia);
+        salida.writeInt(bicicletas.size() + usuarios.size());
+        for (Map.Entry<String, String> e : bicicletas.entrySet()) {
+            salida.writeByte(BICICLETA);
+            salida.writeUTF(e.getKey());
+            salida.writeUTF(e.getValue());
+        }
+        for (Map.Entry<String, Boolean> e : usuarios.entrySet()) {
+            salida.writeByte(USUARIO);
+            salida.writeUTF(e.getKey());
+            salida.writeUTF(e.getValue().toString());
+        }
+        salida.writeInt(0); // CRC32, se completa al final
+        salida.flush();
+
+        ByteBuffer lote = ByteBuffer.wrap(datos.toByteArray());
+        int bytes = lote.capacity() - 4;
+        lote.putInt(0, bytes);
+        CRC32 crc = new CRC32();
+        crc.update(lote.array(), 4, bytes - 4);
+        lote.putInt(lote.capacity() - 4, (int) crc.getValue());
+        return lote.array();
+    }
+
+    private static void escribirTodo(FileChannel canal, ByteBuffer bufer) throws IOException {
+        while (bufer.hasRemaining()) {
+            canal.write(bufer);
+        }
+    }
+
+    /**
+     * Obtiene el último estado guardado de cada bicicleta.
+     *
+     * @return Copia del estado por ID de bicicleta.
+     */
+    public synchronized Map<String, String> getEstadosBicicletas() {
+        return Collections.unmodifiableMap(new HashMap<>(estadosBicicletas));
+    }
+
+    /**
+     * Obtiene, para cada usuario guardado, si tenía un préstamo activo.
+     *
+     * @return Copia de la marca de préstamo por ID de usuario.
+     */
+    public synchronized Map<String, Boolean> getPrestamosUsuarios() {
+        return Collections.unmodifiableMap(new HashMap<>(prestamosUsuarios));
+    }
+
+    /**
+     * Obtiene la secuencia del registro de cambios hasta la que llega lo guardado.
+     *
+     * @return Última secuencia escrita, o 0 si no hay lotes.
+     */
+    public synchronized long getUltimaSecuencia() { return ultimaSecuencia; }
+
+    /**
+     * Obtiene cuántos lotes se escribieron desde que se abrió el almacén.
+     *
+     * @return Lotes escritos.
+     */
+    public synchronized long getLotesEscritos() { return lotesEscritos; }
+
+    /**
+     * Cierra el archivo del almacén.
+     *
+     * @throws IOException Si ocurre un error al cerrar.
+     */
+    public synchronized void cerrar() throws IOException {
+        canal.close();
+    }
+}
@@ -0,0 +1,97 @@
+
+package dao;
+
+import modelo.Prestamo;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Almacén frío de préstamos devueltos, formado por segmentos inmutables y
+ * comprimidos en un directorio (ver {@link SegmentoPrestamos}).
+ *
+ * Los segmentos guardan las claves enteras vigentes en este proceso, por lo
+ * que cada instancia empieza sin segmentos y nombra los suyos con un prefijo
+ * propio. Los segmentos de ejecuciones anteriores no se pueden leer (sus
+ * claves eran de otro proceso, y los préstamos en memoria tampoco se
+ * conservan entre ejecuciones), así que se borran al crear el almacén junto
+ * con los temporales que haya dejado una escritura interrumpida. Por eso el
+ * directorio debe ser exclusivo de un almacén.
+ */
+public class ArchivoPrestamos {
+    private final Path directorio;
+    private final String prefijo = "prestamos-" + System.currentTimeMillis() + "-";
+    private final List<SegmentoPrestamos> segmentos = new CopyOnWriteArrayList<>();
+    private int siguiente;
+
+    /**
+     * Crea el almacén frío en el directorio indicado.
+     *
+     * @param directorio Directorio donde se escriben los segmentos; se crea si no existe.
+     * @throws IOException Si no se puede crear el directorio o borrar los segmentos anteriores.
+     */
+    public ArchivoPrestamos(Path directorio) throws IOException {
+        this.directorio = Files.createDirectories(directorio);
+        try (DirectoryStream<Path> anteriores = Files.newDirectoryStream(this.directorio, "prestamos-*.seg*")) {
+            for (Path anterior : anteriores) {
+                Files.deleteIfExists(anterior);
+            }
+        }
+    }
+
+    /**
+     * Escribe un segmento con los préstamos dados, sin hacerlo visible todavía.
+     *
+     * @param prestamos Préstamos devueltos a archivar.
+     * @return El segmento escrito en disco.
+     * @throws IOException Si ocurre un error al escribir.
+     */
+    SegmentoPrestamos escribir(List<Prestamo> prestamos) throws IOException {
+        String nombre;
+        synchronized (this) {
+            nombre = prefijo + (siguiente++) + ".seg";
+        }
+        return SegmentoPrestamos.escribir(directorio.resolve(nombre), prestamos);
+    }
+
+    /**
+     * Hace visible un segmento ya escrito para las consultas.
+     *
+     * @param segmento Segmento a publicar.
+     */
+    void publicar(SegmentoPrestamos segmento) {
+        segmentos.add(segmento);
+    }
+
+    /**
+     * Obtiene los préstamos archivados de un usuario en todos los segmentos.
+     *
+     * @param claveUsuario Clave entera del usuario.
+     * @return Préstamos archivados del usuario.
+     */
+    List<Prestamo> obtenerPorUsuario(int claveUsuario) {
+        List<Prestamo> encontrados = new ArrayList<>();
+        try {
+            for (SegmentoPrestamos segmento : segmentos) {
+                encontrados.addAll(segmento.obtenerPorUsuario(claveUsuario));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return encontrados;
+    }
+
+    /**
+     * Obtiene los segmentos publicados, en orden de escritura.
+     *
+     * @return Lista inmutable de segmentos.
+     */
+    List<SegmentoPrestamos> segmentos() {
+        return new ArrayList<>(segmentos);
+    }
+}
@@ -1,62 +1,329 @@
-
-package dao;
-
-import modelo.Bicicleta;
-import java.util.ArrayList;
-import java.util.List;
-
-/**
- * Clase que simula el acceso a datos para objetos {@link Bicicleta}.
- * Utiliza una lista en memoria como fuente de almacenamiento.
- */
-public class BicicletaDAO {
-    private List<Bicicleta> bicicletas = new ArrayList<>();
-
-    /**
-     * Agrega una nueva bicicleta al sistema.
-     *
-     * @param bicicleta La instancia de {@link Bicicleta} que se desea agregar.
-     */
-    public void agregarBicicleta(Bicicleta bicicleta) {
-        bicicletas.add(bicicleta);
-    }
-
-    /**
-     * Busca una bicicleta por su ID único.
-     *
-     * @param id El identificador único de la bicicleta.
-     * @return La bicicleta encontrada o {@code null} si no existe.
-     */
-    public Bicicleta buscarPorId(String id) {
-        for (Bicicleta b : bicicletas) {
-            if (b.getId().equals(id)) {
-                return b;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Obtiene todas las bicicletas registradas en el sistema.
-     *
-     * @return Una lista con todas las bicicletas.
-     */
-    public List<Bicicleta> obtenerTodas() {
-        return new ArrayList<>(bicicletas);
-    }
-
-    /**
-     * Filtra y devuelve solo las bicicletas que están disponibles para préstamo.
-     *
-     * @return Una lista con las bicicletas disponibles.
-     */
-    public List<Bicicleta> obtenerDisponibles() {
-        List<Bicicleta> disponibles = new ArrayList<>();
-        for (Bicicleta b : bicicletas) {
-            if (b.isDisponible()) {
-                disponibles.add(b);
-            }
-        }
-        return disponibles;
-    }
-}
\ No newline at end of file
+
+package dao;
+
+import modelo.Bicicleta;
+import modelo.EstadoBicicleta;
+import monitoreo.EventoDAO;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Clase que simula el acceso a datos para objetos {@link Bicicleta}.
+ * Utiliza una tabla en memoria indexada por la clave entera de cada bicicleta.
+ *
+ * Además mantiene contadores por modelo y estado que se actualizan en cada
+ * transición hecha con {@link #cambiarEstado}, de modo que consultar cuántas
+ * bicicletas de cada modelo hay libres no requiere recorrer la tabla. Las
+ * claves de cada modelo exacto también se guardan, para que una consulta por
+ * modelo no pase por la búsqueda aproximada de {@link IndiceTexto}.
+ *
+ * En el diario se registran las altas y el inicio y fin de las reservas; los
+ * demás cambios de estado se deducen de los préstamos y devoluciones.
+ *
+ * Los recorridos y las búsquedas por modelo emiten un {@link EventoDAO}.
+ */
+public class BicicletaDAO {
+    private static final String DAO = "BicicletaDAO";
+    private final DiccionarioIds ids = new DiccionarioIds();
+    private final TablaDensa<Bicicleta> bicicletas = new TablaDensa<>();
+    private final IndiceTexto modelos = new IndiceTexto();
+    private final ConcurrentHashMap<String, ConteoModelo> conteos = new ConcurrentHashMap<>();
+    private final Collection<ConteoModelo> vistaConteos = Collections.unmodifiableCollection(conteos.values());
+    // Contadores de cada bicicleta, para no buscar su modelo en cada transición
+    private final TablaDensa<ConteoModelo> conteoPorBicicleta = new TablaDensa<>();
+    private final ConcurrentHashMap<String, ClavesModelo> clavesPorModelo = new ConcurrentHashMap<>();
+    private final DiarioOperaciones diario;
+    private final RegistroCambios registro;
+
+    /**
+     * Crea un DAO de bicicletas que no registra sus operaciones.
+     */
+    public BicicletaDAO() {
+        this(null);
+    }
+
+    /**
+     * Crea un DAO de bicicletas que registra cada alta en el diario indicado.
+     *
+     * @param diario Diario de operaciones, o {@code null} para no registrar.
+     */
+    public BicicletaDAO(DiarioOperaciones diario) {
+        this(diario, null);
+    }
+
+    /**
+     * Crea un DAO de bicicletas que además publica cada alta y cambio de
+     * estado en el registro de cambios indicado.
+     *
+     * @param diario   Diario de operaciones, o {@code null} para no registrar.
+     * @param registro Registro de cambios, o {@code null} para no publicar.
+     */
+    public BicicletaDAO(DiarioOperaciones diario, RegistroCambios registro) {
+        this.diario = diario;
+        this.registro = registro;
+    }
+
+    /**
+     * Agrega una nueva bicicleta al sistema, le asigna su clave entera e indexa su modelo.
+     * Si ya existe una bicicleta con el mismo ID, se conserva la existente.
+     *
+     * @param bicicleta La instancia de {@link Bicicleta} que se desea agregar.
+     */
+    public synchronized void agregarBicicleta(Bicicleta bicicleta) {
+        int clave = ids.obtenerOCrear(bicicleta.getId());
+        if (bicicletas.obtener(clave) != null) {
+            return;
+        }
+        bicicleta.asignarClave(clave);
+        if (diario != null) {
+            diario.registrar(Operacion.Tipo.REGISTRAR_BICICLETA, System.currentTimeMillis(),
+                    bicicleta.getId(), bicicleta.getModelo());
+        }
+        
+        // Los contadores se preparan antes de publicar la bicicleta
+        ConteoModelo conteo = conteos.computeIfAbsent(bicicleta.getModelo(), ConteoModelo::new);
+        conteo.registrar(bicicleta.getEstado());
+        conteoPorBicicleta.poner(clave, conteo);
+        
+        bicicletas.poner(clave, bicicleta);
+        modelos.agregar(bicicleta.getModelo(), clave);
+        clavesPorModelo.computeIfAbsent(bicicleta.getModelo(), m -> new ClavesModelo()).agregar(clave);
+        if (registro != null) {
+            registro.registrar(Cambio.Tipo.BICICLETA_REGISTRADA, bicicleta.getId(), bicicleta.getModelo());
+        }
+    }
+
+    /**
+     * Cambia el estado de una bicicleta solo si su estado actual es el esperado
+     * y, si el cambio se aplica, actualiza los contadores de su modelo.
+     *
+     * Si se publican cambios, la transición y su publicación ocurren bajo el
+     * bloqueo del registro, para que dos transiciones seguidas de la misma
+     * bicicleta aparezcan en el orden en que se aplicaron. Del mismo modo, el
+     * inicio y el fin de una reserva se registran en el diario bajo su bloqueo.
+     *
+     * @param bicicleta Bicicleta registrada.
+     * @param esperado  Estado en el que debe encontrarse.
+     * @param nuevo     Estado al que se desea pasar.
+     * @return {@code true} si el cambio se aplicó, {@code false} si el estado era otro.
+     */
+    public boolean cambiarEstado(Bicicleta bicicleta, EstadoBicicleta esperado, EstadoBicicleta nuevo) {
+        Operacion.Tipo reserva = nuevo == EstadoBicicleta.RESERVADA ? Operacion.Tipo.RESERVA
+                : esperado == EstadoBicicleta.RESERVADA && nuevo == EstadoBicicleta.DISPONIBLE ? Operacion.Tipo.FIN_RESERVA
+                : null;
+        if (diario == null || reserva == null) {
+            return publicarEstado(bicicleta, esperado, nuevo);
+        }
+        // Mismo orden de bloqueo que los lotes de préstamos: primero el diario, luego el registro
+        synchronized (diario) {
+            if (!publicarEstado(bicicleta, esperado, nuevo)) {
+                return false;
+            }
+            diario.registrar(reserva, System.currentTimeMillis(), bicicleta.getId());
+            return true;
+        }
+    }
+
+    private boolean publicarEstado(Bicicleta bicicleta, EstadoBicicleta esperado, EstadoBicicleta nuevo) {
+        if (registro == null) {
+            return aplicarEstado(bicicleta, esperado, nuevo);
+        }
+        synchronized (registro) {
+            if (!aplicarEstado(bicicleta, esperado, nuevo)) {
+                return false;
+            }
+            registro.registrar(Cambio.Tipo.ESTADO_BICICLETA, bicicleta.getId(), nuevo.name());
+            return true;
+        }
+    }
+
+    private boolean aplicarEstado(Bicicleta bicicleta, EstadoBicicleta esperado, EstadoBicicleta nuevo) {
+        if (!bicicleta.cambiarEstado(esperado, nuevo)) {
+            return false;
+        }
+        conteoPorBicicleta.obtener(bicicleta.getClave()).mover(esperado, nuevo);
+        return true;
+    }
+
+    /**
+     * Obtiene los contadores por estado de cada modelo registrado.
+     * Es una vista en vivo: no copia ni recorre las bicicletas.
+     *
+     * @return Los contadores de todos los modelos.
+     */
+    public Collection<ConteoModelo> obtenerConteosPorModelo() {
+        return vistaConteos;
+    }
+
+    /**
+     * Obtiene los contadores por estado de un modelo.
+     *
+     * @param modelo Modelo de bicicleta.
+     * @return Los contadores del modelo, o {@code null} si no hay bicicletas de ese modelo.
+     */
+    public ConteoModelo obtenerConteo(String modelo) {
+        return conteos.get(modelo);
+    }
+
+    /**
+     * Obtiene las claves de las bicicletas de un modelo exacto, en orden de
+     * registro. No copia las claves ni bloquea.
+     *
+     * @param modelo Modelo de bicicleta, tal como se registró.
+     * @return Las claves del modelo; vacío si no hay bicicletas de ese modelo.
+     */
+    public IntStream clavesDeModelo(String modelo) {
+        ClavesModelo claves = clavesPorModelo.get(modelo);
+        return claves != null ? claves.recorrer() : IntStream.empty();
+    }
+
+    /**
+     * Busca una bicicleta por su ID único.
+     *
+     * @param id El identificador único de la bicicleta.
+     * @return La bicicleta encontrada o {@code null} si no existe.
+     */
+    public Bicicleta buscarPorId(String id) {
+        return bicicletas.obtener(ids.buscar(id));
+    }
+
+    /**
+     * Busca una bicicleta por su clave entera.
+     *
+     * @param clave La clave interna de la bicicleta.
+     * @return La bicicleta encontrada o {@code null} si no existe.
+     */
+    public Bicicleta buscarPorClave(int clave) {
+        return bicicletas.obtener(clave);
+    }
+
+    /**
+     * Busca bicicletas cuyo modelo tenga alguna palabra que empiece por el texto
+     * dado, sin distinguir mayúsculas ni acentos y tolerando un error de escritura.
+     *
+     * @param texto Texto escrito hasta el momento.
+     * @param maximo Número máximo de resultados.
+     * @return Las bicicletas encontradas, más relevantes primero.
+     */
+    public List<Bicicleta> buscarPorModelo(String texto, int maximo) {
+        EventoDAO evento = new EventoDAO(DAO, "buscarPorModelo");
+        List<Bicicleta> encontradas = new ArrayList<>();
+        for (int clave : modelos.buscar(texto, maximo)) {
+            encontradas.add(bicicletas.obtener(clave));
+        }
+        evento.terminar(texto, encontradas.size());
+        return encontradas;
+    }
+
+    /**
+     * Obtiene todas las bicicletas registradas en el sistema.
+     *
+     * @return Una lista con todas las bicicletas.
+     */
+    public List<Bicicleta> obtenerTodas() {
+        EventoDAO evento = new EventoDAO(DAO, "obtenerTodas");
+        List<Bicicleta> todas = new ArrayList<>();
+        for (int clave = 0, limite = bicicletas.limite(); clave < limite; clave++) {
+            Bicicleta b = bicicletas.obtener(clave);
+            if (b != null) {
+                todas.add(b);
+            }
+        }
+        evento.terminar(todas.size());
+        return todas;
+    }
+
+    /**
+     * Filtra y devuelve solo las bicicletas que están disponibles para préstamo.
+     *
+     * @return Una lista con las bicicletas disponibles.
+     */
+    public List<Bicicleta> obtenerDisponibles() {
+        EventoDAO evento = new EventoDAO(DAO, "obtenerDisponibles");
+        List<Bicicleta> disponibles = new ArrayList<>();
+        for (int clave = 0, limite = bicicletas.limite(); clave < limite; clave++) {
+            Bicicleta b = bicicletas.obtener(clave);
+            if (b != null && b.isDisponible()) {
+                disponibles.add(b);
+            }
+        }
+        evento.terminar(disponibles.size());
+        return disponibles;
+    }
+
+    /**
+     * Cuenta las bicicletas disponibles en cada estación. La tabla se recorre
+     * en paralelo; las bicicletas sin estación conocida no se cuentan.
+     *
+     * @return Número de bicicletas disponibles por ID de estación.
+     */
+    public Map<String, Integer> contarDisponiblesPorEstacion() {
+        EventoDAO evento = new EventoDAO(DAO, "contarDisponiblesPorEstacion");
+        Map<String, Integer> conteo = IntStream.range(0, bicicletas.limite()).parallel()
+                .mapToObj(bicicletas::obtener)
+                .filter(b -> b != null && b.isDisponible() && b.getEstacion() != null)
+                .collect(Collectors.groupingByConcurrent(Bicicleta::getEstacion, Collectors.summingInt(b -> 1)));
+        evento.terminar(conteo.size());
+        return conteo;
+    }
+
+    /**
+     * Recorre todas las bicicletas sin copiarlas a una lista.
+     *
+     * @return Un iterable perezoso sobre las bicicletas registradas.
+     */
+    public Iterable<Bicicleta> recorrerTodas() {
+        return () -> new RecorridoTabla<>(bicicletas);
+    }
+
+    /**
+     * Obtiene los contadores del filtro que descarta IDs de bicicletas inexistentes.
+     *
+     * @return Estadísticas del filtro de IDs.
+     */
+    public EstadisticasFiltro estadisticasFiltroIds() {
+        return ids.estadisticasFiltro();
+    }
+
+    /**
+     * Obtiene el límite superior (exclusivo) de las claves asignadas, para
+     * recorrer la tabla por tramos de claves.
+     *
+     * @return Uno más que la mayor clave en uso.
+     */
+    public int limiteClaves() {
+        return bicicletas.limite();
+    }
+
+    /**
+     * Claves de las bicicletas de un modelo. Solo crece: se agrega bajo el
+     * bloqueo del DAO y se lee sin bloquear, primero el total y después el
+     * arreglo, que siempre contiene al menos ese total.
+     */
+    private static final class ClavesModelo {
+        private volatile int[] claves = new int[4];
+        private volatile int total;
+
+        void agregar(int clave) {
+            int[] actuales = claves;
+            if (total == actuales.length) {
+                actuales = Arrays.copyOf(actuales, actuales.length << 1);
+                claves = actuales;
+            }
+            actuales[total] = clave;
+            total = total + 1;
+        }
+
+        IntStream recorrer() {
+            int n = total;
+            return Arrays.stream(claves, 0, n);
+        }
+    }
+}
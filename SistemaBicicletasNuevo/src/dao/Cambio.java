@@ -0,0 +1,87 @@
+
+package dao;
+
+/**
+ * Cambio registrado en el {@link RegistroCambios}: qué entidad cambió, cómo
+ * y con qué número de secuencia.
+ */
+public class Cambio {
+    /** Tipos de cambio que se publican. */
+    public enum Tipo {
+        /** Alta de una bicicleta; el valor es su modelo. */
+        BICICLETA_REGISTRADA,
+        /** Cambio de estado de una bicicleta; el valor es el estado nuevo. */
+        ESTADO_BICICLETA,
+        /** Alta de un usuario; el valor es su nombre. */
+        USUARIO_REGISTRADO,
+        /** Préstamo nuevo; el valor es el ID de la bicicleta. */
+        PRESTAMO_REGISTRADO,
+        /** Devolución de un préstamo; el valor es el ID de la bicicleta. */
+        PRESTAMO_DEVUELTO,
+        /** Corrección de la marca de préstamo de un usuario; el valor es {@code true} o {@code false}. */
+        MARCA_USUARIO
+    }
+
+    private final long secuencia;
+    private final long marcaTiempo;
+    private final Tipo tipo;
+    private final String id;
+    private final String valor;
+
+    /**
+     * Crea un cambio.
+     *
+     * @param secuencia   Número de secuencia asignado por el registro.
+     * @param marcaTiempo Momento del cambio, en milisegundos desde la época.
+     * @param tipo        Tipo de cambio.
+     * @param id          ID de la bicicleta, usuario o préstamo que cambió.
+     * @param valor       Dato nuevo, según el tipo.
+     */
+    public Cambio(long secuencia, long marcaTiempo, Tipo tipo, String id, String valor) {
+        this.secuencia = secuencia;
+        this.marcaTiempo = marcaTiempo;
+        this.tipo = tipo;
+        this.id = id;
+        this.valor = valor;
+    }
+
+    /**
+     * Obtiene el número de secuencia del cambio.
+     *
+     * @return Secuencia, empezando en 1.
+     */
+    public long getSecuencia() { return secuencia; }
+
+    /**
+     * Obtiene el momento en que ocurrió el cambio.
+     *
+     * @return Milisegundos desde la época.
+     */
+    public long getMarcaTiempo() { return marcaTiempo; }
+
+    /**
+     * Obtiene el tipo de cambio.
+     *
+     * @return Tipo de cambio.
+     */
+    public Tipo getTipo() { return tipo; }
+
+    /**
+     * Obtiene el ID de la entidad que cambió.
+     *
+     * @return ID de la bicicleta, usuario o préstamo.
+     */
+    public String getId() { return id; }
+
+    /**
+     * Obtiene el dato nuevo del cambio.
+     *
+     * @return Valor según el tipo de cambio.
+     */
+    public String getValor() { return valor; }
+
+    @Override
+    public String toString() {
+        return secuencia + " " + tipo + " " + id + " " + valor;
+    }
+}
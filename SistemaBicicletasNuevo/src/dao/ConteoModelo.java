@@ -0,0 +1,75 @@
+
+package dao;
+
+import modelo.EstadoBicicleta;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores en vivo de las bicicletas de un modelo en cada estado.
+ * Usa {@link LongAdder}, cuyos contadores repartidos por hilo evitan la
+ * contención cuando muchas transiciones ocurren a la vez.
+ */
+public class ConteoModelo {
+    private static final EstadoBicicleta[] ESTADOS = EstadoBicicleta.values();
+
+    private final String modelo;
+    private final LongAdder[] porEstado = new LongAdder[ESTADOS.length];
+
+    /**
+     * Crea los contadores de un modelo, todos en cero.
+     *
+     * @param modelo Modelo de bicicleta.
+     */
+    ConteoModelo(String modelo) {
+        this.modelo = modelo;
+        for (int i = 0; i < porEstado.length; i++) {
+            porEstado[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Obtiene el modelo al que corresponden los contadores.
+     *
+     * @return Modelo de bicicleta.
+     */
+    public String getModelo() { return modelo; }
+
+    /**
+     * Obtiene cuántas bicicletas del modelo están en un estado.
+     *
+     * @param estado Estado a consultar.
+     * @return Número de bicicletas en ese estado.
+     */
+    public long contar(EstadoBicicleta estado) {
+        return porEstado[estado.ordinal()].sum();
+    }
+
+    /**
+     * Obtiene cuántas bicicletas del modelo están disponibles.
+     *
+     * @return Número de bicicletas disponibles.
+     */
+    public long getDisponibles() { return contar(EstadoBicicleta.DISPONIBLE); }
+
+    /**
+     * Obtiene el total de bicicletas registradas del modelo.
+     *
+     * @return Número de bicicletas del modelo.
+     */
+    public long getTotal() {
+        long total = 0;
+        for (LongAdder contador : porEstado) {
+            total += contador.sum();
+        }
+        return total;
+    }
+
+    void registrar(EstadoBicicleta estado) {
+        porEstado[estado.ordinal()].increment();
+    }
+
+    void mover(EstadoBicicleta desde, EstadoBicicleta hacia) {
+        porEstado[desde.ordinal()].decrement();
+        porEstado[hacia.ordinal()].increment();
+    }
+}
@@ -0,0 +1,114 @@
+
+package dao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Diario ordenado de las operaciones que modifican los datos: altas de
+ * bicicletas y usuarios, préstamos, devoluciones y reservas.
+ *
+ * Los DAOs registran cada operación dentro de la misma sección sincronizada
+ * en la que la aplican, así que el orden del diario respeta las dependencias
+ * entre operaciones (un préstamo aparece después del alta de su bicicleta, una
+ * devolución después de su préstamo). Las réplicas lo reproducen en ese orden.
+ *
+ * Se conservan las últimas {@code capacidad} operaciones en un arreglo
+ * circular, como en el {@link RegistroCambios}, así que el diario no crece
+ * con la vida del proceso. Un seguidor que se atrasa más que eso ya no puede
+ * continuar desde el diario y debe volver a sincronizarse con una copia
+ * completa de los datos.
+ */
+public class DiarioOperaciones {
+    /** Operaciones que se conservan si no se indica otra capacidad. */
+    public static final int CAPACIDAD_PREDETERMINADA = 100_000;
+
+    private final Operacion[] operaciones;
+    private long ultima;
+
+    /**
+     * Crea un diario con la capacidad predeterminada.
+     */
+    public DiarioOperaciones() {
+        this(CAPACIDAD_PREDETERMINADA);
+    }
+
+    /**
+     * Crea un diario que conserva las últimas operaciones indicadas.
+     *
+     * @param capacidad Número de operaciones que se conservan.
+     */
+    public DiarioOperaciones(int capacidad) {
+        if (capacidad <= 0) {
+            throw new IllegalArgumentException("La capacidad debe ser positiva: " + capacidad);
+        }
+        this.operaciones = new Operacion[capacidad];
+    }
+
+    /**
+     * Agrega una operación al final del diario y avisa a quienes esperan. Si
+     * el diario está lleno, reemplaza a la más antigua.
+     *
+     * @param tipo        Tipo de operación.
+     * @param marcaTiempo Momento de la operación, en milisegundos desde la época.
+     * @param campos      Datos de la operación.
+     * @return La operación registrada, con su número de secuencia.
+     */
+    public synchronized Operacion registrar(Operacion.Tipo tipo, long marcaTiempo, String... campos) {
+        Operacion operacion = new Operacion(ultima + 1, marcaTiempo, tipo, campos);
+        operaciones[(int) (ultima % operaciones.length)] = operacion;
+        ultima++;
+        notifyAll();
+        return operacion;
+    }
+
+    /**
+     * Obtiene la secuencia de la última operación registrada.
+     *
+     * @return Última secuencia, o 0 si el diario está vacío.
+     */
+    public synchronized long ultimaSecuencia() {
+        return ultima;
+    }
+
+    /**
+     * Obtiene la secuencia de la operación más antigua que se conserva.
+     *
+     * @return Primera secuencia disponible, o 1 si el diario está vacío.
+     */
+    public synchronized long primeraSecuencia() {
+        return Math.max(1, ultima - operaciones.length + 1);
+    }
+
+    /**
+     * Obtiene las operaciones posteriores a una secuencia, esperando hasta que
+     * haya alguna o venza el tiempo indicado.
+     *
+     * @param secuencia Última secuencia que ya se tiene.
+     * @param maximo    Número máximo de operaciones a devolver.
+     * @param espera    Tiempo máximo de espera en milisegundos.
+     * @return Las operaciones siguientes en orden, o una lista vacía si no llegó ninguna.
+     * @throws IllegalStateException Si alguna de esas operaciones ya se descartó
+     *                               y el seguidor debe volver a sincronizarse.
+     * @throws InterruptedException Si el hilo se interrumpe mientras espera.
+     */
+    public synchronized List<Operacion> esperarDesde(long secuencia, int maximo, long espera) throws InterruptedException {
+        long limite = System.currentTimeMillis() + espera;
+        long restante = espera;
+        while (ultima <= secuencia && restante > 0) {
+            wait(restante);
+            restante = limite - System.currentTimeMillis();
+        }
+        if (secuencia + 1 < primeraSecuencia()) {
+            throw new IllegalStateException("Las operaciones posteriores a " + secuencia
+                    + " ya no se conservan; la más antigua es " + primeraSecuencia());
+        }
+        long desde = Math.min(secuencia, ultima);
+        long hasta = Math.min(ultima, desde + Math.max(0, maximo));
+        List<Operacion> encontradas = new ArrayList<>((int) (hasta - desde));
+        for (long s = desde; s < hasta; s++) {
+            encontradas.add(operaciones[(int) (s % operaciones.length)]);
+        }
+        return encontradas;
+    }
+}
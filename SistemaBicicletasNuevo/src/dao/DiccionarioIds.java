@@ -0,0 +1,230 @@
+
+package dao;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Diccionario que asigna a cada identificador de texto una clave entera densa
+ * (0, 1, 2, ...), de modo que los índices internos trabajen con enteros
+ * primitivos en lugar de comparar cadenas.
+ *
+ * La tabla usa direccionamiento abierto sobre arreglos primitivos, sin
+ * objetos {@code Integer}. Las lecturas no toman bloqueos; las altas se
+ * serializan. Cada texto se guarda una sola vez, y esa misma instancia es la
+ * que comparten las entidades y los préstamos.
+ *
+ * Delante de la tabla hay un filtro de Bloom que se llena en cada alta. Un
+ * identificador que nunca se registró (por ejemplo, uno mal escrito en el
+ * kiosco) casi siempre se descarta leyendo una sola palabra del filtro, sin
+ * recorrer la tabla ni comparar cadenas. El filtro se reconstruye junto con
+ * la tabla cuando esta crece, con 8 bits por posición (entre 16 y 32 por
+ * identificador), y cuenta sus descartes y sus falsos positivos.
+ */
+public class DiccionarioIds {
+    /** Valor devuelto cuando un identificador no tiene clave asignada. */
+    public static final int SIN_CLAVE = -1;
+
+    private static final int CAPACIDAD_INICIAL = 16;
+    /** Bits del filtro que enciende cada identificador, todos en la misma palabra. */
+    private static final int BITS_POR_ID = 5;
+
+    /** Arreglos de la tabla y su filtro; se reemplazan completos al crecer. */
+    private static final class Tabla {
+        final AtomicReferenceArray<String> llaves;
+        final int[] valores;
+        // Filtro de Bloom por bloques: cada identificador enciende bits de una sola palabra
+        final AtomicLongArray filtro;
+
+        Tabla(int capacidad) {
+            llaves = new AtomicReferenceArray<>(capacidad);
+            valores = new int[capacidad];
+            filtro = new AtomicLongArray(capacidad / 8);
+        }
+
+        boolean puedeContener(long huella) {
+            long bits = bitsFiltro(huella);
+            return (filtro.get(palabraFiltro(huella)) & bits) == bits;
+        }
+
+        void marcar(long huella) {
+            int palabra = palabraFiltro(huella);
+            filtro.set(palabra, filtro.get(palabra) | bitsFiltro(huella));
+        }
+
+        private int palabraFiltro(long huella) {
+            return (int) (huella >>> 32) & (filtro.length() - 1);
+        }
+    }
+
+    private volatile Tabla tabla = new Tabla(CAPACIDAD_INICIAL);
+    private volatile AtomicReferenceArray<String> textos = new AtomicReferenceArray<>(CAPACIDAD_INICIAL);
+    private int total;
+    private final LongAdder descartesFiltro = new LongAdder();
+    private final LongAdder falsosPositivos = new LongAdder();
+
+    /**
+     * Obtiene la clave de un identificador.
+     *
+     * @param id Identificador externo.
+     * @return La clave asignada, o {@link #SIN_CLAVE} si el identificador no existe.
+     */
+    public int buscar(String id) {
+        if (id == null) {
+            return SIN_CLAVE;
+        }
+        Tabla t = tabla;
+        if (!t.puedeContener(huella(id))) {
+            descartesFiltro.increment();
+            return SIN_CLAVE;
+        }
+        int mascara = t.valores.length - 1;
+        for (int i = dispersar(id) & mascara; ; i = (i + 1) & mascara) {
+            String llave = t.llaves.get(i);
+            if (llave == null) {
+                falsosPositivos.increment();
+                return SIN_CLAVE;
+            }
+            if (llave.equals(id)) {
+                return t.valores[i];
+            }
+        }
+    }
+
+    /**
+     * Obtiene la clave de un identificador, asignándole una nueva si aún no tiene.
+     *
+     * @param id Identificador externo.
+     * @return La clave del identificador.
+     */
+    public synchronized int obtenerOCrear(String id) {
+        int clave = buscarSinContar(id);
+        if (clave != SIN_CLAVE) {
+            return clave;
+        }
+        clave = total++;
+        if ((total << 1) > tabla.valores.length) {
+            crecer();
+        }
+        insertar(tabla, id, clave);
+        if (clave >= textos.length()) {
+            AtomicReferenceArray<String> nuevos = new AtomicReferenceArray<>(textos.length() << 1);
+            for (int i = 0; i < textos.length(); i++) {
+                nuevos.set(i, textos.get(i));
+            }
+            textos = nuevos;
+        }
+        textos.set(clave, id);
+        return clave;
+    }
+
+    /**
+     * Obtiene el identificador externo (la instancia compartida) de una clave.
+     *
+     * @param clave Clave entera.
+     * @return El identificador, o {@code null} si la clave no existe.
+     */
+    public String texto(int clave) {
+        AtomicReferenceArray<String> t = textos;
+        return clave >= 0 && clave < t.length() ? t.get(clave) : null;
+    }
+
+    /**
+     * Obtiene la cantidad de claves asignadas.
+     *
+     * @return Número de identificadores registrados.
+     */
+    public synchronized int tamanio() {
+        return total;
+    }
+
+    /**
+     * Toma una foto de los contadores del filtro.
+     *
+     * @return Descartes, falsos positivos y tasa estimada del filtro.
+     */
+    public EstadisticasFiltro estadisticasFiltro() {
+        return new EstadisticasFiltro(tamanio(), descartesFiltro.sum(), falsosPositivos.sum(),
+                tasaFalsosPositivosEstimada());
+    }
+
+    /**
+     * Estima la tasa de falsos positivos del filtro con su ocupación actual.
+     * Con bloques de una palabra de 64 bits, cada identificador inexistente
+     * cae en una palabra y pasa si sus {@value #BITS_POR_ID} bits ya están
+     * encendidos; se promedia sobre todas las palabras.
+     *
+     * @return Probabilidad estimada de que un inexistente pase el filtro.
+     */
+    private double tasaFalsosPositivosEstimada() {
+        AtomicLongArray filtro = tabla.filtro;
+        double suma = 0;
+        for (int i = 0; i < filtro.length(); i++) {
+            suma += Math.pow(Long.bitCount(filtro.get(i)) / 64.0, BITS_POR_ID);
+        }
+        return suma / filtro.length();
+    }
+
+    /** Igual que {@link #buscar(String)} pero sin tocar los contadores del filtro. */
+    private int buscarSinContar(String id) {
+        Tabla t = tabla;
+        int mascara = t.valores.length - 1;
+        for (int i = dispersar(id) & mascara; ; i = (i + 1) & mascara) {
+            String llave = t.llaves.get(i);
+            if (llave == null) {
+                return SIN_CLAVE;
+            }
+            if (llave.equals(id)) {
+                return t.valores[i];
+            }
+        }
+    }
+
+    private void crecer() {
+        Tabla anterior = tabla;
+        Tabla nueva = new Tabla(anterior.valores.length << 1);
+        for (int i = 0; i < anterior.valores.length; i++) {
+            String llave = anterior.llaves.get(i);
+            if (llave != null) {
+                insertar(nueva, llave, anterior.valores[i]);
+            }
+        }
+        tabla = nueva;
+    }
+
+    private static void insertar(Tabla t, String id, int clave) {
+        // El filtro se marca antes de publicar la llave, para que nunca la descarte
+        t.marcar(huella(id));
+        int mascara = t.valores.length - 1;
+        int i = dispersar(id) & mascara;
+        while (t.llaves.get(i) != null) {
+            i = (i + 1) & mascara;
+        }
+        // El valor se escribe antes de publicar la llave
+        t.valores[i] = clave;
+        t.llaves.set(i, id);
+    }
+
+    private static int dispersar(String id) {
+        int h = id.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /** Huella de 64 bits del identificador para el filtro (mezcla de SplitMix64). */
+    private static long huella(String id) {
+        long h = id.hashCode() * 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    /** Bits que enciende una huella dentro de su palabra, tomados de sus 30 bits bajos. */
+    private static long bitsFiltro(long huella) {
+        long bits = 0;
+        for (int i = 0; i < BITS_POR_ID; i++) {
+            bits |= 1L << (huella >>> (6 * i));
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,73 @@
+
+package dao;
+
+/**
+ * Foto de los contadores del filtro de Bloom de un {@link DiccionarioIds}.
+ * Solo cuenta búsquedas de identificadores inexistentes: las que el filtro
+ * descartó y las que dejó pasar por error (falsos positivos).
+ */
+public class EstadisticasFiltro {
+    private final int identificadores;
+    private final long descartes;
+    private final long falsosPositivos;
+    private final double tasaEstimada;
+
+    /**
+     * Crea la foto de los contadores.
+     *
+     * @param identificadores Identificadores registrados en el filtro.
+     * @param descartes       Búsquedas resueltas solo con el filtro.
+     * @param falsosPositivos Búsquedas de inexistentes que pasaron el filtro.
+     * @param tasaEstimada    Tasa de falsos positivos estimada por la ocupación del filtro.
+     */
+    public EstadisticasFiltro(int identificadores, long descartes, long falsosPositivos, double tasaEstimada) {
+        this.identificadores = identificadores;
+        this.descartes = descartes;
+        this.falsosPositivos = falsosPositivos;
+        this.tasaEstimada = tasaEstimada;
+    }
+
+    /**
+     * Obtiene cuántos identificadores hay registrados en el filtro.
+     *
+     * @return Número de identificadores.
+     */
+    public int getIdentificadores() { return identificadores; }
+
+    /**
+     * Obtiene cuántas búsquedas se resolvieron solo con el filtro.
+     *
+     * @return Descartes del filtro.
+     */
+    public long getDescartes() { return descartes; }
+
+    /**
+     * Obtiene cuántas búsquedas de inexistentes pasaron el filtro.
+     *
+     * @return Falsos positivos.
+     */
+    public long getFalsosPositivos() { return falsosPositivos; }
+
+    /**
+     * Obtiene la tasa de falsos positivos observada.
+     *
+     * @return Fracción de búsquedas de inexistentes que pasaron el filtro, o 0 si no hubo.
+     */
+    public double getTasaObservada() {
+        long total = descartes + falsosPositivos;
+        return total == 0 ? 0 : (double) falsosPositivos / total;
+    }
+
+    /**
+     * Obtiene la tasa de falsos positivos estimada con la ocupación del filtro.
+     *
+     * @return Probabilidad estimada entre 0 y 1.
+     */
+    public double getTasaEstimada() { return tasaEstimada; }
+
+    @Override
+    public String toString() {
+        return String.format("%d IDs, %d descartes, %d falsos positivos (%.4f observada, %.4f estimada)",
+                identificadores, descartes, falsosPositivos, getTasaObservada(), tasaEstimada);
+    }
+}
@@ -0,0 +1,242 @@
+
+package dao;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice de búsqueda por prefijo sobre textos cortos (nombres, modelos).
+ *
+ * Cada palabra del texto se normaliza (minúsculas y sin acentos) y se inserta
+ * en un árbol de prefijos cuyos nodos terminales guardan las claves enteras
+ * de las entidades. Una búsqueda baja por el prefijo y recorre el subárbol
+ * solo hasta reunir las {@code k} coincidencias pedidas, por lo que su costo
+ * no depende del número total de entidades.
+ *
+ * Si la consulta tiene varias palabras, se busca por la última (la que se
+ * está escribiendo) y se descartan las entidades cuyo texto no contenga
+ * también las demás como prefijos de alguna palabra.
+ *
+ * También admite búsqueda aproximada: un recorrido con la fila de la
+ * distancia de Levenshtein acepta prefijos con hasta una edición.
+ */
+public class IndiceTexto {
+    /** Longitud mínima de la consulta para intentar la búsqueda aproximada. */
+    private static final int MINIMO_APROXIMADO = 4;
+
+    /** Nodo del árbol; los hijos se mantienen ordenados por letra. */
+    private static final class Nodo {
+        char[] letras = new char[0];
+        Nodo[] hijos = new Nodo[0];
+        int[] claves;
+        int numClaves;
+
+        Nodo hijo(char c) {
+            int i = Arrays.binarySearch(letras, c);
+            return i >= 0 ? hijos[i] : null;
+        }
+
+        Nodo hijoOCrear(char c) {
+            int i = Arrays.binarySearch(letras, c);
+            if (i >= 0) {
+                return hijos[i];
+            }
+            i = -i - 1;
+            char[] nuevasLetras = new char[letras.length + 1];
+            Nodo[] nuevosHijos = new Nodo[hijos.length + 1];
+            System.arraycopy(letras, 0, nuevasLetras, 0, i);
+            System.arraycopy(hijos, 0, nuevosHijos, 0, i);
+            System.arraycopy(letras, i, nuevasLetras, i + 1, letras.length - i);
+            System.arraycopy(hijos, i, nuevosHijos, i + 1, hijos.length - i);
+            nuevasLetras[i] = c;
+            nuevosHijos[i] = new Nodo();
+            letras = nuevasLetras;
+            hijos = nuevosHijos;
+            return nuevosHijos[i];
+        }
+
+        void agregarClave(int clave) {
+            if (claves == null) {
+                claves = new int[2];
+            } else if (numClaves == claves.length) {
+                claves = Arrays.copyOf(claves, numClaves << 1);
+            }
+            claves[numClaves++] = clave;
+        }
+    }
+
+    private final Nodo raiz = new Nodo();
+    private final TablaDensa<String> textos = new TablaDensa<>();
+    private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+
+    /**
+     * Indexa cada palabra de un texto bajo la clave indicada.
+     *
+     * @param texto Texto a indexar.
+     * @param clave Clave entera de la entidad.
+     */
+    public void agregar(String texto, int clave) {
+        String normalizado = normalizar(texto);
+        candado.writeLock().lock();
+        try {
+            textos.poner(clave, normalizado);
+            int inicio = 0;
+            while (inicio < normalizado.length()) {
+                int fin = normalizado.indexOf(' ', inicio);
+                if (fin < 0) {
+                    fin = normalizado.length();
+                }
+                if (fin > inicio) {
+                    Nodo nodo = raiz;
+                    for (int i = inicio; i < fin; i++) {
+                        nodo = nodo.hijoOCrear(normalizado.charAt(i));
+                    }
+                    nodo.agregarClave(clave);
+                }
+                inicio = fin + 1;
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Busca las entidades con alguna palabra que empiece por el texto dado.
+     * Primero se devuelven las coincidencias exactas de prefijo y, si faltan,
+     * las que difieren en una edición.
+     *
+     * @param consulta Texto escrito por el usuario.
+     * @param k        Número máximo de resultados.
+     * @return Claves encontradas, sin repetir, en orden de relevancia.
+     */
+    public int[] buscar(String consulta, int k) {
+        String[] palabras = normalizar(consulta).trim().split(" +");
+        String prefijo = palabras[palabras.length - 1];
+        Resultado resultado = new Resultado(k, palabras, textos);
+        if (prefijo.isEmpty() || k <= 0) {
+            return resultado.claves();
+        }
+
+        candado.readLock().lock();
+        try {
+            Nodo nodo = raiz;
+            for (int i = 0; i < prefijo.length() && nodo != null; i++) {
+                nodo = nodo.hijo(prefijo.charAt(i));
+            }
+            if (nodo != null) {
+                recolectar(nodo, resultado);
+            }
+            if (!resultado.lleno() && prefijo.length() >= MINIMO_APROXIMADO) {
+                int[] fila = new int[prefijo.length() + 1];
+                for (int i = 0; i < fila.length; i++) {
+                    fila[i] = i;
+                }
+                buscarAproximado(raiz, prefijo, fila, resultado);
+            }
+        } finally {
+            candado.readLock().unlock();
+        }
+        return resultado.claves();
+    }
+
+    /**
+     * Recorre el árbol calculando la distancia de edición entre la consulta y
+     * cada prefijo; poda las ramas cuya distancia mínima ya supera una edición.
+     */
+    private void buscarAproximado(Nodo nodo, String consulta, int[] filaAnterior, Resultado resultado) {
+        for (int h = 0; h < nodo.letras.length && !resultado.lleno(); h++) {
+            char c = nodo.letras[h];
+            int[] fila = new int[filaAnterior.length];
+            fila[0] = filaAnterior[0] + 1;
+            int minimo = fila[0];
+            for (int i = 1; i < fila.length; i++) {
+                int costo = consulta.charAt(i - 1) == c ? 0 : 1;
+                fila[i] = Math.min(Math.min(fila[i - 1] + 1, filaAnterior[i] + 1), filaAnterior[i - 1] + costo);
+                minimo = Math.min(minimo, fila[i]);
+            }
+            if (fila[fila.length - 1] <= 1) {
+                recolectar(nodo.hijos[h], resultado);
+            } else if (minimo <= 1) {
+                buscarAproximado(nodo.hijos[h], consulta, fila, resultado);
+            }
+        }
+    }
+
+    private static void recolectar(Nodo nodo, Resultado resultado) {
+        for (int i = 0; i < nodo.numClaves && !resultado.lleno(); i++) {
+            resultado.agregar(nodo.claves[i]);
+        }
+        for (int h = 0; h < nodo.hijos.length && !resultado.lleno(); h++) {
+            recolectar(nodo.hijos[h], resultado);
+        }
+    }
+
+    /**
+     * Convierte un texto a minúsculas, sin acentos y con espacios simples.
+     *
+     * @param texto Texto original.
+     * @return Texto normalizado para comparar.
+     */
+    static String normalizar(String texto) {
+        String descompuesto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(descompuesto.length());
+        for (int i = 0; i < descompuesto.length(); i++) {
+            char c = descompuesto.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            sb.append(Character.isWhitespace(c) ? ' ' : c);
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /** Acumula hasta k claves sin repetir que cumplan con las demás palabras. */
+    private static final class Resultado {
+        private final int[] claves;
+        private final String[] palabras;
+        private final TablaDensa<String> textos;
+        private int total;
+
+        Resultado(int k, String[] palabras, TablaDensa<String> textos) {
+            this.claves = new int[Math.max(k, 0)];
+            this.palabras = palabras;
+            this.textos = textos;
+        }
+
+        boolean lleno() {
+            return total == claves.length;
+        }
+
+        void agregar(int clave) {
+            for (int i = 0; i < total; i++) {
+                if (claves[i] == clave) {
+                    return;
+                }
+            }
+            if (palabras.length > 1 && !contieneDemas(textos.obtener(clave))) {
+                return;
+            }
+            claves[total++] = clave;
+        }
+
+        private boolean contieneDemas(String texto) {
+            for (int p = 0; p < palabras.length - 1; p++) {
+                String palabra = palabras[p];
+                boolean encontrada = texto.startsWith(palabra);
+                for (int i = texto.indexOf(' '); i >= 0 && !encontrada; i = texto.indexOf(' ', i + 1)) {
+                    encontrada = texto.startsWith(palabra, i + 1);
+                }
+                if (!encontrada) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int[] claves() {
+            return Arrays.copyOf(claves, total);
+        }
+    }
+}
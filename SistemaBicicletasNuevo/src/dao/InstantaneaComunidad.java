@@ -0,0 +1,167 @@
+
+package dao;
+
+import modelo.Bicicleta;
+import modelo.EstadoBicicleta;
+import modelo.Prestamo;
+import modelo.Usuario;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Copia en disco de todos los datos de una comunidad: bicicletas, usuarios y
+ * préstamos en memoria. Permite sacar de memoria a una comunidad inactiva y
+ * volver a cargarla cuando se la necesite.
+ *
+ * Cada tabla se escribe en el orden de sus claves enteras, así que al cargar
+ * en DAOs vacíos cada bicicleta, usuario y préstamo recupera la misma clave.
+ * El estado de bicicletas y usuarios no se guarda: se deduce de los préstamos
+ * activos. Las reservas no se guardan; una bicicleta reservada se carga
+ * disponible.
+ *
+ * El archivo se escribe completo en uno temporal, que se fuerza a disco y
+ * luego reemplaza al anterior, y termina con un CRC32 de su contenido, de modo
+ * que ni una escritura interrumpida ni un corte de energía dejan una copia a
+ * medias.
+ *
+ * Formato: cabecera {@code BICICOM1}; bicicletas (ID, modelo, estación);
+ * usuarios (ID, nombre); préstamos (ID, usuario, bicicleta, marcas); CRC32.
+ */
+public final class InstantaneaComunidad {
+    private static final long CABECERA = 0x42494349434F4D31L; // "BICICOM1"
+
+    private InstantaneaComunidad() {
+    }
+
+    /**
+     * Guarda los datos de los DAOs en el archivo indicado, reemplazando el anterior.
+     * Quien llama debe impedir que los DAOs cambien mientras tanto.
+     *
+     * @param archivo      Archivo de destino.
+     * @param bicicletaDAO DAO de bicicletas.
+     * @param usuarioDAO   DAO de usuarios.
+     * @param prestamoDAO  DAO de préstamos.
+     * @throws IOException Si ocurre un error al escribir.
+     */
+    public static void guardar(Path archivo, BicicletaDAO bicicletaDAO, UsuarioDAO usuarioDAO,
+            PrestamoDAO prestamoDAO) throws IOException {
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream archivoSalida = Channels.newOutputStream(canal);
+            DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(archivoSalida, crc)));
+            salida.writeLong(CABECERA);
+
+            int bicicletas = bicicletaDAO.limiteClaves();
+            salida.writeInt(bicicletas);
+            for (int clave = 0; clave < bicicletas; clave++) {
+                Bicicleta bicicleta = bicicletaDAO.buscarPorClave(clave);
+                salida.writeUTF(bicicleta.getId());
+                salida.writeUTF(bicicleta.getModelo());
+                salida.writeBoolean(bicicleta.getEstacion() != null);
+                if (bicicleta.getEstacion() != null) {
+                    salida.writeUTF(bicicleta.getEstacion());
+                }
+            }
+
+            int usuarios = usuarioDAO.limiteClaves();
+            salida.writeInt(usuarios);
+            for (int clave = 0; clave < usuarios; clave++) {
+                Usuario usuario = usuarioDAO.buscarPorClave(clave);
+                salida.writeUTF(usuario.getId());
+                salida.writeUTF(usuario.getNombre());
+            }
+
+            int prestamos = prestamoDAO.limiteClaves();
+            salida.writeInt(prestamos);
+            for (int clave = 0; clave < prestamos; clave++) {
+                Prestamo prestamo = prestamoDAO.buscarPorClave(clave);
+                salida.writeUTF(prestamo.getId());
+                salida.writeInt(prestamo.getClaveUsuario());
+                salida.writeInt(prestamo.getClaveBicicleta());
+                salida.writeLong(prestamo.getMarcaPrestamo());
+                salida.writeLong(prestamo.getMarcaDevolucion());
+            }
+            salida.flush();
+            // El CRC cubre todo lo anterior y se escribe fuera del flujo que lo calcula
+            new DataOutputStream(archivoSalida).writeInt((int) crc.getValue());
+            // Sin esto, tras un corte el reemplazo podría quedar apuntando a datos no escritos
+            canal.force(true);
+        }
+        Files.move(temporal, archivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Carga en DAOs vacíos los datos guardados en el archivo indicado.
+     *
+     * @param archivo      Archivo de origen.
+     * @param bicicletaDAO DAO de bicicletas vacío.
+     * @param usuarioDAO   DAO de usuarios vacío.
+     * @param prestamoDAO  DAO de préstamos vacío.
+     * @return {@code false} si el archivo no existe y los DAOs quedan vacíos.
+     * @throws IOException Si el archivo no es una copia válida o no se puede leer.
+     */
+    public static boolean cargar(Path archivo, BicicletaDAO bicicletaDAO, UsuarioDAO usuarioDAO,
+            PrestamoDAO prestamoDAO) throws IOException {
+        if (!Files.exists(archivo)) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        try (InputStream archivoEntrada = new BufferedInputStream(Files.newInputStream(archivo))) {
+            DataInputStream entrada = new DataInputStream(new CheckedInputStream(archivoEntrada, crc));
+            if (entrada.readLong() != CABECERA) {
+                throw new IOException("No es una copia de comunidad: " + archivo);
+            }
+
+            int bicicletas = entrada.readInt();
+            for (int i = 0; i < bicicletas; i++) {
+                String id = entrada.readUTF();
+                String modelo = entrada.readUTF();
+                String estacion = entrada.readBoolean() ? entrada.readUTF() : null;
+                bicicletaDAO.agregarBicicleta(new Bicicleta(id, modelo, estacion));
+            }
+
+            int usuarios = entrada.readInt();
+            for (int i = 0; i < usuarios; i++) {
+                String id = entrada.readUTF();
+                usuarioDAO.agregarUsuario(new Usuario(id, entrada.readUTF()));
+            }
+
+            int prestamos = entrada.readInt();
+            for (int i = 0; i < prestamos; i++) {
+                String id = entrada.readUTF();
+                Usuario usuario = usuarioDAO.buscarPorClave(entrada.readInt());
+                Bicicleta bicicleta = bicicletaDAO.buscarPorClave(entrada.readInt());
+                Prestamo prestamo = new Prestamo(id, usuario, bicicleta, entrada.readLong());
+                prestamo.setMarcaDevolucion(entrada.readLong());
+                prestamoDAO.agregarPrestamo(prestamo);
+                if (!prestamo.estaDevuelto()) {
+                    bicicletaDAO.cambiarEstado(bicicleta, EstadoBicicleta.DISPONIBLE, EstadoBicicleta.PRESTADA);
+                    usuario.setTienePrestamo(true);
+                }
+            }
+
+            int esperado = (int) crc.getValue();
+            if (new DataInputStream(archivoEntrada).readInt() != esperado) {
+                throw new IOException("Copia de comunidad dañada: " + archivo);
+            }
+        }
+        return true;
+    }
+}
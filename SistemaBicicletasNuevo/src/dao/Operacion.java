@@ -0,0 +1,128 @@
+
+package dao;
+
+/**
+ * Operación registrada en el {@link DiarioOperaciones}: un alta de bicicleta
+ * o de usuario, un préstamo, una devolución, o el inicio o fin de una
+ * reserva, con su número de secuencia.
+ *
+ * Se puede codificar como una línea de texto separada por tabuladores para
+ * enviarla a otros procesos.
+ */
+public class Operacion {
+    /**
+     * Tipos de operación que se registran en el diario. Una reserva que se
+     * convierte en préstamo no tiene fin propio: la termina el {@code PRESTAMO}.
+     */
+    public enum Tipo { REGISTRAR_BICICLETA, REGISTRAR_USUARIO, PRESTAMO, DEVOLUCION, RESERVA, FIN_RESERVA }
+
+    private final long secuencia;
+    private final long marcaTiempo;
+    private final Tipo tipo;
+    private final String[] campos;
+
+    /**
+     * Crea una operación.
+     *
+     * @param secuencia   Número de secuencia asignado por el diario.
+     * @param marcaTiempo Momento de la operación, en milisegundos desde la época.
+     * @param tipo        Tipo de operación.
+     * @param campos      Datos de la operación, según su tipo.
+     */
+    public Operacion(long secuencia, long marcaTiempo, Tipo tipo, String... campos) {
+        this.secuencia = secuencia;
+        this.marcaTiempo = marcaTiempo;
+        this.tipo = tipo;
+        this.campos = campos;
+    }
+
+    /**
+     * Obtiene el número de secuencia de la operación.
+     *
+     * @return Secuencia, empezando en 1.
+     */
+    public long getSecuencia() { return secuencia; }
+
+    /**
+     * Obtiene el momento en que ocurrió la operación.
+     *
+     * @return Milisegundos desde la época.
+     */
+    public long getMarcaTiempo() { return marcaTiempo; }
+
+    /**
+     * Obtiene el tipo de la operación.
+     *
+     * @return Tipo de operación.
+     */
+    public Tipo getTipo() { return tipo; }
+
+    /**
+     * Obtiene un dato de la operación.
+     *
+     * @param indice Posición del dato.
+     * @return El dato en esa posición.
+     */
+    public String getCampo(int indice) { return campos[indice]; }
+
+    /**
+     * Codifica la operación como una línea de texto, sin salto de línea final.
+     *
+     * @return La operación codificada.
+     */
+    public String codificar() {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append(secuencia).append('\t').append(marcaTiempo).append('\t').append(tipo.name());
+        for (String campo : campos) {
+            sb.append('\t');
+            for (int i = 0; i < campo.length(); i++) {
+                char c = campo.charAt(i);
+                switch (c) {
+                    case '\\': sb.append("\\\\"); break;
+                    case '\t': sb.append("\\t"); break;
+                    case '\n': sb.append("\\n"); break;
+                    case '\r': sb.append("\\r"); break;
+                    default: sb.append(c);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reconstruye una operación a partir de una línea generada por {@link #codificar()}.
+     *
+     * @param linea Línea de texto.
+     * @return La operación decodificada.
+     * @throws IllegalArgumentException Si la línea no tiene el formato esperado.
+     */
+    public static Operacion decodificar(String linea) {
+        String[] partes = linea.split("\t", -1);
+        if (partes.length < 3) {
+            throw new IllegalArgumentException("Operación mal formada: " + linea);
+        }
+        String[] campos = new String[partes.length - 3];
+        for (int i = 0; i < campos.length; i++) {
+            campos[i] = desescapar(partes[i + 3]);
+        }
+        return new Operacion(Long.parseLong(partes[0]), Long.parseLong(partes[1]),
+                Tipo.valueOf(partes[2]), campos);
+    }
+
+    private static String desescapar(String campo) {
+        if (campo.indexOf('\\') < 0) {
+            return campo;
+        }
+        StringBuilder sb = new StringBuilder(campo.length());
+        for (int i = 0; i < campo.length(); i++) {
+            char c = campo.charAt(i);
+            if (c == '\\' && i + 1 < campo.length()) {
+                char siguiente = campo.charAt(++i);
+                sb.append(siguiente == 't' ? '\t' : siguiente == 'n' ? '\n' : siguiente == 'r' ? '\r' : siguiente);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -1,78 +1,393 @@
-
-package dao;
-
-import modelo.Prestamo;
-import java.util.ArrayList;
-import java.util.List;
-
-/**
- * Clase que simula el acceso a datos para objetos {@link Prestamo}.
- * Utiliza una lista en memoria como almacenamiento.
- */
-public class PrestamoDAO {
-    private List<Prestamo> prestamos = new ArrayList<>();
-
-    /**
-     * Agrega un nuevo préstamo a la lista.
-     *
-     * @param prestamo El objeto {@link Prestamo} que se desea registrar.
-     */
-    public void agregarPrestamo(Prestamo prestamo) {
-        prestamos.add(prestamo);
-    }
-
-    /**
-     * Busca un préstamo por su identificador único.
-     *
-     * @param id El ID del préstamo a buscar.
-     * @return El objeto {@link Prestamo} si se encuentra, o {@code null} si no existe.
-     */
-    public Prestamo buscarPorId(String id) {
-        for (Prestamo p : prestamos) {
-            if (p.getId().equals(id)) {
-                return p;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Obtiene todos los préstamos realizados por un usuario específico.
-     *
-     * @param idUsuario El ID del usuario.
-     * @return Una lista con los préstamos asociados al usuario.
-     */
-    public List<Prestamo> obtenerPorUsuario(String idUsuario) {
-        List<Prestamo> prestamosUsuario = new ArrayList<>();
-        for (Prestamo p : prestamos) {
-            if (p.getIdUsuario().equals(idUsuario)) {
-                prestamosUsuario.add(p);
-            }
-        }
-        return prestamosUsuario;
-    }
-
-    /**
-     * Busca si el usuario tiene un préstamo activo (sin devolución registrada).
-     *
-     * @param idUsuario El ID del usuario.
-     * @return El préstamo activo si existe, o {@code null} si no hay uno.
-     */
-    public Prestamo buscarPrestamoActivo(String idUsuario) {
-        for (Prestamo p : prestamos) {
-            if (p.getIdUsuario().equals(idUsuario) && p.getFechaDevolucion() == null) {
-                return p;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Devuelve una lista con todos los préstamos registrados.
-     *
-     * @return Una nueva lista con todos los préstamos almacenados.
-     */
-    public List<Prestamo> obtenerTodos() {
-        return new ArrayList<>(prestamos);
-    }
-}
\ No newline at end of file
+
+package dao;
+
+import modelo.Prestamo;
+import monitoreo.EventoDAO;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Clase que simula el acceso a datos para objetos {@link Prestamo}.
+ * Utiliza tablas en memoria indexadas por claves enteras: los préstamos por
+ * su propia clave, y por la clave del usuario su historial y su préstamo activo.
+ *
+ * Opcionalmente, los préstamos devueltos hace tiempo se pueden mover a un
+ * {@link ArchivoPrestamos} en disco. Las consultas de historial combinan de
+ * forma transparente los préstamos en memoria con los archivados.
+ *
+ * Las consultas de historial, el recorrido completo y el archivado emiten un
+ * {@link EventoDAO}, para distinguir en una grabación de JFR si la demora
+ * estuvo en memoria o en el disco.
+ */
+public class PrestamoDAO {
+    private static final String DAO = "PrestamoDAO";
+    private final DiccionarioIds ids = new DiccionarioIds();
+    private final TablaDensa<Prestamo> prestamos = new TablaDensa<>();
+    private final TablaDensa<List<Prestamo>> historialPorUsuario = new TablaDensa<>();
+    private final TablaDensa<Prestamo> activoPorUsuario = new TablaDensa<>();
+    private final DiarioOperaciones diario;
+    private final ArchivoPrestamos archivo;
+    private final RegistroCambios registro;
+    // Cambia cada vez que se archiva un lote, para detectar lecturas cruzadas
+    private volatile int generacionArchivo;
+
+    /**
+     * Crea un DAO de préstamos que no registra sus operaciones.
+     */
+    public PrestamoDAO() {
+        this(null);
+    }
+
+    /**
+     * Crea un DAO de préstamos que registra cada préstamo y devolución en el diario indicado.
+     *
+     * @param diario Diario de operaciones, o {@code null} para no registrar.
+     */
+    public PrestamoDAO(DiarioOperaciones diario) {
+        this(diario, null);
+    }
+
+    /**
+     * Crea un DAO de préstamos con diario y almacén frío para préstamos antiguos.
+     *
+     * @param diario  Diario de operaciones, o {@code null} para no registrar.
+     * @param archivo Almacén de préstamos archivados, o {@code null} para no archivar.
+     */
+    public PrestamoDAO(DiarioOperaciones diario, ArchivoPrestamos archivo) {
+        this(diario, archivo, null);
+    }
+
+    /**
+     * Crea un DAO de préstamos que además publica cada préstamo y devolución
+     * en el registro de cambios indicado.
+     *
+     * @param diario   Diario de operaciones, o {@code null} para no registrar.
+     * @param archivo  Almacén de préstamos archivados, o {@code null} para no archivar.
+     * @param registro Registro de cambios, o {@code null} para no publicar.
+     */
+    public PrestamoDAO(DiarioOperaciones diario, ArchivoPrestamos archivo, RegistroCambios registro) {
+        this.diario = diario;
+        this.archivo = archivo;
+        this.registro = registro;
+    }
+
+    /**
+     * Agrega un nuevo préstamo y lo indexa por usuario.
+     *
+     * @param prestamo El objeto {@link Prestamo} que se desea registrar.
+     */
+    public synchronized void agregarPrestamo(Prestamo prestamo) {
+        if (diario != null) {
+            diario.registrar(Operacion.Tipo.PRESTAMO, prestamo.getMarcaPrestamo(),
+                    prestamo.getId(), prestamo.getIdUsuario(), prestamo.getIdBicicleta());
+        }
+        prestamos.poner(ids.obtenerOCrear(prestamo.getId()), prestamo);
+        
+        int claveUsuario = prestamo.getClaveUsuario();
+        List<Prestamo> historial = historialPorUsuario.obtener(claveUsuario);
+        if (historial == null) {
+            historial = new ArrayList<>(4);
+            historialPorUsuario.poner(claveUsuario, historial);
+        }
+        historial.add(prestamo);
+        if (!prestamo.estaDevuelto()) {
+            activoPorUsuario.poner(claveUsuario, prestamo);
+        }
+        if (registro != null) {
+            registro.registrar(Cambio.Tipo.PRESTAMO_REGISTRADO, prestamo.getId(), prestamo.getIdBicicleta());
+        }
+    }
+
+    /**
+     * Registra la devolución de un préstamo y lo retira de los préstamos activos.
+     *
+     * @param prestamo        El préstamo que se cierra.
+     * @param marcaDevolucion Momento de la devolución, en milisegundos desde la época.
+     */
+    public synchronized void registrarDevolucion(Prestamo prestamo, long marcaDevolucion) {
+        if (diario != null) {
+            diario.registrar(Operacion.Tipo.DEVOLUCION, marcaDevolucion, prestamo.getId());
+        }
+        prestamo.setMarcaDevolucion(marcaDevolucion);
+        if (activoPorUsuario.obtener(prestamo.getClaveUsuario()) == prestamo) {
+            activoPorUsuario.poner(prestamo.getClaveUsuario(), null);
+        }
+        if (registro != null) {
+            registro.registrar(Cambio.Tipo.PRESTAMO_DEVUELTO, prestamo.getId(), prestamo.getIdBicicleta());
+        }
+    }
+
+    /**
+     * Ejecuta varios cambios (préstamos y devoluciones) bajo un único bloqueo
+     * del DAO y del diario, de modo que ninguna consulta ve el lote a medias y
+     * el diario los recibe seguidos y en el mismo orden.
+     *
+     * @param cambios Cambios a aplicar; pueden llamar a los demás métodos del DAO.
+     */
+    public synchronized void aplicarEnLote(Runnable cambios) {
+        if (diario == null) {
+            cambios.run();
+            return;
+        }
+        // Mismo orden de bloqueo que cada operación suelta: primero el DAO, luego el diario
+        synchronized (diario) {
+            cambios.run();
+        }
+    }
+
+    /**
+     * Busca un préstamo por su identificador único.
+     *
+     * @param id El ID del préstamo a buscar.
+     * @return El objeto {@link Prestamo} si se encuentra, o {@code null} si no existe.
+     */
+    public Prestamo buscarPorId(String id) {
+        return prestamos.obtener(ids.buscar(id));
+    }
+
+    /**
+     * Indica si el préstamo con el ID dado existió y ya se movió al almacén
+     * frío, donde {@link #buscarPorId(String)} no lo encuentra.
+     *
+     * @param id El ID del préstamo.
+     * @return {@code true} si el préstamo está archivado.
+     */
+    public boolean estaArchivado(String id) {
+        int clave = ids.buscar(id);
+        return archivo != null && clave != DiccionarioIds.SIN_CLAVE && prestamos.obtener(clave) == null;
+    }
+
+    /**
+     * Obtiene todos los préstamos realizados por un usuario específico,
+     * incluidos los archivados, ordenados por fecha de préstamo.
+     *
+     * @param claveUsuario La clave entera del usuario.
+     * @return Una lista con los préstamos asociados al usuario.
+     */
+    public List<Prestamo> obtenerPorUsuario(int claveUsuario) {
+        EventoDAO evento = new EventoDAO(DAO, "obtenerPorUsuario");
+        List<Prestamo> historial = archivo == null
+                ? obtenerEnMemoriaPorUsuario(claveUsuario) : combinarConArchivo(claveUsuario);
+        evento.terminar(claveUsuario, historial.size());
+        return historial;
+    }
+
+    private List<Prestamo> combinarConArchivo(int claveUsuario) {
+        while (true) {
+            int generacion = generacionArchivo;
+            List<Prestamo> historial = archivo.obtenerPorUsuario(claveUsuario);
+            List<Prestamo> enMemoria = obtenerEnMemoriaPorUsuario(claveUsuario);
+            // Si se archivó un lote entre ambas lecturas, se repite la consulta
+            if (generacion == generacionArchivo) {
+                if (historial.isEmpty()) {
+                    return enMemoria;
+                }
+                historial.addAll(enMemoria);
+                historial.sort(Comparator.comparingLong(Prestamo::getMarcaPrestamo));
+                return historial;
+            }
+        }
+    }
+
+    private synchronized List<Prestamo> obtenerEnMemoriaPorUsuario(int claveUsuario) {
+        List<Prestamo> historial = historialPorUsuario.obtener(claveUsuario);
+        return historial != null ? new ArrayList<>(historial) : new ArrayList<>();
+    }
+
+    /**
+     * Mueve al almacén frío los préstamos devueltos antes de la fecha indicada.
+     * El segmento se escribe sin bloquear el DAO; después, en un solo paso, se
+     * retiran los préstamos de memoria y el segmento se hace visible.
+     *
+     * @param limite Los préstamos devueltos antes de este momento, en milisegundos
+     *               desde la época, se archivan.
+     * @return Número de préstamos archivados.
+     * @throws IOException Si ocurre un error al escribir el segmento.
+     */
+    public int archivarDevueltosAntesDe(long limite) throws IOException {
+        if (archivo == null) {
+            return 0;
+        }
+        EventoDAO evento = new EventoDAO(DAO, "archivarDevueltosAntesDe");
+        List<Prestamo> candidatos = new ArrayList<>();
+        synchronized (this) {
+            for (Prestamo p : recorrerEnMemoria()) {
+                if (p.estaDevuelto() && p.getMarcaDevolucion() < limite) {
+                    candidatos.add(p);
+                }
+            }
+        }
+        if (candidatos.isEmpty()) {
+            evento.terminar(0);
+            return 0;
+        }
+        
+        // Los préstamos devueltos ya no cambian, así que se pueden escribir sin bloqueo
+        SegmentoPrestamos segmento = archivo.escribir(candidatos);
+        
+        synchronized (this) {
+            for (Prestamo p : candidatos) {
+                prestamos.poner(ids.buscar(p.getId()), null);
+                historialPorUsuario.obtener(p.getClaveUsuario()).remove(p);
+            }
+            archivo.publicar(segmento);
+            generacionArchivo++;
+        }
+        evento.terminar(candidatos.size());
+        return candidatos.size();
+    }
+
+    /**
+     * Busca si el usuario tiene un préstamo activo (sin devolución registrada).
+     *
+     * @param claveUsuario La clave entera del usuario.
+     * @return El préstamo activo si existe, o {@code null} si no hay uno.
+     */
+    public Prestamo buscarPrestamoActivo(int claveUsuario) {
+        return activoPorUsuario.obtener(claveUsuario);
+    }
+
+    /**
+     * Devuelve una lista con todos los préstamos registrados.
+     *
+     * @return Una nueva lista con todos los préstamos almacenados.
+     */
+    public List<Prestamo> obtenerTodos() {
+        EventoDAO evento = new EventoDAO(DAO, "obtenerTodos");
+        List<Prestamo> todos = new ArrayList<>();
+        for (int clave = 0, limite = prestamos.limite(); clave < limite; clave++) {
+            Prestamo p = prestamos.obtener(clave);
+            if (p != null) {
+                todos.add(p);
+            }
+        }
+        evento.terminar(todos.size());
+        return todos;
+    }
+
+    /**
+     * Recorre todos los préstamos sin copiarlos a una lista, de modo que el
+     * consumo de memoria no dependa del tamaño del historial. Primero se
+     * recorren los segmentos archivados y después los préstamos en memoria,
+     * en orden de registro.
+     *
+     * @return Un iterable perezoso sobre los préstamos almacenados.
+     */
+    public Iterable<Prestamo> recorrerTodos() {
+        if (archivo == null) {
+            return recorrerEnMemoria();
+        }
+        return () -> concatenar(partesDelRecorrido(true));
+    }
+
+    /**
+     * Recorre solo los préstamos archivados, segmento por segmento y sin
+     * copiarlos a una lista.
+     *
+     * @return Un iterable perezoso sobre los préstamos archivados; vacío si no hay almacén frío.
+     */
+    public Iterable<Prestamo> recorrerArchivados() {
+        if (archivo == null) {
+            return Collections.emptyList();
+        }
+        return () -> concatenar(partesDelRecorrido(false));
+    }
+
+    /**
+     * Fija el conjunto actual de préstamos para recorrerlo después sin
+     * bloquear el DAO. Bajo el bloqueo solo se copian la lista de segmentos
+     * archivados, que no cambian una vez escritos, y los préstamos en memoria;
+     * los segmentos se descomprimen al recorrer. Un préstamo que se archiva
+     * mientras tanto aparece una sola vez, y uno que se registra después no
+     * aparece.
+     *
+     * @return Un iterable sobre los préstamos fijados: primero los archivados
+     *         y después los de memoria, en orden de registro.
+     */
+    public Iterable<Prestamo> fijarTodos() {
+        List<SegmentoPrestamos> segmentos;
+        List<Prestamo> enMemoria = new ArrayList<>();
+        synchronized (this) {
+            segmentos = archivo != null ? archivo.segmentos() : Collections.emptyList();
+            for (Prestamo p : recorrerEnMemoria()) {
+                enMemoria.add(p);
+            }
+        }
+        return () -> {
+            List<Iterator<Prestamo>> partes = new ArrayList<>();
+            for (SegmentoPrestamos segmento : segmentos) {
+                partes.add(segmento.recorrer());
+            }
+            partes.add(enMemoria.iterator());
+            return concatenar(partes.iterator());
+        };
+    }
+
+    private static Iterator<Prestamo> concatenar(Iterator<Iterator<Prestamo>> partes) {
+        return new Iterator<Prestamo>() {
+            private Iterator<Prestamo> actual = partes.hasNext() ? partes.next() : Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!actual.hasNext() && partes.hasNext()) {
+                    actual = partes.next();
+                }
+                return actual.hasNext();
+            }
+
+            @Override
+            public Prestamo next() {
+                hasNext();
+                return actual.next();
+            }
+        };
+    }
+
+    private Iterator<Iterator<Prestamo>> partesDelRecorrido(boolean conMemoria) {
+        List<Iterator<Prestamo>> partes = new ArrayList<>();
+        for (SegmentoPrestamos segmento : archivo.segmentos()) {
+            partes.add(segmento.recorrer());
+        }
+        if (conMemoria) {
+            partes.add(new RecorridoTabla<>(prestamos));
+        }
+        return partes.iterator();
+    }
+
+    private Iterable<Prestamo> recorrerEnMemoria() {
+        return () -> new RecorridoTabla<>(prestamos);
+    }
+
+    /**
+     * Obtiene los contadores del filtro que descarta IDs de préstamos inexistentes.
+     *
+     * @return Estadísticas del filtro de IDs.
+     */
+    public EstadisticasFiltro estadisticasFiltroIds() {
+        return ids.estadisticasFiltro();
+    }
+
+    /**
+     * Busca un préstamo en memoria por su clave entera.
+     *
+     * @param clave La clave interna del préstamo.
+     * @return El préstamo, o {@code null} si no existe o ya se archivó.
+     */
+    public Prestamo buscarPorClave(int clave) {
+        return prestamos.obtener(clave);
+    }
+
+    /**
+     * Obtiene el límite superior (exclusivo) de las claves asignadas, para
+     * recorrer la tabla por tramos de claves.
+     *
+     * @return Uno más que la mayor clave en uso.
+     */
+    public int limiteClaves() {
+        return prestamos.limite();
+    }
+}
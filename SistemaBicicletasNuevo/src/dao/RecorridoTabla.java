@@ -0,0 +1,46 @@
+
+package dao;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterador perezoso sobre los valores de una {@link TablaDensa}, en orden de clave.
+ * Omite las claves sin valor y no copia la tabla.
+ *
+ * @param <T> Tipo de los valores recorridos.
+ */
+class RecorridoTabla<T> implements Iterator<T> {
+    private final TablaDensa<T> tabla;
+    private final int limite;
+    private int clave;
+    private T siguiente;
+
+    RecorridoTabla(TablaDensa<T> tabla) {
+        this.tabla = tabla;
+        this.limite = tabla.limite();
+        avanzar();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return siguiente != null;
+    }
+
+    @Override
+    public T next() {
+        if (siguiente == null) {
+            throw new NoSuchElementException();
+        }
+        T actual = siguiente;
+        avanzar();
+        return actual;
+    }
+
+    private void avanzar() {
+        siguiente = null;
+        while (siguiente == null && clave < limite) {
+            siguiente = tabla.obtener(clave++);
+        }
+    }
+}
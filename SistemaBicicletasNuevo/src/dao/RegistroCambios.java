@@ -0,0 +1,114 @@
+
+package dao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registro acotado de los cambios hechos en los DAOs, para que otros sistemas
+ * (facturación, la aplicación de ciclistas) se sincronicen por incrementos.
+ *
+ * Cada cambio recibe un número de secuencia creciente, común a los tres DAOs.
+ * Un consumidor guarda la última secuencia que procesó y pide
+ * {@link #cambiosDesde(long, int)}; el costo depende solo del número de
+ * cambios devueltos. Se conservan los últimos {@code capacidad} cambios en un
+ * arreglo circular; si un consumidor se atrasa más que eso, debe volver a
+ * leer todo y continuar desde {@link #ultimaSecuencia()}.
+ *
+ * A diferencia del {@link DiarioOperaciones}, que guarda solo las operaciones
+ * que una réplica necesita reproducir, aquí también se publican los cambios de
+ * estado de las bicicletas (reservas incluidas).
+ */
+public class RegistroCambios {
+    /** Cambios que se conservan si no se indica otra capacidad. */
+    public static final int CAPACIDAD_PREDETERMINADA = 100_000;
+
+    private final Cambio[] cambios;
+    private long ultima;
+
+    /**
+     * Crea un registro con la capacidad predeterminada.
+     */
+    public RegistroCambios() {
+        this(CAPACIDAD_PREDETERMINADA);
+    }
+
+    /**
+     * Crea un registro que conserva los últimos cambios indicados.
+     *
+     * @param capacidad Número de cambios que se conservan.
+     */
+    public RegistroCambios(int capacidad) {
+        if (capacidad <= 0) {
+            throw new IllegalArgumentException("La capacidad debe ser positiva: " + capacidad);
+        }
+        this.cambios = new Cambio[capacidad];
+    }
+
+    /**
+     * Agrega un cambio con la siguiente secuencia; si el registro está lleno,
+     * reemplaza al más antiguo.
+     *
+     * @param tipo  Tipo de cambio.
+     * @param id    ID de la entidad que cambió.
+     * @param valor Dato nuevo, según el tipo.
+     * @return El cambio registrado.
+     */
+    public synchronized Cambio registrar(Cambio.Tipo tipo, String id, String valor) {
+        Cambio cambio = new Cambio(ultima + 1, System.currentTimeMillis(), tipo, id, valor);
+        cambios[(int) (ultima % cambios.length)] = cambio;
+        ultima++;
+        return cambio;
+    }
+
+    /**
+     * Obtiene la secuencia del último cambio registrado.
+     *
+     * @return Última secuencia, o 0 si no hay cambios.
+     */
+    public synchronized long ultimaSecuencia() {
+        return ultima;
+    }
+
+    /**
+     * Obtiene la secuencia del cambio más antiguo que se conserva.
+     *
+     * @return Primera secuencia disponible, o 1 si no hay cambios.
+     */
+    public synchronized long primeraSecuencia() {
+        return Math.max(1, ultima - cambios.length + 1);
+    }
+
+    /**
+     * Obtiene todos los cambios posteriores a una secuencia.
+     *
+     * @param secuencia Última secuencia que ya procesó el consumidor (0 al empezar).
+     * @return Los cambios siguientes, en orden.
+     * @throws IllegalStateException Si alguno de esos cambios ya se descartó.
+     */
+    public List<Cambio> cambiosDesde(long secuencia) {
+        return cambiosDesde(secuencia, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Obtiene hasta {@code maximo} cambios posteriores a una secuencia.
+     *
+     * @param secuencia Última secuencia que ya procesó el consumidor (0 al empezar).
+     * @param maximo    Número máximo de cambios a devolver.
+     * @return Los cambios siguientes, en orden; vacío si no hay nuevos.
+     * @throws IllegalStateException Si alguno de esos cambios ya se descartó y
+     *                               el consumidor debe volver a leer todo.
+     */
+    public synchronized List<Cambio> cambiosDesde(long secuencia, int maximo) {
+        if (secuencia + 1 < primeraSecuencia()) {
+            throw new IllegalStateException("Los cambios posteriores a " + secuencia
+                    + " ya no se conservan; el más antiguo es " + primeraSecuencia());
+        }
+        long hasta = Math.min(ultima, secuencia + Math.max(0, maximo));
+        List<Cambio> encontrados = new ArrayList<>((int) Math.max(0, hasta - secuencia));
+        for (long s = secuencia; s < hasta; s++) {
+            encontrados.add(cambios[(int) (s % cambios.length)]);
+        }
+        return encontrados;
+    }
+}
@@ -0,0 +1,301 @@
+
+package dao;
+
+import modelo.Prestamo;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Segmento inmutable de préstamos devueltos guardado en disco.
+ *
+ * Los préstamos se ordenan por clave de usuario y fecha, y se agrupan en
+ * bloques comprimidos de {@value #PRESTAMOS_POR_BLOQUE} registros. Al final del
+ * archivo hay un índice disperso con el rango de claves de usuario de cada
+ * bloque, de modo que el historial de un usuario solo descomprime los bloques
+ * que pueden contenerlo. El índice se lee la primera vez que se consulta el
+ * segmento.
+ *
+ * Formato: cabecera {@code BICISEG1}, bloques comprimidos, índice
+ * (número de bloques y, por bloque, primera y última clave de usuario,
+ * posición y longitud) y, al final, la posición donde empieza el índice.
+ */
+class SegmentoPrestamos {
+    private static final long CABECERA = 0x4249434953454731L; // "BICISEG1"
+    private static final int PRESTAMOS_POR_BLOQUE = 256;
+
+    private final Path archivo;
+    private int[] primeraClave;
+    private int[] ultimaClave;
+    private long[] posicion;
+    private int[] longitud;
+
+    private SegmentoPrestamos(Path archivo) {
+        this.archivo = archivo;
+    }
+
+    /**
+     * Abre un segmento existente sin leerlo todavía.
+     *
+     * @param archivo Archivo del segmento.
+     * @return El segmento.
+     */
+    static SegmentoPrestamos abrir(Path archivo) {
+        return new SegmentoPrestamos(archivo);
+    }
+
+    /**
+     * Escribe un segmento nuevo con los préstamos dados. Se escribe primero en
+     * un archivo temporal, se fuerza a disco y luego se renombra, para que un
+     * fallo nunca deje un segmento a medias.
+     *
+     * @param archivo   Archivo de destino.
+     * @param prestamos Préstamos devueltos a guardar; se ordenan aquí.
+     * @return El segmento escrito.
+     * @throws IOException Si ocurre un error al escribir.
+     */
+    static SegmentoPrestamos escribir(Path archivo, List<Prestamo> prestamos) throws IOException {
+        List<Prestamo> ordenados = new ArrayList<>(prestamos);
+        ordenados.sort((a, b) -> a.getClaveUsuario() != b.getClaveUsuario()
+                ? Integer.compare(a.getClaveUsuario(), b.getClaveUsuario())
+                : Long.compare(a.getMarcaPrestamo(), b.getMarcaPrestamo()));
+
+        int bloques = (ordenados.size() + PRESTAMOS_POR_BLOQUE - 1) / PRESTAMOS_POR_BLOQUE;
+        SegmentoPrestamos segmento = new SegmentoPrestamos(archivo);
+        segmento.primeraClave = new int[bloques];
+        segmento.ultimaClave = new int[bloques];
+        segmento.posicion = new long[bloques];
+        segmento.longitud = new int[bloques];
+
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        Deflater compresor = new Deflater(Deflater.BEST_SPEED);
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            escribirTodo(canal, ByteBuffer.allocate(8).putLong(0, CABECERA));
+            long desplazamiento = 8;
+
+            for (int b = 0; b < bloques; b++) {
+                int desde = b * PRESTAMOS_POR_BLOQUE;
+                int hasta = Math.min(ordenados.size(), desde + PRESTAMOS_POR_BLOQUE);
+                byte[] comprimido = comprimir(compresor, ordenados.subList(desde, hasta));
+
+                segmento.primeraClave[b] = ordenados.get(desde).getClaveUsuario();
+                segmento.ultimaClave[b] = ordenados.get(hasta - 1).getClaveUsuario();
+                segmento.posicion[b] = desplazamiento;
+                segmento.longitud[b] = comprimido.length;
+                escribirTodo(canal, ByteBuffer.wrap(comprimido));
+                desplazamiento += comprimido.length;
+            }
+
+            ByteBuffer indice = ByteBuffer.allocate(4 + bloques * 20 + 8);
+            indice.putInt(bloques);
+            for (int b = 0; b < bloques; b++) {
+                indice.putInt(segmento.primeraClave[b]).putInt(segmento.ultimaClave[b])
+                      .putLong(segmento.posicion[b]).putInt(segmento.longitud[b]);
+            }
+            indice.putLong(desplazamiento);
+            indice.flip();
+            escribirTodo(canal, indice);
+            canal.force(true);
+        } finally {
+            compresor.end();
+        }
+        Files.move(temporal, archivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return segmento;
+    }
+
+    /**
+     * Obtiene los préstamos archivados de un usuario.
+     *
+     * @param claveUsuario Clave entera del usuario.
+     * @return Préstamos del usuario en este segmento, por fecha.
+     * @throws IOException Si ocurre un error al leer.
+     */
+    synchronized List<Prestamo> obtenerPorUsuario(int claveUsuario) throws IOException {
+        cargarIndice();
+        List<Prestamo> encontrados = new ArrayList<>();
+        // Primer bloque cuya última clave alcanza la buscada
+        int bajo = 0;
+        int alto = ultimaClave.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (ultimaClave[medio] < claveUsuario) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        for (int b = bajo; b < primeraClave.length && primeraClave[b] <= claveUsuario; b++) {
+            for (Prestamo p : leerBloque(b)) {
+                if (p.getClaveUsuario() == claveUsuario) {
+                    encontrados.add(p);
+                }
+            }
+        }
+        return encontrados;
+    }
+
+    /**
+     * Recorre todos los préstamos del segmento, descomprimiendo un bloque a la vez.
+     *
+     * @return Iterador perezoso sobre los préstamos del segmento.
+     */
+    Iterator<Prestamo> recorrer() {
+        return new Iterator<Prestamo>() {
+            private int bloque;
+            private Iterator<Prestamo> actual = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    synchronized (SegmentoPrestamos.this) {
+                        cargarIndice();
+                        while (!actual.hasNext() && bloque < posicion.length) {
+                            actual = leerBloque(bloque++).iterator();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return actual.hasNext();
+            }
+
+            @Override
+            public Prestamo next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return actual.next();
+            }
+        };
+    }
+
+    private void cargarIndice() throws IOException {
+        if (posicion != null) {
+            return;
+        }
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            ByteBuffer cabecera = leer(canal, 0, 8);
+            if (cabecera.getLong() != CABECERA) {
+                throw new IOException("No es un segmento de préstamos: " + archivo);
+            }
+            long inicioIndice = leer(canal, canal.size() - 8, 8).getLong();
+            ByteBuffer indice = leer(canal, inicioIndice, (int) (canal.size() - 8 - inicioIndice));
+            int bloques = indice.getInt();
+            int[] primeras = new int[bloques];
+            int[] ultimas = new int[bloques];
+            long[] posiciones = new long[bloques];
+            int[] longitudes = new int[bloques];
+            for (int b = 0; b < bloques; b++) {
+                primeras[b] = indice.getInt();
+                ultimas[b] = indice.getInt();
+                posiciones[b] = indice.getLong();
+                longitudes[b] = indice.getInt();
+            }
+            primeraClave = primeras;
+            ultimaClave = ultimas;
+            longitud = longitudes;
+            posicion = posiciones;
+        }
+    }
+
+    private List<Prestamo> leerBloque(int b) throws IOException {
+        byte[] comprimido;
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            comprimido = leer(canal, posicion[b], longitud[b]).array();
+        }
+        Inflater descompresor = new Inflater();
+        ByteArrayOutputStream datos = new ByteArrayOutputStream(comprimido.length * 4);
+        try {
+            descompresor.setInput(comprimido);
+            byte[] tramo = new byte[8192];
+            while (!descompresor.finished()) {
+                int leidos = descompresor.inflate(tramo);
+                if (leidos == 0 && descompresor.needsInput()) {
+                    throw new IOException("Bloque truncado en " + archivo);
+                }
+                datos.write(tramo, 0, leidos);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Bloque dañado en " + archivo, e);
+        } finally {
+            descompresor.end();
+        }
+
+        DataInputStream entrada = new DataInputStream(new ByteArrayInputStream(datos.toByteArray()));
+        int total = entrada.readInt();
+        List<Prestamo> prestamos = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            String id = entrada.readUTF();
+            String idUsuario = entrada.readUTF();
+            int claveUsuario = entrada.readInt();
+            String idBicicleta = entrada.readUTF();
+            int claveBicicleta = entrada.readInt();
+            long marcaPrestamo = entrada.readLong();
+            long marcaDevolucion = entrada.readLong();
+            prestamos.add(new Prestamo(id, idUsuario, claveUsuario, idBicicleta, claveBicicleta,
+                    marcaPrestamo, marcaDevolucion));
+        }
+        return prestamos;
+    }
+
+    private static byte[] comprimir(Deflater compresor, List<Prestamo> bloque) throws IOException {
+        ByteArrayOutputStream datos = new ByteArrayOutputStream();
+        DataOutputStream salida = new DataOutputStream(datos);
+        salida.writeInt(bloque.size());
+        for (Prestamo p : bloque) {
+            salida.writeUTF(p.getId());
+            salida.writeUTF(p.getIdUsuario());
+            salida.writeInt(p.getClaveUsuario());
+            salida.writeUTF(p.getIdBicicleta());
+            salida.writeInt(p.getClaveBicicleta());
+            salida.writeLong(p.getMarcaPrestamo());
+            salida.writeLong(p.getMarcaDevolucion());
+        }
+        salida.flush();
+
+        compresor.reset();
+        compresor.setInput(datos.toByteArray());
+        compresor.finish();
+        ByteArrayOutputStream comprimido = new ByteArrayOutputStream(datos.size() / 2);
+        byte[] tramo = new byte[8192];
+        while (!compresor.finished()) {
+            comprimido.write(tramo, 0, compresor.deflate(tramo));
+        }
+        return comprimido.toByteArray();
+    }
+
+    private static ByteBuffer leer(FileChannel canal, long desde, int bytes) throws IOException {
+        ByteBuffer bufer = ByteBuffer.allocate(bytes);
+        while (bufer.hasRemaining()) {
+            if (canal.read(bufer, desde + bufer.position()) < 0) {
+                throw new IOException("Segmento truncado");
+            }
+        }
+        bufer.flip();
+        return bufer;
+    }
+
+    private static void escribirTodo(FileChannel canal, ByteBuffer bufer) throws IOException {
+        while (bufer.hasRemaining()) {
+            canal.write(bufer);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+
+package dao;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Tabla de objetos indexada directamente por una clave entera densa.
+ * Equivale a un mapa {@code int -> T} sin dispersión ni objetos intermedios.
+ * Las lecturas no toman bloqueos; las escrituras se serializan.
+ *
+ * @param <T> Tipo de los valores almacenados.
+ */
+public class TablaDensa<T> {
+    private volatile AtomicReferenceArray<T> valores = new AtomicReferenceArray<>(16);
+    private volatile int limite;
+
+    /**
+     * Obtiene el valor asociado a una clave.
+     *
+     * @param clave Clave entera.
+     * @return El valor, o {@code null} si la clave no tiene valor.
+     */
+    public T obtener(int clave) {
+        AtomicReferenceArray<T> v = valores;
+        return clave >= 0 && clave < v.length() ? v.get(clave) : null;
+    }
+
+    /**
+     * Asocia un valor a una clave, ampliando la tabla si hace falta.
+     *
+     * @param clave Clave entera no negativa.
+     * @param valor Valor a guardar; {@code null} borra la asociación.
+     */
+    public synchronized void poner(int clave, T valor) {
+        AtomicReferenceArray<T> v = valores;
+        if (clave >= v.length()) {
+            AtomicReferenceArray<T> nuevos = new AtomicReferenceArray<>(Math.max(clave + 1, v.length() << 1));
+            for (int i = 0; i < v.length(); i++) {
+                nuevos.set(i, v.get(i));
+            }
+            valores = v = nuevos;
+        }
+        v.set(clave, valor);
+        if (clave >= limite) {
+            limite = clave + 1;
+        }
+    }
+
+    /**
+     * Obtiene el límite superior (exclusivo) de las claves usadas.
+     *
+     * @return Uno más que la mayor clave asignada.
+     */
+    public int limite() {
+        return limite;
+    }
+}
@@ -1,47 +1,165 @@
-
-package dao;
-
-import modelo.Usuario;
-import java.util.ArrayList;
-import java.util.List;
-
-/**
- * Clase que simula el acceso a datos para objetos de tipo {@link Usuario}.
- * Utiliza una lista en memoria como fuente de almacenamiento.
- */
-public class UsuarioDAO {
-    private List<Usuario> usuarios = new ArrayList<>();
-
-    /**
-     * Agrega un nuevo usuario a la lista.
-     *
-     * @param usuario El objeto {@link Usuario} que se desea agregar.
-     */
-    public void agregarUsuario(Usuario usuario) {
-        usuarios.add(usuario);
-    }
-
-    /**
-     * Busca un usuario en la lista según su identificador único.
-     *
-     * @param id El ID del usuario a buscar.
-     * @return El objeto {@link Usuario} si se encuentra, o {@code null} si no existe.
-     */
-    public Usuario buscarPorId(String id) {
-        for (Usuario u : usuarios) {
-            if (u.getId().equals(id)) {
-                return u;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Obtiene una lista con todos los usuarios registrados.
-     *
-     * @return Una nueva lista que contiene todos los usuarios.
-     */
-    public List<Usuario> obtenerTodos() {
-        return new ArrayList<>(usuarios);
-    }
-}
\ No newline at end of file
+
+package dao;
+
+import modelo.Usuario;
+import monitoreo.EventoDAO;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Clase que simula el acceso a datos para objetos de tipo {@link Usuario}.
+ * Utiliza una tabla en memoria indexada por la clave entera de cada usuario.
+ * El recorrido completo y la búsqueda por nombre emiten un {@link EventoDAO}.
+ */
+public class UsuarioDAO {
+    private static final String DAO = "UsuarioDAO";
+    private final DiccionarioIds ids = new DiccionarioIds();
+    private final TablaDensa<Usuario> usuarios = new TablaDensa<>();
+    private final IndiceTexto nombres = new IndiceTexto();
+    private final DiarioOperaciones diario;
+    private final RegistroCambios registro;
+
+    /**
+     * Crea un DAO de usuarios que no registra sus operaciones.
+     */
+    public UsuarioDAO() {
+        this(null);
+    }
+
+    /**
+     * Crea un DAO de usuarios que registra cada alta en el diario indicado.
+     *
+     * @param diario Diario de operaciones, o {@code null} para no registrar.
+     */
+    public UsuarioDAO(DiarioOperaciones diario) {
+        this(diario, null);
+    }
+
+    /**
+     * Crea un DAO de usuarios que además publica cada alta en el registro de cambios indicado.
+     *
+     * @param diario   Diario de operaciones, o {@code null} para no registrar.
+     * @param registro Registro de cambios, o {@code null} para no publicar.
+     */
+    public UsuarioDAO(DiarioOperaciones diario, RegistroCambios registro) {
+        this.diario = diario;
+        this.registro = registro;
+    }
+
+    /**
+     * Agrega un nuevo usuario, le asigna su clave entera e indexa su nombre.
+     * Si ya existe un usuario con el mismo ID, se conserva el existente.
+     *
+     * @param usuario El objeto {@link Usuario} que se desea agregar.
+     */
+    public synchronized void agregarUsuario(Usuario usuario) {
+        int clave = ids.obtenerOCrear(usuario.getId());
+        if (usuarios.obtener(clave) != null) {
+            return;
+        }
+        usuario.asignarClave(clave);
+        if (diario != null) {
+            diario.registrar(Operacion.Tipo.REGISTRAR_USUARIO, System.currentTimeMillis(),
+                    usuario.getId(), usuario.getNombre());
+        }
+        usuarios.poner(clave, usuario);
+        nombres.agregar(usuario.getNombre(), clave);
+        if (registro != null) {
+            registro.registrar(Cambio.Tipo.USUARIO_REGISTRADO, usuario.getId(), usuario.getNombre());
+        }
+    }
+
+    /**
+     * Busca un usuario según su identificador único.
+     *
+     * @param id El ID del usuario a buscar.
+     * @return El objeto {@link Usuario} si se encuentra, o {@code null} si no existe.
+     */
+    public Usuario buscarPorId(String id) {
+        return usuarios.obtener(ids.buscar(id));
+    }
+
+    /**
+     * Busca un usuario por su clave entera.
+     *
+     * @param clave La clave interna del usuario.
+     * @return El objeto {@link Usuario} si se encuentra, o {@code null} si no existe.
+     */
+    public Usuario buscarPorClave(int clave) {
+        return usuarios.obtener(clave);
+    }
+
+    /**
+     * Busca usuarios cuyo nombre tenga alguna palabra que empiece por el texto
+     * dado, sin distinguir mayúsculas ni acentos y tolerando un error de escritura.
+     *
+     * @param texto Texto escrito hasta el momento.
+     * @param maximo Número máximo de resultados.
+     * @return Los usuarios encontrados, más relevantes primero.
+     */
+    public List<Usuario> buscarPorNombre(String texto, int maximo) {
+        EventoDAO evento = new EventoDAO(DAO, "buscarPorNombre");
+        List<Usuario> encontrados = new ArrayList<>();
+        for (int clave : nombres.buscar(texto, maximo)) {
+            encontrados.add(usuarios.obtener(clave));
+        }
+        evento.terminar(texto, encontrados.size());
+        return encontrados;
+    }
+
+    /**
+     * Cambia la marca de préstamo activo de un usuario y publica el cambio.
+     * Los préstamos y devoluciones no lo necesitan: su cambio ya lo publica
+     * el DAO de préstamos. Sirve para corregir una marca desalineada.
+     *
+     * @param usuario       Usuario registrado.
+     * @param tienePrestamo Valor nuevo de la marca.
+     */
+    public void cambiarMarcaPrestamo(Usuario usuario, boolean tienePrestamo) {
+        if (registro == null) {
+            usuario.setTienePrestamo(tienePrestamo);
+            return;
+        }
+        synchronized (registro) {
+            usuario.setTienePrestamo(tienePrestamo);
+            registro.registrar(Cambio.Tipo.MARCA_USUARIO, usuario.getId(), Boolean.toString(tienePrestamo));
+        }
+    }
+
+    /**
+     * Obtiene una lista con todos los usuarios registrados.
+     *
+     * @return Una nueva lista que contiene todos los usuarios.
+     */
+    public List<Usuario> obtenerTodos() {
+        EventoDAO evento = new EventoDAO(DAO, "obtenerTodos");
+        List<Usuario> todos = new ArrayList<>();
+        for (int clave = 0, limite = usuarios.limite(); clave < limite; clave++) {
+            Usuario u = usuarios.obtener(clave);
+            if (u != null) {
+                todos.add(u);
+            }
+        }
+        evento.terminar(todos.size());
+        return todos;
+    }
+
+    /**
+     * Obtiene los contadores del filtro que descarta IDs de usuarios inexistentes.
+     *
+     * @return Estadísticas del filtro de IDs.
+     */
+    public EstadisticasFiltro estadisticasFiltroIds() {
+        return ids.estadisticasFiltro();
+    }
+
+    /**
+     * Obtiene el límite superior (exclusivo) de las claves asignadas, para
+     * recorrer la tabla por tramos de claves.
+     *
+     * @return Uno más que la mayor clave en uso.
+     */
+    public int limiteClaves() {
+        return usuarios.limite();
+    }
+}
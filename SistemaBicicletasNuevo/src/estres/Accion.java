@@ -0,0 +1,104 @@
+
+package estres;
+
+import modelo.Prestamo;
+import servicio.PrestamoService;
+
+/**
+ * Una operación que un hilo ejecuta contra {@link PrestamoService} durante
+ * una ronda, junto con su resultado y el intervalo de tiempo en que ocurrió.
+ *
+ * Usuarios, bicicletas y préstamos se identifican por un índice pequeño
+ * ({@code U0}, {@code B1}, {@code P2}...). El resultado se guarda como entero:
+ * 1 o 0 para préstamos y devoluciones, y el índice del préstamo activo (o -1)
+ * para las consultas.
+ */
+final class Accion {
+
+    /** Tipos de operación que se hacen competir. */
+    enum Tipo { PRESTAR, DEVOLVER, CONSULTAR }
+
+    final Tipo tipo;
+    final int hilo;
+    final int usuario;
+    final int bicicleta;
+    final int prestamo;
+    private final String idUsuario;
+    private final String idBicicleta;
+    private final String idPrestamo;
+
+    int resultado;
+    long inicio;
+    long fin;
+
+    private Accion(Tipo tipo, int hilo, int usuario, int bicicleta, int prestamo) {
+        this.tipo = tipo;
+        this.hilo = hilo;
+        this.usuario = usuario;
+        this.bicicleta = bicicleta;
+        this.prestamo = prestamo;
+        // Los IDs se arman antes de medir para no alargar el intervalo
+        this.idUsuario = "U" + usuario;
+        this.idBicicleta = "B" + bicicleta;
+        this.idPrestamo = "P" + prestamo;
+    }
+
+    static Accion prestar(int hilo, int prestamo, int usuario, int bicicleta) {
+        return new Accion(Tipo.PRESTAR, hilo, usuario, bicicleta, prestamo);
+    }
+
+    static Accion devolver(int hilo, int prestamo) {
+        return new Accion(Tipo.DEVOLVER, hilo, -1, -1, prestamo);
+    }
+
+    static Accion consultar(int hilo, int usuario) {
+        return new Accion(Tipo.CONSULTAR, hilo, usuario, -1, -1);
+    }
+
+    /**
+     * Ejecuta la operación y registra su resultado y su intervalo.
+     *
+     * @param servicio Servicio contra el que se ejecuta.
+     */
+    void ejecutar(PrestamoService servicio) {
+        inicio = System.nanoTime();
+        switch (tipo) {
+            case PRESTAR:
+                resultado = servicio.realizarPrestamo(idPrestamo, idUsuario, idBicicleta) ? 1 : 0;
+                break;
+            case DEVOLVER:
+                resultado = servicio.registrarDevolucion(idPrestamo) ? 1 : 0;
+                break;
+            default:
+                Prestamo activo = servicio.buscarPrestamoActivo(idUsuario);
+                resultado = activo == null ? -1 : Integer.parseInt(activo.getId().substring(1));
+        }
+        fin = System.nanoTime();
+    }
+
+    /**
+     * Describe la operación y su resultado para el informe.
+     *
+     * @param origen Instante tomado como cero para los tiempos.
+     * @return Texto de una línea.
+     */
+    String describir(long origen) {
+        String operacion;
+        String salida;
+        switch (tipo) {
+            case PRESTAR:
+                operacion = "realizarPrestamo(" + idPrestamo + ", " + idUsuario + ", " + idBicicleta + ")";
+                salida = String.valueOf(resultado == 1);
+                break;
+            case DEVOLVER:
+                operacion = "registrarDevolucion(" + idPrestamo + ")";
+                salida = String.valueOf(resultado == 1);
+                break;
+            default:
+                operacion = "buscarPrestamoActivo(" + idUsuario + ")";
+                salida = resultado < 0 ? "null" : "P" + resultado;
+        }
+        return "hilo " + hilo + ": " + operacion + " -> " + salida
+                + "  [" + (inicio - origen) + " ns, " + (fin - origen) + " ns]";
+    }
+}
@@ -0,0 +1,322 @@
+
+package estres;
+
+import dao.BicicletaDAO;
+import dao.PrestamoDAO;
+import dao.UsuarioDAO;
+import modelo.Bicicleta;
+import modelo.EstadoBicicleta;
+import modelo.EstadoUsuario;
+import modelo.Prestamo;
+import modelo.Usuario;
+import servicio.PrestamoService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Prueba de estrés de los préstamos con muchos hilos compitiendo.
+ *
+ * Uso: {@code java estres.EstresPrestamos [rondas] [operaciones] [hilos] [semilla]}.
+ *
+ * Tiene dos fases:
+ * <ul>
+ *   <li><b>Linealizabilidad</b>: en cada ronda se crea un sistema nuevo con
+ *   {@value #USUARIOS} usuarios, {@value #BICICLETAS} bicicletas y
+ *   {@value #PRESTAMOS} IDs de préstamo, y cada hilo ejecuta a la vez unas
+ *   pocas acciones al azar (prestar, devolver, consultar). El historial
+ *   observado se contrasta con {@link ModeloPrestamos}; si ningún orden
+ *   secuencial lo explica, se informa el historial completo.</li>
+ *   <li><b>Carga</b>: un solo sistema con muchos usuarios y bicicletas recibe
+ *   millones de acciones; cada cierto número de ellas los hilos se detienen
+ *   y se comprueban los invariantes.</li>
+ * </ul>
+ * Al terminar cada ronda y cada tramo de carga se exige que el préstamo
+ * activo de cada usuario, {@link Usuario#tienePrestamo()}, su estado en la
+ * vista de consulta y el estado de cada bicicleta coincidan. El proceso termina con código 1 si se encontró
+ * alguna violación.
+ */
+public class EstresPrestamos {
+    static final int USUARIOS = 2;
+    static final int BICICLETAS = 2;
+    static final int PRESTAMOS = 4;
+    private static final int ACCIONES_POR_HILO = 2;
+    private static final int USUARIOS_CARGA = 256;
+    private static final int BICICLETAS_CARGA = 128;
+    private static final int ACCIONES_POR_TRAMO = 20_000;
+    private static final int MAXIMO_INFORMADAS = 5;
+
+    private final int hilos;
+    private final SplittableRandom azar;
+    private final List<String> violaciones = new ArrayList<>();
+    private int informadas;
+
+    // Estado de la ronda en curso; solo lo cambia la acción de la barrera
+    private Sistema sistema;
+    private PrestamoService servicio;
+    private ModeloPrestamos inicial;
+    private List<Accion> historial;
+    private List<List<Accion>> guiones;
+    private int rondaActual;
+    private boolean terminado;
+
+    private EstresPrestamos(int hilos, long semilla) {
+        this.hilos = hilos;
+        this.azar = new SplittableRandom(semilla);
+    }
+
+    /**
+     * Ejecuta ambas fases e imprime el resumen.
+     *
+     * @param args Rondas de linealizabilidad, acciones de carga, hilos y semilla (opcionales).
+     * @throws InterruptedException Si el hilo principal se interrumpe.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int rondas = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        long operaciones = args.length > 1 ? Long.parseLong(args[1]) : 2_000_000L;
+        int hilos = args.length > 2 ? Integer.parseInt(args[2])
+                : Math.max(4, Runtime.getRuntime().availableProcessors());
+        long semilla = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+        System.out.println("semilla=" + semilla + " hilos=" + hilos);
+
+        EstresPrestamos prueba = new EstresPrestamos(hilos, semilla);
+        long inicio = System.nanoTime();
+        long acciones = prueba.linealizabilidad(rondas);
+        System.out.println("linealizabilidad: " + rondas + " rondas, " + acciones + " acciones, "
+                + (System.nanoTime() - inicio) / 1_000_000 + " ms");
+
+        inicio = System.nanoTime();
+        long tramos = prueba.carga(operaciones);
+        System.out.println("carga: " + operaciones + " acciones, " + tramos + " comprobaciones, "
+                + (System.nanoTime() - inicio) / 1_000_000 + " ms");
+
+        System.out.println("violaciones: " + prueba.violaciones.size());
+        if (!prueba.violaciones.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    private long linealizabilidad(int rondas) throws InterruptedException {
+        CyclicBarrier barrera = new CyclicBarrier(hilos, () -> {
+            if (rondaActual > 0) {
+                verificarRonda();
+            }
+            if (rondaActual++ == rondas) {
+                terminado = true;
+            } else {
+                prepararRonda();
+            }
+        });
+        Thread[] trabajadores = new Thread[hilos];
+        for (int h = 0; h < hilos; h++) {
+            int hilo = h;
+            trabajadores[h] = new Thread(() -> {
+                try {
+                    while (true) {
+                        barrera.await();
+                        if (terminado) {
+                            return;
+                        }
+                        for (Accion accion : guiones.get(hilo)) {
+                            accion.ejecutar(servicio);
+                        }
+                    }
+                } catch (InterruptedException | BrokenBarrierException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "estres-" + h);
+            trabajadores[h].start();
+        }
+        for (Thread t : trabajadores) {
+            t.join();
+        }
+        return (long) rondas * hilos * ACCIONES_POR_HILO;
+    }
+
+    private void prepararRonda() {
+        sistema = new Sistema(USUARIOS, BICICLETAS);
+        servicio = sistema.servicio;
+        inicial = new ModeloPrestamos(PRESTAMOS);
+        // La mitad de las rondas empieza con un préstamo abierto, para que haya qué devolver
+        if (azar.nextBoolean()) {
+            Accion previa = Accion.prestar(-1, 0, 0, 0);
+            previa.ejecutar(servicio);
+            inicial.aplicar(previa);
+        }
+        historial = new ArrayList<>(hilos * ACCIONES_POR_HILO);
+        guiones = new ArrayList<>(hilos);
+        for (int h = 0; h < hilos; h++) {
+            List<Accion> guion = new ArrayList<>(ACCIONES_POR_HILO);
+            for (int i = 0; i < ACCIONES_POR_HILO; i++) {
+                guion.add(accionAlAzar(h));
+            }
+            guiones.add(guion);
+            historial.addAll(guion);
+        }
+    }
+
+    private Accion accionAlAzar(int hilo) {
+        int tipo = azar.nextInt(100);
+        if (tipo < 45) {
+            return Accion.prestar(hilo, azar.nextInt(PRESTAMOS), azar.nextInt(USUARIOS), azar.nextInt(BICICLETAS));
+        }
+        if (tipo < 75) {
+            return Accion.devolver(hilo, azar.nextInt(PRESTAMOS));
+        }
+        return Accion.consultar(hilo, azar.nextInt(USUARIOS));
+    }
+
+    private void verificarRonda() {
+        if (!inicial.esLinealizable(historial)) {
+            long origen = Long.MAX_VALUE;
+            for (Accion accion : historial) {
+                origen = Math.min(origen, accion.inicio);
+            }
+            StringBuilder sb = new StringBuilder("ronda ").append(rondaActual)
+                    .append(": historial no linealizable");
+            List<Accion> ordenado = new ArrayList<>(historial);
+            ordenado.sort((a, b) -> Long.compare(a.inicio, b.inicio));
+            for (Accion accion : ordenado) {
+                sb.append("\n    ").append(accion.describir(origen));
+            }
+            informar(sb.toString());
+        }
+        for (String problema : sistema.comprobarInvariantes()) {
+            informar("ronda " + rondaActual + ": " + problema);
+        }
+    }
+
+    private long carga(long operaciones) throws InterruptedException {
+        Sistema carga = new Sistema(USUARIOS_CARGA, BICICLETAS_CARGA);
+        // IDs de préstamos recientes, para que las devoluciones apunten a préstamos reales
+        AtomicReferenceArray<String> recientes = new AtomicReferenceArray<>(4096);
+        long porHilo = operaciones / hilos;
+        long[] comprobaciones = new long[1];
+        CyclicBarrier barrera = new CyclicBarrier(hilos, () -> {
+            comprobaciones[0]++;
+            for (String problema : carga.comprobarInvariantes()) {
+                informar("carga, comprobación " + comprobaciones[0] + ": " + problema);
+            }
+        });
+
+        Thread[] trabajadores = new Thread[hilos];
+        for (int h = 0; h < hilos; h++) {
+            int hilo = h;
+            SplittableRandom azarHilo = azar.split();
+            trabajadores[h] = new Thread(() -> {
+                try {
+                    long siguienteId = 0;
+                    for (long hechas = 0; hechas < porHilo; ) {
+                        long tramo = Math.min(ACCIONES_POR_TRAMO, porHilo - hechas);
+                        for (long i = 0; i < tramo; i++) {
+                            int tipo = azarHilo.nextInt(100);
+                            String idUsuario = "U" + azarHilo.nextInt(USUARIOS_CARGA);
+                            if (tipo < 35) {
+                                String idPrestamo = "H" + hilo + "-" + siguienteId++;
+                                if (carga.servicio.realizarPrestamo(idPrestamo, idUsuario,
+                                        "B" + azarHilo.nextInt(BICICLETAS_CARGA))) {
+                                    recientes.set(azarHilo.nextInt(recientes.length()), idPrestamo);
+                                }
+                            } else if (tipo < 75) {
+                                String idPrestamo = recientes.get(azarHilo.nextInt(recientes.length()));
+                                if (idPrestamo != null) {
+                                    carga.servicio.registrarDevolucion(idPrestamo);
+                                }
+                            } else {
+                                carga.servicio.buscarPrestamoActivo(idUsuario);
+                            }
+                        }
+                        hechas += tramo;
+                        barrera.await();
+                    }
+                } catch (InterruptedException | BrokenBarrierException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "carga-" + h);
+            trabajadores[h].start();
+        }
+        for (Thread t : trabajadores) {
+            t.join();
+        }
+        return comprobaciones[0];
+    }
+
+    private void informar(String violacion) {
+        violaciones.add(violacion);
+        if (informadas++ < MAXIMO_INFORMADAS) {
+            System.out.println("VIOLACIÓN " + violacion);
+        }
+    }
+
+    /** DAOs y servicio de un sistema en memoria, con sus usuarios y bicicletas. */
+    private static final class Sistema {
+        final UsuarioDAO usuarioDAO = new UsuarioDAO();
+        final BicicletaDAO bicicletaDAO = new BicicletaDAO();
+        final PrestamoDAO prestamoDAO = new PrestamoDAO();
+        final PrestamoService servicio = new PrestamoService(prestamoDAO, usuarioDAO, bicicletaDAO);
+
+        Sistema(int usuarios, int bicicletas) {
+            for (int u = 0; u < usuarios; u++) {
+                usuarioDAO.agregarUsuario(new Usuario("U" + u, "Usuario " + u));
+            }
+            for (int b = 0; b < bicicletas; b++) {
+                bicicletaDAO.agregarBicicleta(new Bicicleta("B" + b, "Urbana"));
+            }
+        }
+
+        /**
+         * Comprueba, con el sistema en reposo, que préstamos activos, usuarios
+         * y bicicletas cuentan la misma historia.
+         *
+         * @return Descripción de cada invariante roto; vacía si todo coincide.
+         */
+        List<String> comprobarInvariantes() {
+            List<String> problemas = new ArrayList<>();
+            Map<String, Prestamo> abiertoPorBicicleta = new HashMap<>();
+            for (Prestamo p : prestamoDAO.recorrerTodos()) {
+                if (p.estaDevuelto()) {
+                    continue;
+                }
+                Prestamo otro = abiertoPorBicicleta.put(p.getIdBicicleta(), p);
+                if (otro != null) {
+                    problemas.add(p.getIdBicicleta() + " está en dos préstamos abiertos: "
+                            + otro.getId() + " y " + p.getId());
+                }
+                if (prestamoDAO.buscarPrestamoActivo(p.getClaveUsuario()) != p) {
+                    problemas.add(p.getId() + " está abierto pero no es el préstamo activo de "
+                            + p.getIdUsuario());
+                }
+            }
+            for (Usuario usuario : usuarioDAO.obtenerTodos()) {
+                Prestamo activo = prestamoDAO.buscarPrestamoActivo(usuario.getClave());
+                if (usuario.tienePrestamo() != (activo != null)) {
+                    problemas.add(usuario.getId() + ": tienePrestamo=" + usuario.tienePrestamo()
+                            + " pero su préstamo activo es " + (activo == null ? "null" : activo.getId()));
+                }
+                if (activo != null && activo.estaDevuelto()) {
+                    problemas.add(usuario.getId() + ": su préstamo activo " + activo.getId() + " ya fue devuelto");
+                }
+                EstadoUsuario estado = servicio.consultarEstadoUsuario(usuario.getId());
+                String enVista = estado.getIdPrestamo();
+                if (activo == null ? enVista != null : !activo.getId().equals(enVista)) {
+                    problemas.add(usuario.getId() + ": la vista muestra el préstamo " + enVista
+                            + " pero su préstamo activo es " + (activo == null ? "null" : activo.getId()));
+                }
+            }
+            for (Bicicleta bicicleta : bicicletaDAO.obtenerTodas()) {
+                boolean prestada = bicicleta.getEstado() == EstadoBicicleta.PRESTADA;
+                Prestamo abierto = abiertoPorBicicleta.get(bicicleta.getId());
+                if (prestada != (abierto != null)) {
+                    problemas.add(bicicleta.getId() + ": estado " + bicicleta.getEstado()
+                            + " pero su préstamo abierto es " + (abierto == null ? "null" : abierto.getId()));
+                }
+            }
+            return problemas;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+
+package estres;
+
+import java.util.List;
+
+/**
+ * Especificación secuencial de préstamos, devoluciones y consultas sobre
+ * unos pocos usuarios, bicicletas e IDs de préstamo.
+ *
+ * Sirve para decidir si un historial concurrente es linealizable: se buscan
+ * órdenes de las acciones que respeten el tiempo real (si una terminó antes
+ * de que otra empezara, va primero) y se acepta el historial si alguno
+ * reproduce exactamente los resultados observados.
+ */
+final class ModeloPrestamos {
+    private static final int INEXISTENTE = 0;
+    private static final int ACTIVO = 1;
+    private static final int DEVUELTO = 2;
+
+    private final int[] estado;
+    private final int[] usuario;
+    private final int[] bicicleta;
+
+    /**
+     * Crea un modelo sin préstamos.
+     *
+     * @param prestamos Número de IDs de préstamo posibles.
+     */
+    ModeloPrestamos(int prestamos) {
+        this(new int[prestamos], new int[prestamos], new int[prestamos]);
+    }
+
+    private ModeloPrestamos(int[] estado, int[] usuario, int[] bicicleta) {
+        this.estado = estado;
+        this.usuario = usuario;
+        this.bicicleta = bicicleta;
+    }
+
+    private ModeloPrestamos copia() {
+        return new ModeloPrestamos(estado.clone(), usuario.clone(), bicicleta.clone());
+    }
+
+    /**
+     * Aplica una acción al modelo.
+     *
+     * @param accion Acción a aplicar; solo se leen su tipo y sus argumentos.
+     * @return El resultado que la acción debe dar en este estado.
+     */
+    int aplicar(Accion accion) {
+        int p = accion.prestamo;
+        switch (accion.tipo) {
+            case PRESTAR:
+                if (estado[p] != INEXISTENTE || activo(accion.usuario) >= 0
+                        || bicicletaPrestada(accion.bicicleta)) {
+                    return 0;
+                }
+                estado[p] = ACTIVO;
+                usuario[p] = accion.usuario;
+                bicicleta[p] = accion.bicicleta;
+                return 1;
+            case DEVOLVER:
+                if (estado[p] != ACTIVO) {
+                    return 0;
+                }
+                estado[p] = DEVUELTO;
+                return 1;
+            default:
+                return activo(accion.usuario);
+        }
+    }
+
+    private int activo(int u) {
+        for (int p = 0; p < estado.length; p++) {
+            if (estado[p] == ACTIVO && usuario[p] == u) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    private boolean bicicletaPrestada(int b) {
+        for (int p = 0; p < estado.length; p++) {
+            if (estado[p] == ACTIVO && bicicleta[p] == b) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indica si un historial concurrente es linealizable a partir de este estado.
+     *
+     * @param historial Acciones ejecutadas, con resultados e intervalos; las de
+     *                  un mismo hilo, en el orden en que se ejecutaron.
+     * @return {@code true} si existe un orden secuencial válido.
+     */
+    boolean esLinealizable(List<Accion> historial) {
+        return buscarOrden(this, historial, new boolean[historial.size()], historial.size());
+    }
+
+    private static boolean buscarOrden(ModeloPrestamos modelo, List<Accion> historial,
+            boolean[] aplicadas, int pendientes) {
+        if (pendientes == 0) {
+            return true;
+        }
+        // Ninguna acción puede ir antes de una pendiente que ya había terminado cuando empezó
+        long primerFin = Long.MAX_VALUE;
+        for (int i = 0; i < aplicadas.length; i++) {
+            if (!aplicadas[i]) {
+                primerFin = Math.min(primerFin, historial.get(i).fin);
+            }
+        }
+        for (int i = 0; i < aplicadas.length; i++) {
+            Accion accion = historial.get(i);
+            if (aplicadas[i] || accion.inicio > primerFin || anteriorPendiente(historial, aplicadas, i)) {
+                continue;
+            }
+            ModeloPrestamos siguiente = modelo.copia();
+            if (siguiente.aplicar(accion) != accion.resultado) {
+                continue;
+            }
+            aplicadas[i] = true;
+            if (buscarOrden(siguiente, historial, aplicadas, pendientes - 1)) {
+                return true;
+            }
+            aplicadas[i] = false;
+        }
+        return false;
+    }
+
+    /** Indica si queda pendiente una acción anterior del mismo hilo. */
+    private static boolean anteriorPendiente(List<Accion> historial, boolean[] aplicadas, int i) {
+        for (int j = 0; j < i; j++) {
+            if (!aplicadas[j] && historial.get(j).hilo == historial.get(i).hilo) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,31 +1,48 @@
-
-package main;
-
-import javax.swing.SwingUtilities;
-
-import controller.BicicletasController;
-
-/**
- * Clase principal que inicia la aplicación de préstamo de bicicletas.
- * 
- * Esta clase contiene el método `main`, que es el punto de entrada de la aplicación.
- * Se encarga de crear una instancia del controlador {@link BicicletasController},
- * lo que a su vez inicializa la interfaz gráfica y los servicios necesarios.
- * 
- * @author 
- */
-public class Main {
-
-    /**
-     * Método principal que lanza la aplicación.
-     * 
-     * @param args Argumentos de línea de comandos (no utilizados en esta aplicación).
-     */
-    public static void main(String[] args) {
-        SwingUtilities.invokeLater(new Runnable() {
-            public void run() {
-                new BicicletasController();
-            }
-        });
-    }
-}
+
+package main;
+
+import javax.swing.SwingUtilities;
+
+import controller.BicicletasController;
+import controller.MedicionArranque;
+
+/**
+ * Clase principal que inicia la aplicación de préstamo de bicicletas.
+ * 
+ * Esta clase contiene el método `main`, que es el punto de entrada de la aplicación.
+ * Se encarga de crear una instancia del controlador {@link BicicletasController},
+ * lo que a su vez inicializa la interfaz gráfica y los servicios necesarios.
+ * 
+ * Con el argumento {@code --rapido} (o la propiedad del sistema
+ * {@code bicicletas.arranqueRapido=true}) la ventana se muestra de inmediato
+ * y los datos se cargan en segundo plano. Con la propiedad
+ * {@code bicicletas.arranque.medir=true} los tiempos de cada fase del
+ * arranque se imprimen en la salida estándar.
+ * 
+ * @author 
+ */
+public class Main {
+
+    /** Propiedad del sistema que activa el arranque rápido. */
+    public static final String PROPIEDAD_ARRANQUE_RAPIDO = "bicicletas.arranqueRapido";
+
+    /**
+     * Método principal que lanza la aplicación.
+     * 
+     * @param args Argumentos de línea de comandos; {@code --rapido} activa el arranque rápido.
+     */
+    public static void main(String[] args) {
+        MedicionArranque medicion = new MedicionArranque();
+        boolean rapido = Boolean.getBoolean(PROPIEDAD_ARRANQUE_RAPIDO);
+        for (String arg : args) {
+            rapido |= "--rapido".equals(arg);
+        }
+        boolean arranqueRapido = rapido;
+        
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                new BicicletasController(arranqueRapido, medicion);
+            }
+        });
+    }
+}
@@ -1,53 +1,125 @@
-
-package modelo;
-
-/**
- * Representa una bicicleta que puede ser prestada dentro del sistema.
- * Contiene información sobre su identificador, modelo y estado de disponibilidad.
- */
-public class Bicicleta {
-    private String id;
-    private String modelo;
-    private boolean disponible;
-
-    /**
-     * Crea una nueva bicicleta con el identificador y modelo especificados.
-     * Por defecto, la bicicleta se marca como disponible.
-     *
-     * @param id      Identificador único de la bicicleta.
-     * @param modelo  Modelo o descripción de la bicicleta.
-     */
-    public Bicicleta(String id, String modelo) {
-        this.id = id;
-        this.modelo = modelo;
-        this.disponible = true;
-    }
-
-    /**
-     * Obtiene el identificador único de la bicicleta.
-     *
-     * @return ID de la bicicleta.
-     */
-    public String getId() { return id; }
-
-    /**
-     * Obtiene el modelo o descripción de la bicicleta.
-     *
-     * @return Modelo de la bicicleta.
-     */
-    public String getModelo() { return modelo; }
-
-    /**
-     * Indica si la bicicleta está actualmente disponible para préstamo.
-     *
-     * @return {@code true} si está disponible, {@code false} en caso contrario.
-     */
-    public boolean isDisponible() { return disponible; }
-
-    /**
-     * Establece el estado de disponibilidad de la bicicleta.
-     *
-     * @param disponible {@code true} para marcar como disponible, {@code false} para no disponible.
-     */
-    public void setDisponible(boolean disponible) { this.disponible = disponible; }
+
+package modelo;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Representa una bicicleta que puede ser prestada dentro del sistema.
+ * Contiene información sobre su identificador, modelo y estado de disponibilidad.
+ *
+ * El estado se modifica sin bloqueos mediante {@link #cambiarEstado}, de modo que
+ * una reserva, un préstamo o un vencimiento concurrentes nunca se pisan entre sí.
+ */
+public class Bicicleta {
+    private static final AtomicReferenceFieldUpdater<Bicicleta, EstadoBicicleta> ESTADO =
+            AtomicReferenceFieldUpdater.newUpdater(Bicicleta.class, EstadoBicicleta.class, "estado");
+
+    private String id;
+    private int clave = -1;
+    private String modelo;
+    private volatile EstadoBicicleta estado;
+    private volatile String estacion;
+
+    /**
+     * Crea una nueva bicicleta con el identificador y modelo especificados.
+     * Por defecto, la bicicleta se marca como disponible y sin estación.
+     *
+     * @param id      Identificador único de la bicicleta.
+     * @param modelo  Modelo o descripción de la bicicleta.
+     */
+    public Bicicleta(String id, String modelo) {
+        this(id, modelo, null);
+    }
+
+    /**
+     * Crea una nueva bicicleta disponible en una estación.
+     *
+     * @param id       Identificador único de la bicicleta.
+     * @param modelo   Modelo o descripción de la bicicleta.
+     * @param estacion ID de la estación donde se encuentra, o {@code null} si no se conoce.
+     */
+    public Bicicleta(String id, String modelo, String estacion) {
+        this.id = id;
+        this.modelo = modelo;
+        this.estacion = estacion;
+        this.estado = EstadoBicicleta.DISPONIBLE;
+    }
+
+    /**
+     * Obtiene la clave entera densa de la bicicleta, asignada por el DAO al registrarla.
+     *
+     * @return Clave interna, o -1 si aún no se ha registrado.
+     */
+    public int getClave() { return clave; }
+
+    /**
+     * Asigna la clave entera densa de la bicicleta. Solo debe invocarla el DAO.
+     *
+     * @param clave Clave interna asignada.
+     */
+    public void asignarClave(int clave) { this.clave = clave; }
+
+    /**
+     * Obtiene el identificador único de la bicicleta.
+     *
+     * @return ID de la bicicleta.
+     */
+    public String getId() { return id; }
+
+    /**
+     * Obtiene el modelo o descripción de la bicicleta.
+     *
+     * @return Modelo de la bicicleta.
+     */
+    public String getModelo() { return modelo; }
+
+    /**
+     * Obtiene la estación donde se dejó la bicicleta por última vez.
+     *
+     * @return ID de la estación, o {@code null} si no se conoce.
+     */
+    public String getEstacion() { return estacion; }
+
+    /**
+     * Registra la estación donde se deja la bicicleta, por ejemplo al devolverla.
+     *
+     * @param estacion ID de la estación.
+     */
+    public void setEstacion(String estacion) { this.estacion = estacion; }
+
+    /**
+     * Indica si la bicicleta está actualmente disponible para préstamo.
+     *
+     * @return {@code true} si está disponible, {@code false} en caso contrario.
+     */
+    public boolean isDisponible() { return estado == EstadoBicicleta.DISPONIBLE; }
+
+    /**
+     * Establece el estado de disponibilidad de la bicicleta.
+     * No actualiza los contadores por modelo; para bicicletas registradas
+     * debe usarse {@code BicicletaDAO.cambiarEstado}.
+     *
+     * @param disponible {@code true} para marcar como disponible, {@code false} para no disponible.
+     */
+    public void setDisponible(boolean disponible) {
+        this.estado = disponible ? EstadoBicicleta.DISPONIBLE : EstadoBicicleta.PRESTADA;
+    }
+
+    /**
+     * Obtiene el estado actual de la bicicleta.
+     *
+     * @return Estado de la bicicleta.
+     */
+    public EstadoBicicleta getEstado() { return estado; }
+
+    /**
+     * Cambia el estado de la bicicleta solo si su estado actual es el esperado.
+     *
+     * @param esperado Estado en el que debe encontrarse la bicicleta.
+     * @param nuevo    Estado al que se desea pasar.
+     * @return {@code true} si el cambio se aplicó, {@code false} si el estado era otro.
+     */
+    public boolean cambiarEstado(EstadoBicicleta esperado, EstadoBicicleta nuevo) {
+        return ESTADO.compareAndSet(this, esperado, nuevo);
+    }
 }
\ No newline at end of file
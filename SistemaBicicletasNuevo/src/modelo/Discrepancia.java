@@ -0,0 +1,72 @@
+
+package modelo;
+
+/**
+ * Diferencia entre lo que dicen los préstamos registrados y una marca
+ * derivada de ellos, encontrada por el verificador de consistencia.
+ */
+public class Discrepancia {
+
+    /** Dato que no coincide con los préstamos. */
+    public enum Tipo {
+        /** {@link Usuario#tienePrestamo()} no coincide con sus préstamos abiertos. */
+        MARCA_USUARIO,
+        /** El estado de la bicicleta no coincide con sus préstamos abiertos. */
+        ESTADO_BICICLETA,
+        /** El usuario o la bicicleta aparece en más de un préstamo abierto; no se repara sola. */
+        PRESTAMOS_DUPLICADOS
+    }
+
+    private final Tipo tipo;
+    private final String id;
+    private final String detalle;
+    private final boolean reparada;
+
+    /**
+     * Crea una discrepancia.
+     *
+     * @param tipo     Dato que no coincide.
+     * @param id       ID del usuario o de la bicicleta afectada.
+     * @param detalle  Qué se esperaba y qué se encontró.
+     * @param reparada Si la marca ya se corrigió.
+     */
+    public Discrepancia(Tipo tipo, String id, String detalle, boolean reparada) {
+        this.tipo = tipo;
+        this.id = id;
+        this.detalle = detalle;
+        this.reparada = reparada;
+    }
+
+    /**
+     * Obtiene el dato que no coincide.
+     *
+     * @return Tipo de discrepancia.
+     */
+    public Tipo getTipo() { return tipo; }
+
+    /**
+     * Obtiene el ID del usuario o de la bicicleta afectada.
+     *
+     * @return ID afectado.
+     */
+    public String getId() { return id; }
+
+    /**
+     * Obtiene la descripción de lo esperado y lo encontrado.
+     *
+     * @return Detalle legible.
+     */
+    public String getDetalle() { return detalle; }
+
+    /**
+     * Indica si la marca se corrigió.
+     *
+     * @return true si se reparó.
+     */
+    public boolean isReparada() { return reparada; }
+
+    @Override
+    public String toString() {
+        return tipo + " " + id + ": " + detalle + (reparada ? " (reparada)" : "");
+    }
+}
@@ -0,0 +1,14 @@
+
+package modelo;
+
+/**
+ * Estados posibles de una {@link Bicicleta} dentro del sistema.
+ */
+public enum EstadoBicicleta {
+    /** La bicicleta está en el anclaje y puede prestarse. */
+    DISPONIBLE,
+    /** La bicicleta está apartada temporalmente para un usuario. */
+    RESERVADA,
+    /** La bicicleta está prestada a un usuario. */
+    PRESTADA
+}
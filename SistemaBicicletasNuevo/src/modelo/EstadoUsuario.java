@@ -0,0 +1,115 @@
+
+package modelo;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Estado de un usuario tal como lo muestra la pantalla de consulta: sus datos,
+ * su préstamo activo y el modelo de la bicicleta prestada, ya unidos.
+ *
+ * Es inmutable; cada préstamo o devolución reemplaza el estado del usuario
+ * por uno nuevo, así que quien lo lee nunca ve una mezcla de dos momentos.
+ */
+public class EstadoUsuario {
+    private final String idUsuario;
+    private final String nombre;
+    private final String idPrestamo;
+    private final String idBicicleta;
+    private final String modeloBicicleta;
+    private final long marcaPrestamo;
+
+    private EstadoUsuario(String idUsuario, String nombre, String idPrestamo, String idBicicleta,
+            String modeloBicicleta, long marcaPrestamo) {
+        this.idUsuario = idUsuario;
+        this.nombre = nombre;
+        this.idPrestamo = idPrestamo;
+        this.idBicicleta = idBicicleta;
+        this.modeloBicicleta = modeloBicicleta;
+        this.marcaPrestamo = marcaPrestamo;
+    }
+
+    /**
+     * Crea el estado de un usuario sin préstamo activo.
+     *
+     * @param usuario Usuario consultado.
+     * @return Estado sin préstamo.
+     */
+    public static EstadoUsuario sinPrestamo(Usuario usuario) {
+        return new EstadoUsuario(usuario.getId(), usuario.getNombre(), null, null, null, Prestamo.SIN_FECHA);
+    }
+
+    /**
+     * Crea el estado de un usuario con un préstamo activo.
+     *
+     * @param usuario   Usuario consultado.
+     * @param prestamo  Su préstamo activo.
+     * @param bicicleta Bicicleta del préstamo.
+     * @return Estado con el préstamo y el modelo de la bicicleta.
+     */
+    public static EstadoUsuario conPrestamo(Usuario usuario, Prestamo prestamo, Bicicleta bicicleta) {
+        return new EstadoUsuario(usuario.getId(), usuario.getNombre(), prestamo.getId(),
+                prestamo.getIdBicicleta(), bicicleta.getModelo(), prestamo.getMarcaPrestamo());
+    }
+
+    /**
+     * Obtiene el ID del usuario.
+     *
+     * @return ID del usuario.
+     */
+    public String getIdUsuario() { return idUsuario; }
+
+    /**
+     * Obtiene el nombre del usuario.
+     *
+     * @return Nombre del usuario.
+     */
+    public String getNombre() { return nombre; }
+
+    /**
+     * Indica si el usuario tiene un préstamo activo.
+     *
+     * @return true si tiene un préstamo activo.
+     */
+    public boolean tienePrestamo() { return idPrestamo != null; }
+
+    /**
+     * Obtiene el ID del préstamo activo.
+     *
+     * @return ID del préstamo, o null si no tiene.
+     */
+    public String getIdPrestamo() { return idPrestamo; }
+
+    /**
+     * Obtiene el ID de la bicicleta prestada.
+     *
+     * @return ID de la bicicleta, o null si no tiene préstamo.
+     */
+    public String getIdBicicleta() { return idBicicleta; }
+
+    /**
+     * Obtiene el modelo de la bicicleta prestada.
+     *
+     * @return Modelo de la bicicleta, o null si no tiene préstamo.
+     */
+    public String getModeloBicicleta() { return modeloBicicleta; }
+
+    /**
+     * Obtiene el inicio del préstamo activo.
+     *
+     * @return Milisegundos desde la época, o {@link Prestamo#SIN_FECHA} si no tiene préstamo.
+     */
+    public long getMarcaPrestamo() { return marcaPrestamo; }
+
+    /**
+     * Obtiene el inicio del préstamo activo.
+     *
+     * @param zona Zona horaria en que se expresa la fecha.
+     * @return Fecha y hora del préstamo, o null si no tiene préstamo.
+     */
+    public LocalDateTime getFechaPrestamo(ZoneId zona) {
+        return tienePrestamo()
+                ? LocalDateTime.ofInstant(Instant.ofEpochMilli(marcaPrestamo), zona) : null;
+    }
+}
@@ -0,0 +1,93 @@
+
+package modelo;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado de una pasada del verificador de consistencia: cuánto se
+ * revisó, qué discrepancias se confirmaron y cuánto tardó.
+ */
+public class InformeConsistencia {
+    private final int prestamosRevisados;
+    private final int usuariosRevisados;
+    private final int bicicletasRevisadas;
+    private final List<Discrepancia> discrepancias;
+    private final Duration duracion;
+
+    /**
+     * Crea el informe de una pasada.
+     *
+     * @param prestamosRevisados  Préstamos en memoria recorridos.
+     * @param usuariosRevisados   Usuarios comparados.
+     * @param bicicletasRevisadas Bicicletas comparadas.
+     * @param discrepancias       Discrepancias confirmadas.
+     * @param duracion            Tiempo total de la pasada.
+     */
+    public InformeConsistencia(int prestamosRevisados, int usuariosRevisados, int bicicletasRevisadas,
+            List<Discrepancia> discrepancias, Duration duracion) {
+        this.prestamosRevisados = prestamosRevisados;
+        this.usuariosRevisados = usuariosRevisados;
+        this.bicicletasRevisadas = bicicletasRevisadas;
+        this.discrepancias = Collections.unmodifiableList(discrepancias);
+        this.duracion = duracion;
+    }
+
+    /**
+     * Obtiene cuántos préstamos se recorrieron.
+     *
+     * @return Préstamos revisados.
+     */
+    public int getPrestamosRevisados() { return prestamosRevisados; }
+
+    /**
+     * Obtiene cuántos usuarios se compararon.
+     *
+     * @return Usuarios revisados.
+     */
+    public int getUsuariosRevisados() { return usuariosRevisados; }
+
+    /**
+     * Obtiene cuántas bicicletas se compararon.
+     *
+     * @return Bicicletas revisadas.
+     */
+    public int getBicicletasRevisadas() { return bicicletasRevisadas; }
+
+    /**
+     * Obtiene las discrepancias confirmadas.
+     *
+     * @return Lista inmodificable; vacía si todo coincide.
+     */
+    public List<Discrepancia> getDiscrepancias() { return discrepancias; }
+
+    /**
+     * Cuenta las discrepancias que se repararon.
+     *
+     * @return Número de discrepancias reparadas.
+     */
+    public int getReparadas() {
+        int reparadas = 0;
+        for (Discrepancia d : discrepancias) {
+            if (d.isReparada()) {
+                reparadas++;
+            }
+        }
+        return reparadas;
+    }
+
+    /**
+     * Obtiene el tiempo que tomó la pasada, incluidas las pausas si fue en segundo plano.
+     *
+     * @return Duración de la pasada.
+     */
+    public Duration getDuracion() { return duracion; }
+
+    @Override
+    public String toString() {
+        return prestamosRevisados + " préstamos, " + usuariosRevisados + " usuarios y "
+                + bicicletasRevisadas + " bicicletas revisados en " + duracion.toMillis() + " ms: "
+                + discrepancias.size() + " discrepancias, " + getReparadas() + " reparadas";
+    }
+}
@@ -0,0 +1,51 @@
+
+package modelo;
+
+/**
+ * Traslado de bicicletas de una estación a otra propuesto por el
+ * planificador de rebalanceo.
+ */
+public class MovimientoRebalanceo {
+    private final String origen;
+    private final String destino;
+    private final int cantidad;
+
+    /**
+     * Crea un movimiento.
+     *
+     * @param origen   ID de la estación de donde se retiran las bicicletas.
+     * @param destino  ID de la estación a donde se llevan.
+     * @param cantidad Número de bicicletas a trasladar.
+     */
+    public MovimientoRebalanceo(String origen, String destino, int cantidad) {
+        this.origen = origen;
+        this.destino = destino;
+        this.cantidad = cantidad;
+    }
+
+    /**
+     * Obtiene la estación de origen.
+     *
+     * @return ID de la estación de origen.
+     */
+    public String getOrigen() { return origen; }
+
+    /**
+     * Obtiene la estación de destino.
+     *
+     * @return ID de la estación de destino.
+     */
+    public String getDestino() { return destino; }
+
+    /**
+     * Obtiene cuántas bicicletas se trasladan.
+     *
+     * @return Número de bicicletas.
+     */
+    public int getCantidad() { return cantidad; }
+
+    @Override
+    public String toString() {
+        return origen + " -> " + destino + ": " + cantidad;
+    }
+}
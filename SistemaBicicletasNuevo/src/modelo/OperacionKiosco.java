@@ -0,0 +1,88 @@
+
+package modelo;
+
+import java.time.LocalDateTime;
+
+/**
+ * Operación registrada por un kiosco mientras estaba sin conexión, para
+ * aplicarse después junto con las demás de su lote.
+ * Una operación es inmutable y conserva la hora en que ocurrió en el kiosco.
+ */
+public class OperacionKiosco {
+
+    /** Clases de operación que puede registrar un kiosco. */
+    public enum Tipo { PRESTAMO, DEVOLUCION }
+
+    private final Tipo tipo;
+    private final String idPrestamo;
+    private final String idUsuario;
+    private final String idBicicleta;
+    private final LocalDateTime fecha;
+
+    private OperacionKiosco(Tipo tipo, String idPrestamo, String idUsuario, String idBicicleta, LocalDateTime fecha) {
+        this.tipo = tipo;
+        this.idPrestamo = idPrestamo;
+        this.idUsuario = idUsuario;
+        this.idBicicleta = idBicicleta;
+        this.fecha = fecha;
+    }
+
+    /**
+     * Crea la operación de un préstamo hecho en el kiosco.
+     *
+     * @param idPrestamo  ID único del préstamo.
+     * @param idUsuario   ID del usuario que se llevó la bicicleta.
+     * @param idBicicleta ID de la bicicleta prestada.
+     * @param fecha       Fecha y hora del préstamo en el kiosco.
+     * @return La operación.
+     */
+    public static OperacionKiosco prestamo(String idPrestamo, String idUsuario, String idBicicleta, LocalDateTime fecha) {
+        return new OperacionKiosco(Tipo.PRESTAMO, idPrestamo, idUsuario, idBicicleta, fecha);
+    }
+
+    /**
+     * Crea la operación de una devolución hecha en el kiosco.
+     *
+     * @param idPrestamo ID del préstamo que se cierra.
+     * @param fecha      Fecha y hora de la devolución en el kiosco.
+     * @return La operación.
+     */
+    public static OperacionKiosco devolucion(String idPrestamo, LocalDateTime fecha) {
+        return new OperacionKiosco(Tipo.DEVOLUCION, idPrestamo, null, null, fecha);
+    }
+
+    /**
+     * Obtiene la clase de operación.
+     *
+     * @return Préstamo o devolución.
+     */
+    public Tipo getTipo() { return tipo; }
+
+    /**
+     * Obtiene el ID del préstamo al que se refiere la operación.
+     *
+     * @return ID del préstamo.
+     */
+    public String getIdPrestamo() { return idPrestamo; }
+
+    /**
+     * Obtiene el ID del usuario; solo aplica a los préstamos.
+     *
+     * @return ID del usuario, o {@code null} en una devolución.
+     */
+    public String getIdUsuario() { return idUsuario; }
+
+    /**
+     * Obtiene el ID de la bicicleta; solo aplica a los préstamos.
+     *
+     * @return ID de la bicicleta, o {@code null} en una devolución.
+     */
+    public String getIdBicicleta() { return idBicicleta; }
+
+    /**
+     * Obtiene la fecha y hora en que ocurrió la operación en el kiosco.
+     *
+     * @return Fecha de la operación.
+     */
+    public LocalDateTime getFecha() { return fecha; }
+}
@@ -1,77 +1,169 @@
-
-package modelo;
-
-import java.time.LocalDateTime;
-
-/**
- * Representa un préstamo de una bicicleta por parte de un usuario.
- * Contiene información sobre el usuario, la bicicleta prestada,
- * la fecha del préstamo y, opcionalmente, la fecha de devolución.
- */
-public class Prestamo {
-    private String id;
-    private String idUsuario;
-    private String idBicicleta;
-    private LocalDateTime fechaPrestamo;
-    private LocalDateTime fechaDevolucion;
-
-    /**
-     * Crea un nuevo préstamo con la información del usuario y la bicicleta prestada.
-     * La fecha del préstamo se asigna automáticamente con la hora actual.
-     *
-     * @param id           Identificador único del préstamo.
-     * @param idUsuario    ID del usuario que realiza el préstamo.
-     * @param idBicicleta  ID de la bicicleta prestada.
-     */
-    public Prestamo(String id, String idUsuario, String idBicicleta) {
-        this.id = id;
-        this.idUsuario = idUsuario;
-        this.idBicicleta = idBicicleta;
-        this.fechaPrestamo = LocalDateTime.now();
-    }
-
-    /**
-     * Obtiene el identificador del préstamo.
-     *
-     * @return ID del préstamo.
-     */
-    public String getId() { return id; }
-
-    /**
-     * Obtiene el ID del usuario que realizó el préstamo.
-     *
-     * @return ID del usuario.
-     */
-    public String getIdUsuario() { return idUsuario; }
-
-    /**
-     * Obtiene el ID de la bicicleta prestada.
-     *
-     * @return ID de la bicicleta.
-     */
-    public String getIdBicicleta() { return idBicicleta; }
-
-    /**
-     * Obtiene la fecha y hora en que se realizó el préstamo.
-     *
-     * @return Fecha del préstamo.
-     */
-    public LocalDateTime getFechaPrestamo() { return fechaPrestamo; }
-
-    /**
-     * Obtiene la fecha y hora en que se devolvió la bicicleta.
-     * Si aún no se ha devuelto, devuelve {@code null}.
-     *
-     * @return Fecha de devolución o {@code null} si no se ha devuelto.
-     */
-    public LocalDateTime getFechaDevolucion() { return fechaDevolucion; }
-
-    /**
-     * Establece la fecha y hora de devolución de la bicicleta.
-     *
-     * @param fechaDevolucion Fecha de devolución a establecer.
-     */
-    public void setFechaDevolucion(LocalDateTime fechaDevolucion) { 
-        this.fechaDevolucion = fechaDevolucion; 
-    }
+
+package modelo;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Representa un préstamo de una bicicleta por parte de un usuario.
+ * Contiene información sobre el usuario, la bicicleta prestada,
+ * la fecha del préstamo y, opcionalmente, la fecha de devolución.
+ *
+ * Además de los identificadores de texto (las mismas instancias que guardan
+ * el usuario y la bicicleta, sin copias), conserva sus claves enteras para
+ * que los índices y las uniones trabajen con enteros primitivos.
+ *
+ * Las fechas se guardan como milisegundos desde la época; los objetos
+ * {@link LocalDateTime} solo se crean al pedirlos, por ejemplo para mostrarlos,
+ * en la zona que indique quien los pide.
+ */
+public class Prestamo {
+    /** Marca de tiempo de un préstamo que aún no se devuelve. */
+    public static final long SIN_FECHA = Long.MIN_VALUE;
+
+    private String id;
+    private String idUsuario;
+    private String idBicicleta;
+    private int claveUsuario;
+    private int claveBicicleta;
+    private long marcaPrestamo;
+    // Las consultas la leen sin bloqueo mientras otro hilo registra la devolución
+    private volatile long marcaDevolucion = SIN_FECHA;
+
+    /**
+     * Crea un préstamo con la marca de tiempo indicada, que el llamador toma
+     * de su reloj.
+     *
+     * @param id            Identificador único del préstamo.
+     * @param usuario       Usuario registrado que realiza el préstamo.
+     * @param bicicleta     Bicicleta registrada que se presta.
+     * @param marcaPrestamo Momento del préstamo, en milisegundos desde la época.
+     */
+    public Prestamo(String id, Usuario usuario, Bicicleta bicicleta, long marcaPrestamo) {
+        this.id = id;
+        this.idUsuario = usuario.getId();
+        this.idBicicleta = bicicleta.getId();
+        this.claveUsuario = usuario.getClave();
+        this.claveBicicleta = bicicleta.getClave();
+        this.marcaPrestamo = marcaPrestamo;
+    }
+
+    /**
+     * Reconstruye un préstamo completo, por ejemplo al leerlo de un archivo.
+     *
+     * @param id              Identificador único del préstamo.
+     * @param idUsuario       ID del usuario.
+     * @param claveUsuario    Clave entera del usuario.
+     * @param idBicicleta     ID de la bicicleta.
+     * @param claveBicicleta  Clave entera de la bicicleta.
+     * @param marcaPrestamo   Momento del préstamo, en milisegundos desde la época.
+     * @param marcaDevolucion Momento de la devolución, o {@link #SIN_FECHA} si sigue activo.
+     */
+    public Prestamo(String id, String idUsuario, int claveUsuario, String idBicicleta, int claveBicicleta,
+            long marcaPrestamo, long marcaDevolucion) {
+        this.id = id;
+        this.idUsuario = idUsuario;
+        this.idBicicleta = idBicicleta;
+        this.claveUsuario = claveUsuario;
+        this.claveBicicleta = claveBicicleta;
+        this.marcaPrestamo = marcaPrestamo;
+        this.marcaDevolucion = marcaDevolucion;
+    }
+
+    /**
+     * Obtiene el identificador del préstamo.
+     *
+     * @return ID del préstamo.
+     */
+    public String getId() { return id; }
+
+    /**
+     * Obtiene el ID del usuario que realizó el préstamo.
+     *
+     * @return ID del usuario.
+     */
+    public String getIdUsuario() { return idUsuario; }
+
+    /**
+     * Obtiene el ID de la bicicleta prestada.
+     *
+     * @return ID de la bicicleta.
+     */
+    public String getIdBicicleta() { return idBicicleta; }
+
+    /**
+     * Obtiene la clave entera del usuario que realizó el préstamo.
+     *
+     * @return Clave del usuario.
+     */
+    public int getClaveUsuario() { return claveUsuario; }
+
+    /**
+     * Obtiene la clave entera de la bicicleta prestada.
+     *
+     * @return Clave de la bicicleta.
+     */
+    public int getClaveBicicleta() { return claveBicicleta; }
+
+    /**
+     * Obtiene el momento en que se realizó el préstamo.
+     *
+     * @return Milisegundos desde la época.
+     */
+    public long getMarcaPrestamo() { return marcaPrestamo; }
+
+    /**
+     * Obtiene el momento en que se devolvió la bicicleta.
+     *
+     * @return Milisegundos desde la época, o {@link #SIN_FECHA} si no se ha devuelto.
+     */
+    public long getMarcaDevolucion() { return marcaDevolucion; }
+
+    /**
+     * Indica si la bicicleta ya se devolvió.
+     *
+     * @return {@code true} si el préstamo está cerrado.
+     */
+    public boolean estaDevuelto() { return marcaDevolucion != SIN_FECHA; }
+
+    /**
+     * Obtiene la fecha y hora en que se realizó el préstamo.
+     *
+     * @param zona Zona horaria en que se expresa la fecha.
+     * @return Fecha del préstamo.
+     */
+    public LocalDateTime getFechaPrestamo(ZoneId zona) { return aFecha(marcaPrestamo, zona); }
+
+    /**
+     * Obtiene la fecha y hora en que se devolvió la bicicleta.
+     * Si aún no se ha devuelto, devuelve {@code null}.
+     *
+     * @param zona Zona horaria en que se expresa la fecha.
+     * @return Fecha de devolución o {@code null} si no se ha devuelto.
+     */
+    public LocalDateTime getFechaDevolucion(ZoneId zona) {
+        return estaDevuelto() ? aFecha(marcaDevolucion, zona) : null;
+    }
+
+    /**
+     * Establece la fecha y hora de devolución de la bicicleta.
+     *
+     * @param fechaDevolucion Fecha de devolución a establecer.
+     * @param zona            Zona horaria en que está expresada la fecha.
+     */
+    public void setFechaDevolucion(LocalDateTime fechaDevolucion, ZoneId zona) { 
+        this.marcaDevolucion = fechaDevolucion != null ? fechaDevolucion.atZone(zona).toInstant().toEpochMilli() : SIN_FECHA; 
+    }
+
+    /**
+     * Establece el momento de devolución de la bicicleta.
+     *
+     * @param marcaDevolucion Milisegundos desde la época.
+     */
+    public void setMarcaDevolucion(long marcaDevolucion) { this.marcaDevolucion = marcaDevolucion; }
+
+    private static LocalDateTime aFecha(long marca, ZoneId zona) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(marca), zona);
+    }
 }
\ No newline at end of file
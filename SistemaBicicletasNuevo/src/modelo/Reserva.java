@@ -0,0 +1,69 @@
+
+package modelo;
+
+import java.util.concurrent.Future;
+
+/**
+ * Representa la reserva temporal de una bicicleta por parte de un usuario.
+ * Sus datos no cambian: al vencer o convertirse en préstamo se descarta.
+ * Además guarda la tarea programada que la hará vencer, para cancelarla si
+ * la reserva termina antes.
+ */
+public class Reserva {
+    private final String idUsuario;
+    private final String idBicicleta;
+    private final long expiraEn;
+    private volatile Future<?> vencimiento;
+
+    /**
+     * Crea una nueva reserva.
+     *
+     * @param idUsuario   ID del usuario que aparta la bicicleta.
+     * @param idBicicleta ID de la bicicleta reservada.
+     * @param expiraEn    Instante de vencimiento en milisegundos desde la época.
+     */
+    public Reserva(String idUsuario, String idBicicleta, long expiraEn) {
+        this.idUsuario = idUsuario;
+        this.idBicicleta = idBicicleta;
+        this.expiraEn = expiraEn;
+    }
+
+    /**
+     * Obtiene el ID del usuario que realizó la reserva.
+     *
+     * @return ID del usuario.
+     */
+    public String getIdUsuario() { return idUsuario; }
+
+    /**
+     * Obtiene el ID de la bicicleta reservada.
+     *
+     * @return ID de la bicicleta.
+     */
+    public String getIdBicicleta() { return idBicicleta; }
+
+    /**
+     * Obtiene el instante en que vence la reserva.
+     *
+     * @return Milisegundos desde la época en que la reserva deja de ser válida.
+     */
+    public long getExpiraEn() { return expiraEn; }
+
+    /**
+     * Asocia la tarea programada que hará vencer la reserva.
+     *
+     * @param vencimiento Tarea de vencimiento.
+     */
+    public void setVencimiento(Future<?> vencimiento) { this.vencimiento = vencimiento; }
+
+    /**
+     * Cancela la tarea de vencimiento, si ya se programó, porque la reserva
+     * terminó antes: se convirtió en préstamo o se canceló.
+     */
+    public void cancelarVencimiento() {
+        Future<?> tarea = vencimiento;
+        if (tarea != null) {
+            tarea.cancel(false);
+        }
+    }
+}
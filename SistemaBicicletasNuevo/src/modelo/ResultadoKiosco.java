@@ -0,0 +1,26 @@
+
+package modelo;
+
+/**
+ * Resultado de aplicar una {@link OperacionKiosco} de un lote.
+ */
+public enum ResultadoKiosco {
+    /** La operación se aplicó. */
+    APLICADA,
+    /** El usuario no está registrado. */
+    USUARIO_INEXISTENTE,
+    /** La bicicleta no está registrada. */
+    BICICLETA_INEXISTENTE,
+    /** El usuario ya tenía un préstamo activo en ese momento. */
+    USUARIO_CON_PRESTAMO,
+    /** La bicicleta ya estaba prestada o reservada por otro usuario en ese momento. */
+    BICICLETA_NO_DISPONIBLE,
+    /** Ya existe un préstamo con el mismo ID. */
+    PRESTAMO_DUPLICADO,
+    /** La devolución se refiere a un préstamo que no existe. */
+    PRESTAMO_INEXISTENTE,
+    /** El préstamo ya estaba devuelto. */
+    YA_DEVUELTO,
+    /** El kiosco excedió su límite de solicitudes; el lote no se aplicó y puede reenviarse. */
+    LIMITE_EXCEDIDO
+}
@@ -0,0 +1,29 @@
+
+package monitoreo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Acción de la interfaz gráfica, medida en el hilo de eventos de Swing desde
+ * que se pulsa el botón hasta que el manejador termina. Una acción larga
+ * aquí es una ventana congelada. Los IDs son los escritos en la ventana y el
+ * resultado es 1 si el manejador terminó normalmente o 0 si lanzó una excepción.
+ */
+@Name("bicicletas.Accion")
+@Label("Acción de la interfaz")
+@Category({"Bicicletas", "Interfaz"})
+@Description("Manejadores de los botones de la ventana principal")
+public class EventoAccion extends EventoOperacion {
+
+    /**
+     * Empieza a medir una acción de la interfaz.
+     *
+     * @param accion Nombre de la acción.
+     */
+    public EventoAccion(String accion) {
+        super("BicicletasController", accion);
+    }
+}
@@ -0,0 +1,29 @@
+
+package monitoreo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Operación de un DAO que recorre tablas, busca por texto o toca el disco.
+ * Las búsquedas por ID no se registran: son accesos directos a una tabla y
+ * medirlas costaría más que hacerlas.
+ */
+@Name("bicicletas.DAO")
+@Label("Operación de DAO")
+@Category({"Bicicletas", "DAO"})
+@Description("Recorridos, búsquedas por texto y archivado en los DAO")
+public class EventoDAO extends EventoOperacion {
+
+    /**
+     * Empieza a medir una operación de DAO.
+     *
+     * @param dao       Nombre del DAO.
+     * @param operacion Nombre de la operación.
+     */
+    public EventoDAO(String dao, String operacion) {
+        super(dao, operacion);
+    }
+}
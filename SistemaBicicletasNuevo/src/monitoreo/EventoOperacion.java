@@ -0,0 +1,91 @@
+
+package monitoreo;
+
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base de los eventos de Java Flight Recorder que miden una operación del
+ * sistema: quién la hizo, qué operación, qué IDs intervinieron y cuántos
+ * resultados produjo. JFR añade por su cuenta el hilo, el inicio y la
+ * duración, de modo que en una misma grabación se ven junto a las pausas de
+ * GC, los bloqueos y las asignaciones de memoria.
+ *
+ * Uso: se crea el evento al empezar la operación y se llama a uno de los
+ * métodos {@code terminar} al final. Si no hay una grabación activa que lo
+ * incluya, {@code terminar} no arma textos ni registra nada, y el evento no
+ * sale del método, así que el compilador puede eliminarlo.
+ *
+ * Para grabar solo las operaciones lentas se puede fijar un umbral, por
+ * ejemplo {@code bicicletas.Servicio#threshold=5 ms}.
+ */
+@StackTrace(false)
+public abstract class EventoOperacion extends Event {
+    @Label("Componente")
+    String componente;
+
+    @Label("Operación")
+    String operacion;
+
+    @Label("IDs")
+    String ids;
+
+    @Label("Resultados")
+    @Description("Elementos devueltos, o 1 y 0 si la operación se aplicó o se rechazó")
+    int resultados;
+
+    EventoOperacion(String componente, String operacion) {
+        this.componente = componente;
+        this.operacion = operacion;
+        begin();
+    }
+
+    /**
+     * Termina la operación sin IDs asociados.
+     *
+     * @param resultados Elementos devueltos, o 1 y 0 si se aplicó o se rechazó.
+     */
+    public void terminar(int resultados) {
+        terminar(null, null, resultados);
+    }
+
+    /**
+     * Termina una operación sobre una entidad identificada por su clave entera.
+     *
+     * @param clave      Clave interna de la entidad.
+     * @param resultados Elementos devueltos, o 1 y 0 si se aplicó o se rechazó.
+     */
+    public void terminar(int clave, int resultados) {
+        if (shouldCommit()) {
+            terminar("#" + clave, null, resultados);
+        }
+    }
+
+    /**
+     * Termina una operación sobre una entidad.
+     *
+     * @param id         ID de la entidad, o texto buscado.
+     * @param resultados Elementos devueltos, o 1 y 0 si se aplicó o se rechazó.
+     */
+    public void terminar(String id, int resultados) {
+        terminar(id, null, resultados);
+    }
+
+    /**
+     * Termina una operación que relaciona dos entidades, por ejemplo un
+     * usuario y una bicicleta.
+     *
+     * @param id         ID de la primera entidad.
+     * @param otroId     ID de la segunda entidad.
+     * @param resultados Elementos devueltos, o 1 y 0 si se aplicó o se rechazó.
+     */
+    public void terminar(String id, String otroId, int resultados) {
+        if (shouldCommit()) {
+            this.ids = otroId == null ? id : id + " " + otroId;
+            this.resultados = resultados;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+
+package monitoreo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Operación pública de un servicio: préstamos, devoluciones, reservas,
+ * registros y consultas de listas.
+ */
+@Name("bicicletas.Servicio")
+@Label("Operación de servicio")
+@Category({"Bicicletas", "Servicio"})
+@Description("Operaciones de PrestamoService, BicicletaService y UsuarioService")
+public class EventoServicio extends EventoOperacion {
+
+    /**
+     * Empieza a medir una operación de servicio.
+     *
+     * @param servicio  Nombre del servicio.
+     * @param operacion Nombre de la operación.
+     */
+    public EventoServicio(String servicio, String operacion) {
+        super(servicio, operacion);
+    }
+}
@@ -0,0 +1,38 @@
+
+package replicacion;
+
+/**
+ * Punto de entrada de un proceso seguidor de solo lectura.
+ *
+ * Uso: {@code java replicacion.NodoSeguidor [host] [puerto]}
+ * (por omisión {@code localhost} y {@value #PUERTO_POR_OMISION}).
+ * Cada dos segundos muestra la secuencia aplicada, el retraso y la
+ * disponibilidad que ve la réplica.
+ */
+public class NodoSeguidor {
+    /** Puerto de replicación usado si no se indica otro. */
+    public static final int PUERTO_POR_OMISION = 7070;
+
+    /**
+     * Inicia la réplica y muestra su estado periódicamente.
+     *
+     * @param args Host y puerto del primario (opcionales).
+     * @throws InterruptedException Si el hilo principal se interrumpe.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int puerto = args.length > 1 ? Integer.parseInt(args[1]) : PUERTO_POR_OMISION;
+        
+        ReplicaLectura replica = new ReplicaLectura(host, puerto);
+        replica.iniciar();
+        
+        while (true) {
+            Thread.sleep(2000);
+            System.out.println("secuencia=" + replica.getSecuenciaAplicada()
+                    + " pendientes=" + replica.getOperacionesPendientes()
+                    + " retrasoMs=" + replica.getRetrasoMilisegundos()
+                    + " disponibles=" + replica.obtenerBicicletasDisponibles().size()
+                    + (replica.getUltimoError() != null ? " error=" + replica.getUltimoError() : ""));
+        }
+    }
+}
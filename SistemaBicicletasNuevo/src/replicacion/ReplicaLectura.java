@@ -0,0 +1,308 @@
+
+package replicacion;
+
+import dao.BicicletaDAO;
+import dao.ConteoModelo;
+import dao.Operacion;
+import dao.PrestamoDAO;
+import dao.UsuarioDAO;
+import modelo.Bicicleta;
+import modelo.EstadoBicicleta;
+import modelo.Prestamo;
+import modelo.Usuario;
+import servicio.BicicletaService;
+import servicio.PrestamoService;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Réplica de solo lectura que sigue al proceso primario.
+ *
+ * Mantiene sus propios DAOs, aplica en orden las operaciones que recibe del
+ * {@link ServidorReplicacion} y atiende consultas de historial, disponibilidad
+ * y reportes sin competir con los préstamos del primario. Si la conexión se
+ * pierde, se reconecta y continúa desde la última operación aplicada; si el
+ * primario ya descartó esas operaciones, recibe una copia completa de los
+ * datos y sigue desde ella. Aplicar una operación que ya se tiene no cambia
+ * nada, así que la copia puede incluir operaciones que luego llegan. Si una
+ * operación recibida no se puede aplicar, la réplica deja de seguir al
+ * primario en vez de reintentarla sin fin: sus datos se quedan en la última
+ * operación aplicada y el error queda en {@link #getUltimoError()}.
+ *
+ * El retraso se puede medir en operaciones pendientes y en milisegundos.
+ */
+public class ReplicaLectura {
+    private static final long ESPERA_RECONEXION = 1000;
+
+    private final BicicletaDAO bicicletaDAO = new BicicletaDAO();
+    private final UsuarioDAO usuarioDAO = new UsuarioDAO();
+    private final PrestamoDAO prestamoDAO = new PrestamoDAO();
+    private final BicicletaService bicicletaService = new BicicletaService(bicicletaDAO);
+    private final PrestamoService prestamoService = new PrestamoService(prestamoDAO, usuarioDAO, bicicletaDAO);
+
+    private final String host;
+    private final int puerto;
+    private volatile boolean activa;
+    private volatile long secuenciaAplicada;
+    private volatile long secuenciaPrimario;
+    private volatile long retrasoMilisegundos;
+    private volatile Exception ultimoError;
+    // Copia completa en curso y secuencia que alcanza
+    private boolean enInstantanea;
+    private long secuenciaInstantanea;
+
+    /**
+     * Crea una réplica que seguirá al primario indicado.
+     *
+     * @param host   Host del primario.
+     * @param puerto Puerto del servidor de replicación del primario.
+     */
+    public ReplicaLectura(String host, int puerto) {
+        this.host = host;
+        this.puerto = puerto;
+    }
+
+    /**
+     * Empieza a seguir al primario en un hilo de fondo.
+     */
+    public void iniciar() {
+        activa = true;
+        Thread hilo = new Thread(this::seguir, "replica-" + puerto);
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Deja de seguir al primario después de la operación en curso.
+     */
+    public void detener() {
+        activa = false;
+    }
+
+    private void seguir() {
+        while (activa) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(host, puerto));
+                BufferedReader entrada = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                Writer salida = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+                salida.write(ServidorReplicacion.DESDE + " " + secuenciaAplicada + "\n");
+                salida.flush();
+                ultimoError = null;
+                enInstantanea = false;
+                
+                String linea;
+                while (activa && (linea = entrada.readLine()) != null) {
+                    try {
+                        procesar(linea);
+                    } catch (RuntimeException e) {
+                        // Reconectar no sirve: el primario volvería a enviar la misma operación
+                        ultimoError = e;
+                        activa = false;
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                // Se reintenta la conexión
+                ultimoError = e;
+            }
+            try {
+                Thread.sleep(ESPERA_RECONEXION);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void procesar(String linea) {
+        if (enInstantanea) {
+            if (linea.equals(ServidorReplicacion.FIN_INSTANTANEA)) {
+                enInstantanea = false;
+                terminarInstantanea();
+            } else {
+                reproducir(Operacion.decodificar(linea));
+            }
+        } else if (linea.startsWith(ServidorReplicacion.INSTANTANEA + " ")) {
+            secuenciaInstantanea = Long.parseLong(linea.substring(ServidorReplicacion.INSTANTANEA.length() + 1));
+            enInstantanea = true;
+        } else if (linea.startsWith(ServidorReplicacion.LATIDO + " ")) {
+            String[] partes = linea.split(" ");
+            secuenciaPrimario = Long.parseLong(partes[1]);
+            if (secuenciaAplicada >= secuenciaPrimario) {
+                retrasoMilisegundos = 0;
+            }
+        } else {
+            aplicar(Operacion.decodificar(linea));
+        }
+    }
+
+    /**
+     * Aplica una operación del primario sobre los DAOs de la réplica.
+     * Las validaciones ya se hicieron en el primario, así que solo se
+     * reproduce el efecto. Las operaciones ya aplicadas se ignoran.
+     *
+     * @param op Operación recibida.
+     */
+    void aplicar(Operacion op) {
+        if (op.getSecuencia() <= secuenciaAplicada) {
+            return;
+        }
+        reproducir(op);
+        secuenciaAplicada = op.getSecuencia();
+        secuenciaPrimario = Math.max(secuenciaPrimario, secuenciaAplicada);
+        retrasoMilisegundos = Math.max(0, System.currentTimeMillis() - op.getMarcaTiempo());
+    }
+
+    private void terminarInstantanea() {
+        secuenciaAplicada = Math.max(secuenciaAplicada, secuenciaInstantanea);
+        secuenciaPrimario = Math.max(secuenciaPrimario, secuenciaAplicada);
+    }
+
+    /**
+     * Reproduce el efecto de una operación, salvo que ya esté aplicado.
+     *
+     * @throws IllegalStateException Si la operación se refiere a un usuario,
+     *                               bicicleta o préstamo que la réplica no tiene.
+     */
+    private void reproducir(Operacion op) {
+        switch (op.getTipo()) {
+            case REGISTRAR_BICICLETA:
+                bicicletaDAO.agregarBicicleta(new Bicicleta(op.getCampo(0), op.getCampo(1)));
+                break;
+            case REGISTRAR_USUARIO:
+                usuarioDAO.agregarUsuario(new Usuario(op.getCampo(0), op.getCampo(1)));
+                break;
+            case PRESTAMO: {
+                if (prestamoDAO.buscarPorId(op.getCampo(0)) != null) {
+                    break;
+                }
+                Usuario usuario = usuarioDAO.buscarPorId(op.getCampo(1));
+                Bicicleta bicicleta = bicicletaDAO.buscarPorId(op.getCampo(2));
+                if (usuario == null || bicicleta == null) {
+                    throw new IllegalStateException("El préstamo " + op.getCampo(0) + " se refiere a "
+                            + (usuario == null ? "un usuario desconocido: " + op.getCampo(1)
+                                    : "una bicicleta desconocida: " + op.getCampo(2)));
+                }
+                prestamoDAO.agregarPrestamo(new Prestamo(op.getCampo(0), usuario, bicicleta, op.getMarcaTiempo()));
+                // Si estaba reservada, el préstamo consume la reserva
+                if (!bicicletaDAO.cambiarEstado(bicicleta, EstadoBicicleta.DISPONIBLE, EstadoBicicleta.PRESTADA)) {
+                    bicicletaDAO.cambiarEstado(bicicleta, EstadoBicicleta.RESERVADA, EstadoBicicleta.PRESTADA);
+                }
+                usuario.setTienePrestamo(true);
+                break;
+            }
+            case DEVOLUCION: {
+                Prestamo prestamo = prestamoDAO.buscarPorId(op.getCampo(0));
+                if (prestamo == null) {
+                    throw new IllegalStateException("Devolución de un préstamo desconocido: " + op.getCampo(0));
+                }
+                if (prestamo.estaDevuelto()) {
+                    break;
+                }
+                prestamoDAO.registrarDevolucion(prestamo, op.getMarcaTiempo());
+                bicicletaDAO.cambiarEstado(bicicletaDAO.buscarPorClave(prestamo.getClaveBicicleta()),
+                        EstadoBicicleta.PRESTADA, EstadoBicicleta.DISPONIBLE);
+                usuarioDAO.buscarPorClave(prestamo.getClaveUsuario()).setTienePrestamo(false);
+                break;
+            }
+            case RESERVA:
+            case FIN_RESERVA: {
+                Bicicleta bicicleta = bicicletaDAO.buscarPorId(op.getCampo(0));
+                if (bicicleta == null) {
+                    throw new IllegalStateException("Reserva de una bicicleta desconocida: " + op.getCampo(0));
+                }
+                // Si la bicicleta ya no está en el estado de partida, la réplica ya tiene el cambio
+                if (op.getTipo() == Operacion.Tipo.RESERVA) {
+                    bicicletaDAO.cambiarEstado(bicicleta, EstadoBicicleta.DISPONIBLE, EstadoBicicleta.RESERVADA);
+                } else {
+                    bicicletaDAO.cambiarEstado(bicicleta, EstadoBicicleta.RESERVADA, EstadoBicicleta.DISPONIBLE);
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Obtiene el historial de préstamos de un usuario según la réplica.
+     *
+     * @param idUsuario ID del usuario.
+     * @return Lista de préstamos del usuario.
+     */
+    public List<Prestamo> obtenerHistorialUsuario(String idUsuario) {
+        return prestamoService.obtenerHistorialUsuario(idUsuario);
+    }
+
+    /**
+     * Obtiene las bicicletas disponibles según la réplica.
+     *
+     * @return Lista de bicicletas disponibles.
+     */
+    public List<Bicicleta> obtenerBicicletasDisponibles() {
+        return bicicletaService.obtenerBicicletasDisponibles();
+    }
+
+    /**
+     * Obtiene los contadores de bicicletas por modelo y estado según la réplica.
+     *
+     * @return Contadores por modelo.
+     */
+    public Collection<ConteoModelo> obtenerConteosPorModelo() {
+        return bicicletaService.obtenerConteosPorModelo();
+    }
+
+    /**
+     * Obtiene todos los préstamos replicados, para reportes.
+     *
+     * @return Lista con todos los préstamos.
+     */
+    public List<Prestamo> obtenerTodosLosPrestamos() {
+        return prestamoDAO.obtenerTodos();
+    }
+
+    /**
+     * Obtiene la secuencia de la última operación aplicada.
+     *
+     * @return Última secuencia aplicada.
+     */
+    public long getSecuenciaAplicada() { return secuenciaAplicada; }
+
+    /**
+     * Obtiene cuántas operaciones conocidas del primario faltan por aplicar.
+     *
+     * @return Operaciones pendientes según el último mensaje del primario.
+     */
+    public long getOperacionesPendientes() { return Math.max(0, secuenciaPrimario - secuenciaAplicada); }
+
+    /**
+     * Obtiene el tiempo entre que ocurrió la última operación aplicada en el
+     * primario y el momento en que se aplicó en la réplica. Vale 0 cuando la
+     * réplica está al día.
+     *
+     * @return Retraso en milisegundos.
+     */
+    public long getRetrasoMilisegundos() { return retrasoMilisegundos; }
+
+    /**
+     * Indica si la réplica sigue al primario. Deja de hacerlo al detenerla o
+     * si una operación recibida no se pudo aplicar.
+     *
+     * @return true si la réplica sigue activa.
+     */
+    public boolean estaActiva() { return activa; }
+
+    /**
+     * Obtiene el último error: una conexión fallida, que se reintenta, o una
+     * operación que no se pudo aplicar, que detiene la réplica.
+     *
+     * @return El error, o null si la conexión actual no ha fallado.
+     */
+    public Exception getUltimoError() { return ultimoError; }
+}
@@ -0,0 +1,226 @@
+
+package replicacion;
+
+import dao.BicicletaDAO;
+import dao.DiarioOperaciones;
+import dao.Operacion;
+import dao.PrestamoDAO;
+import dao.UsuarioDAO;
+import modelo.Bicicleta;
+import modelo.EstadoBicicleta;
+import modelo.Prestamo;
+import modelo.Usuario;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Servidor del proceso primario que transmite el {@link DiarioOperaciones}
+ * a los procesos seguidores por un socket TCP local.
+ *
+ * Protocolo (una línea de texto por mensaje):
+ * - El seguidor envía {@code DESDE <secuencia>} con la última operación que ya aplicó.
+ * - El primario responde con las operaciones siguientes, codificadas con
+ *   {@link Operacion#codificar()}, y queda enviando las nuevas conforme llegan.
+ * - Si no hay operaciones nuevas durante un segundo, envía
+ *   {@code LATIDO <ultima secuencia> <hora>} para que el seguidor mida su retraso.
+ * - Si el seguidor necesita operaciones que el diario ya descartó, envía
+ *   {@code INSTANTANEA <secuencia>}, las operaciones que reconstruyen todos
+ *   los datos (altas, préstamos y devoluciones, también los archivados, y las
+ *   reservas vigentes) y
+ *   {@code FIN_INSTANTANEA}, y continúa desde esa secuencia.
+ *   Las operaciones posteriores a la secuencia pueden estar ya incluidas en la
+ *   copia, así que el seguidor debe ignorar las que ya tiene.
+ */
+public class ServidorReplicacion {
+    /** Mensaje con el que el seguidor indica desde dónde continuar. */
+    static final String DESDE = "DESDE";
+    /** Mensaje periódico del primario cuando no hay operaciones nuevas. */
+    static final String LATIDO = "LATIDO";
+    /** Mensaje que anuncia una copia completa de los datos. */
+    static final String INSTANTANEA = "INSTANTANEA";
+    /** Mensaje que cierra una copia completa de los datos. */
+    static final String FIN_INSTANTANEA = "FIN_INSTANTANEA";
+
+    private static final int LOTE = 512;
+    private static final long ESPERA_LATIDO = 1000;
+
+    private final DiarioOperaciones diario;
+    private final BicicletaDAO bicicletaDAO;
+    private final UsuarioDAO usuarioDAO;
+    private final PrestamoDAO prestamoDAO;
+    private final int puerto;
+    private ServerSocket servidor;
+
+    /**
+     * Crea el servidor de replicación.
+     *
+     * @param diario       Diario de operaciones del primario.
+     * @param bicicletaDAO DAO de bicicletas que registra en el diario, para las copias completas.
+     * @param usuarioDAO   DAO de usuarios que registra en el diario, para las copias completas.
+     * @param prestamoDAO  DAO de préstamos que registra en el diario, para las copias completas.
+     * @param puerto       Puerto local donde se esperan seguidores.
+     */
+    public ServidorReplicacion(DiarioOperaciones diario, BicicletaDAO bicicletaDAO, UsuarioDAO usuarioDAO,
+            PrestamoDAO prestamoDAO, int puerto) {
+        this.diario = diario;
+        this.bicicletaDAO = bicicletaDAO;
+        this.usuarioDAO = usuarioDAO;
+        this.prestamoDAO = prestamoDAO;
+        this.puerto = puerto;
+    }
+
+    /**
+     * Abre el puerto y empieza a aceptar seguidores en un hilo de fondo.
+     *
+     * @throws IOException Si no se puede abrir el puerto.
+     */
+    public synchronized void iniciar() throws IOException {
+        servidor = new ServerSocket(puerto, 50, InetAddress.getLoopbackAddress());
+        iniciarHilo("replicacion-aceptar", () -> {
+            while (!servidor.isClosed()) {
+                try {
+                    Socket seguidor = servidor.accept();
+                    iniciarHilo("replicacion-" + seguidor.getPort(), () -> atender(seguidor));
+                } catch (IOException e) {
+                    // El servidor se cerró
+                }
+            }
+        });
+    }
+
+    /**
+     * Deja de aceptar seguidores y cierra el puerto.
+     *
+     * @throws IOException Si ocurre un error al cerrar el puerto.
+     */
+    public synchronized void detener() throws IOException {
+        if (servidor != null) {
+            servidor.close();
+        }
+    }
+
+    /**
+     * Obtiene el puerto en el que escucha el servidor.
+     *
+     * @return Puerto local.
+     */
+    public int getPuerto() {
+        return servidor != null ? servidor.getLocalPort() : puerto;
+    }
+
+    private void atender(Socket seguidor) {
+        try (Socket s = seguidor;
+             BufferedReader entrada = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             Writer salida = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+            String solicitud = entrada.readLine();
+            if (solicitud == null || !solicitud.startsWith(DESDE + " ")) {
+                return;
+            }
+            long cursor = Long.parseLong(solicitud.substring(DESDE.length() + 1).trim());
+            
+            while (!servidor.isClosed()) {
+                List<Operacion> lote;
+                try {
+                    lote = diario.esperarDesde(cursor, LOTE, ESPERA_LATIDO);
+                } catch (IllegalStateException e) {
+                    // El seguidor se atrasó más de lo que conserva el diario
+                    cursor = enviarInstantanea(salida);
+                    continue;
+                }
+                if (lote.isEmpty()) {
+                    salida.write(LATIDO + " " + diario.ultimaSecuencia() + " " + System.currentTimeMillis() + "\n");
+                } else {
+                    for (Operacion op : lote) {
+                        escribir(salida, op);
+                    }
+                    cursor = lote.get(lote.size() - 1).getSecuencia();
+                }
+                salida.flush();
+            }
+        } catch (IOException | NumberFormatException e) {
+            // El seguidor se desconectó o envió una solicitud inválida
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Envía una copia completa de los datos, tomada después de la última
+     * operación del diario.
+     *
+     * Los DAOs se fijan en orden inverso a sus dependencias (préstamos,
+     * usuarios, bicicletas): el usuario y la bicicleta de un préstamo fijado
+     * ya estaban registrados antes, así que aparecen en la copia aunque se
+     * hayan registrado mientras tanto. Cada DAO se fija bajo el mismo bloqueo
+     * con el que registra en el diario, así que la copia incluye al menos todo
+     * hasta la secuencia devuelta; los bloqueos se sueltan enseguida y las
+     * operaciones se arman y se envían una a una después, de modo que ni un
+     * seguidor lento ni un archivo grande detienen al primario.
+     *
+     * @return Secuencia desde la que el seguidor debe continuar.
+     */
+    private long enviarInstantanea(Writer salida) throws IOException {
+        long secuencia = diario.ultimaSecuencia();
+        Iterable<Prestamo> prestamos = prestamoDAO.fijarTodos();
+        int usuarios;
+        synchronized (usuarioDAO) {
+            usuarios = usuarioDAO.limiteClaves();
+        }
+        int bicicletas;
+        synchronized (bicicletaDAO) {
+            bicicletas = bicicletaDAO.limiteClaves();
+        }
+
+        long ahora = System.currentTimeMillis();
+        salida.write(INSTANTANEA + " " + secuencia + "\n");
+        for (int clave = 0; clave < bicicletas; clave++) {
+            Bicicleta b = bicicletaDAO.buscarPorClave(clave);
+            if (b != null) {
+                escribir(salida, new Operacion(secuencia, ahora, Operacion.Tipo.REGISTRAR_BICICLETA, b.getId(), b.getModelo()));
+            }
+        }
+        for (int clave = 0; clave < usuarios; clave++) {
+            Usuario u = usuarioDAO.buscarPorClave(clave);
+            if (u != null) {
+                escribir(salida, new Operacion(secuencia, ahora, Operacion.Tipo.REGISTRAR_USUARIO, u.getId(), u.getNombre()));
+            }
+        }
+        for (Prestamo p : prestamos) {
+            escribir(salida, new Operacion(secuencia, p.getMarcaPrestamo(), Operacion.Tipo.PRESTAMO,
+                    p.getId(), p.getIdUsuario(), p.getIdBicicleta()));
+            if (p.estaDevuelto()) {
+                escribir(salida, new Operacion(secuencia, p.getMarcaDevolucion(), Operacion.Tipo.DEVOLUCION, p.getId()));
+            }
+        }
+        // Las reservas van al final, sobre las bicicletas que dejaron libres los préstamos
+        for (int clave = 0; clave < bicicletas; clave++) {
+            Bicicleta b = bicicletaDAO.buscarPorClave(clave);
+            if (b != null && b.getEstado() == EstadoBicicleta.RESERVADA) {
+                escribir(salida, new Operacion(secuencia, ahora, Operacion.Tipo.RESERVA, b.getId()));
+            }
+        }
+        salida.write(FIN_INSTANTANEA + "\n");
+        salida.flush();
+        return secuencia;
+    }
+
+    private static void escribir(Writer salida, Operacion op) throws IOException {
+        salida.write(op.codificar());
+        salida.write('\n');
+    }
+
+    private static void iniciarHilo(String nombre, Runnable tarea) {
+        Thread hilo = new Thread(tarea, nombre);
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+}
@@ -0,0 +1,95 @@
+
+package servicio;
+
+import dao.PrestamoDAO;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Servicio que, en segundo plano, mueve al almacén frío los préstamos
+ * devueltos hace más de cierto tiempo, para que no ocupen memoria ni
+ * alarguen los recorridos de los préstamos recientes.
+ */
+public class ArchivadoService {
+    private PrestamoDAO prestamoDAO;
+    private final Duration antiguedad;
+    private ScheduledExecutorService programador;
+    private volatile long totalArchivados;
+    private volatile IOException ultimoError;
+
+    /**
+     * Constructor que recibe el DAO de préstamos y la antigüedad para archivar.
+     *
+     * @param prestamoDAO DAO de préstamos configurado con un almacén frío.
+     * @param antiguedad  Tiempo desde la devolución a partir del cual se archiva un préstamo.
+     */
+    public ArchivadoService(PrestamoDAO prestamoDAO, Duration antiguedad) {
+        this.prestamoDAO = prestamoDAO;
+        this.antiguedad = antiguedad;
+    }
+
+    /**
+     * Archiva ahora los préstamos devueltos hace más de la antigüedad configurada.
+     *
+     * @return Número de préstamos archivados.
+     * @throws IOException Si ocurre un error al escribir el segmento.
+     */
+    public int archivarAhora() throws IOException {
+        int archivados = prestamoDAO.archivarDevueltosAntesDe(System.currentTimeMillis() - antiguedad.toMillis());
+        totalArchivados += archivados;
+        return archivados;
+    }
+
+    /**
+     * Programa el archivado periódico en un hilo de fondo.
+     *
+     * @param intervalo Tiempo entre una pasada y la siguiente.
+     */
+    public synchronized void iniciar(Duration intervalo) {
+        if (programador != null) {
+            return;
+        }
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "archivado-prestamos");
+            hilo.setDaemon(true);
+            hilo.setPriority(Thread.MIN_PRIORITY);
+            return hilo;
+        });
+        programador.scheduleWithFixedDelay(() -> {
+            try {
+                archivarAhora();
+                ultimoError = null;
+            } catch (IOException e) {
+                // Se reintenta en la siguiente pasada
+                ultimoError = e;
+            }
+        }, intervalo.toMillis(), intervalo.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Detiene el archivado periódico.
+     */
+    public synchronized void detener() {
+        if (programador != null) {
+            programador.shutdown();
+            programador = null;
+        }
+    }
+
+    /**
+     * Obtiene cuántos préstamos se han archivado desde que se creó el servicio.
+     *
+     * @return Total de préstamos archivados.
+     */
+    public long getTotalArchivados() { return totalArchivados; }
+
+    /**
+     * Obtiene el error de la última pasada fallida, si la hubo.
+     *
+     * @return El error, o null si la última pasada terminó bien.
+     */
+    public IOException getUltimoError() { return ultimoError; }
+}
@@ -1,64 +1,149 @@
-
-package servicio;
-
-import dao.BicicletaDAO;
-import modelo.Bicicleta;
-import java.util.List;
-
-/**
- * Servicio encargado de gestionar las operaciones relacionadas
- * con las bicicletas del sistema, tales como el registro,
- * búsqueda y consulta de disponibilidad.
- */
-public class BicicletaService {
-    private BicicletaDAO bicicletaDAO;
-
-    /**
-     * Constructor que recibe la instancia del DAO de bicicletas.
-     *
-     * @param bicicletaDAO DAO responsable del acceso a datos de bicicletas.
-     */
-    public BicicletaService(BicicletaDAO bicicletaDAO) {
-        this.bicicletaDAO = bicicletaDAO;
-    }
-
-    /**
-     * Registra una nueva bicicleta en el sistema.
-     *
-     * @param id     Identificador único de la bicicleta.
-     * @param modelo Modelo o descripción de la bicicleta.
-     */
-    public void registrarBicicleta(String id, String modelo) {
-        Bicicleta bicicleta = new Bicicleta(id, modelo);
-        bicicletaDAO.agregarBicicleta(bicicleta);
-    }
-
-    /**
-     * Busca una bicicleta por su identificador único.
-     *
-     * @param id ID de la bicicleta a buscar.
-     * @return La bicicleta correspondiente al ID, o null si no existe.
-     */
-    public Bicicleta buscarBicicleta(String id) {
-        return bicicletaDAO.buscarPorId(id);
-    }
-
-    /**
-     * Obtiene una lista de todas las bicicletas que están disponibles
-     * para préstamo en el sistema.
-     *
-     * @return Lista de bicicletas disponibles.
-     */
-    public List<Bicicleta> obtenerBicicletasDisponibles() {
-        return bicicletaDAO.obtenerDisponibles();
-    }
-
-    /**
-     * Retorna todas las bicicletas registradas, estén o no disponibles.
-     *
-     * @return Lista completa de bicicletas en el sistema.
-     */
-    public List<Bicicleta> obtenerTodasLasBicicletas() {
-        return bicicletaDAO.obtenerTodas();
-    }
+
+package servicio;
+
+import dao.BicicletaDAO;
+import dao.ConteoModelo;
+import modelo.Bicicleta;
+import monitoreo.EventoServicio;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Servicio encargado de gestionar las operaciones relacionadas
+ * con las bicicletas del sistema, tales como el registro,
+ * búsqueda y consulta de disponibilidad.
+ *
+ * Los registros y las consultas que devuelven listas emiten un
+ * {@link EventoServicio} de Java Flight Recorder.
+ */
+public class BicicletaService {
+    private static final String SERVICIO = "BicicletaService";
+    private BicicletaDAO bicicletaDAO;
+
+    /**
+     * Constructor que recibe la instancia del DAO de bicicletas.
+     *
+     * @param bicicletaDAO DAO responsable del acceso a datos de bicicletas.
+     */
+    public BicicletaService(BicicletaDAO bicicletaDAO) {
+        this.bicicletaDAO = bicicletaDAO;
+    }
+
+    /**
+     * Registra una nueva bicicleta en el sistema.
+     *
+     * @param id     Identificador único de la bicicleta.
+     * @param modelo Modelo o descripción de la bicicleta.
+     */
+    public void registrarBicicleta(String id, String modelo) {
+        registrarBicicleta(id, modelo, PrestamoService.ESTACION_PREDETERMINADA);
+    }
+
+    /**
+     * Registra una nueva bicicleta disponible en una estación.
+     *
+     * @param id       Identificador único de la bicicleta.
+     * @param modelo   Modelo o descripción de la bicicleta.
+     * @param estacion ID de la estación donde queda la bicicleta.
+     */
+    public void registrarBicicleta(String id, String modelo, String estacion) {
+        EventoServicio evento = new EventoServicio(SERVICIO, "registrarBicicleta");
+        Bicicleta bicicleta = new Bicicleta(id, modelo, estacion);
+        bicicletaDAO.agregarBicicleta(bicicleta);
+        evento.terminar(id, estacion, 1);
+    }
+
+    /**
+     * Cuenta las bicicletas disponibles en cada estación.
+     *
+     * @return Número de bicicletas disponibles por ID de estación.
+     */
+    public Map<String, Integer> contarDisponiblesPorEstacion() {
+        EventoServicio evento = new EventoServicio(SERVICIO, "contarDisponiblesPorEstacion");
+        Map<String, Integer> conteo = bicicletaDAO.contarDisponiblesPorEstacion();
+        evento.terminar(conteo.size());
+        return conteo;
+    }
+
+    /**
+     * Busca una bicicleta por su identificador único.
+     *
+     * @param id ID de la bicicleta a buscar.
+     * @return La bicicleta correspondiente al ID, o null si no existe.
+     */
+    public Bicicleta buscarBicicleta(String id) {
+        return bicicletaDAO.buscarPorId(id);
+    }
+
+    /**
+     * Busca una bicicleta por su clave entera interna.
+     *
+     * @param clave Clave de la bicicleta, tal como la guarda un préstamo.
+     * @return La bicicleta correspondiente a la clave, o null si no existe.
+     */
+    public Bicicleta buscarBicicletaPorClave(int clave) {
+        return bicicletaDAO.buscarPorClave(clave);
+    }
+
+    /**
+     * Busca bicicletas por modelo para autocompletar mientras se escribe.
+     *
+     * @param texto  Texto escrito hasta el momento.
+     * @param maximo Número máximo de sugerencias.
+     * @return Lista de bicicletas, más relevantes primero.
+     */
+    public List<Bicicleta> buscarPorModelo(String texto, int maximo) {
+        EventoServicio evento = new EventoServicio(SERVICIO, "buscarPorModelo");
+        List<Bicicleta> encontradas = bicicletaDAO.buscarPorModelo(texto, maximo);
+        evento.terminar(texto, encontradas.size());
+        return encontradas;
+    }
+
+    /**
+     * Obtiene una lista de todas las bicicletas que están disponibles
+     * para préstamo en el sistema.
+     *
+     * @return Lista de bicicletas disponibles.
+     */
+    public List<Bicicleta> obtenerBicicletasDisponibles() {
+        EventoServicio evento = new EventoServicio(SERVICIO, "obtenerBicicletasDisponibles");
+        List<Bicicleta> disponibles = bicicletaDAO.obtenerDisponibles();
+        evento.terminar(disponibles.size());
+        return disponibles;
+    }
+
+    /**
+     * Obtiene cuántas bicicletas de cada modelo hay en cada estado.
+     * La lectura es proporcional al número de modelos, no de bicicletas,
+     * y no crea objetos nuevos.
+     *
+     * @return Contadores en vivo por modelo.
+     */
+    public Collection<ConteoModelo> obtenerConteosPorModelo() {
+        return bicicletaDAO.obtenerConteosPorModelo();
+    }
+
+    /**
+     * Obtiene cuántas bicicletas de un modelo están disponibles en este momento.
+     *
+     * @param modelo Modelo de bicicleta.
+     * @return Número de bicicletas disponibles del modelo.
+     */
+    public long contarDisponibles(String modelo) {
+        ConteoModelo conteo = bicicletaDAO.obtenerConteo(modelo);
+        return conteo != null ? conteo.getDisponibles() : 0;
+    }
+
+    /**
+     * Retorna todas las bicicletas registradas, estén o no disponibles.
+     *
+     * @return Lista completa de bicicletas en el sistema.
+     */
+    public List<Bicicleta> obtenerTodasLasBicicletas() {
+        EventoServicio evento = new EventoServicio(SERVICIO, "obtenerTodasLasBicicletas");
+        List<Bicicleta> todas = bicicletaDAO.obtenerTodas();
+        evento.terminar(todas.size());
+        return todas;
+    }
 }
\ No newline at end of file
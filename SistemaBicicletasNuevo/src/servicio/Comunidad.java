@@ -0,0 +1,382 @@
+
+package servicio;
+
+import consulta.PlanificadorConsultas;
+import dao.BicicletaDAO;
+import dao.InstantaneaComunidad;
+import dao.PrestamoDAO;
+import dao.UsuarioDAO;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Una comunidad atendida por el {@link GestorComunidades}: sus propios DAOs y
+ * servicios, su cola de tareas y su contabilidad de memoria.
+ *
+ * El objeto es liviano y permanece aunque los datos no estén en memoria. Los
+ * datos se cargan desde su copia en disco la primera vez que una tarea los
+ * necesita, y el gestor los descarga (guardándolos antes) cuando la comunidad
+ * queda inactiva o hace falta memoria. Las tareas usan los datos bajo el
+ * bloqueo de lectura y la carga y la descarga bajo el de escritura, así que
+ * una descarga nunca ocurre con una tarea en curso.
+ *
+ * Las tareas pasan por una cola propia y se ejecutan en el grupo de hilos
+ * compartido del gestor, de a una por envío, con a lo sumo
+ * {@code hilosPorComunidad} en curso a la vez. Una comunidad muy activa nunca
+ * ocupa más que esos hilos ni adelanta sus tareas a las de las demás, y si su
+ * cola se llena sus tareas nuevas se rechazan.
+ */
+public class Comunidad {
+    // Tamaños aproximados, medidos en una JVM de 64 bits con referencias comprimidas
+    /** Memoria de una comunidad cargada pero sin datos. */
+    static final long BYTES_BASE = 4 * 1024;
+    /** Memoria por bicicleta, con sus índices. */
+    static final long BYTES_BICICLETA = 232;
+    /** Memoria por usuario, con sus índices y su estado en la vista. */
+    static final long BYTES_USUARIO = 416;
+    /** Memoria por préstamo, con sus índices. */
+    static final long BYTES_PRESTAMO = 184;
+
+    private final String id;
+    private final Path archivo;
+    private final Executor hilos;
+    private final ScheduledExecutorService vencimientos;
+    private final Runnable alCargar;
+    private final int hilosPorComunidad;
+    private final int maximoPendientes;
+
+    private final ArrayDeque<Runnable> pendientes = new ArrayDeque<>();
+    private int enCurso;
+
+    private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+    private volatile Servicios servicios;
+    private volatile long ultimoAcceso = System.currentTimeMillis();
+    private final LongAdder completadas = new LongAdder();
+    private final LongAdder rechazadas = new LongAdder();
+    private final LongAdder esperaNanos = new LongAdder();
+    private volatile long cargas;
+    private volatile long descargas;
+
+    /**
+     * Crea una comunidad sin cargar sus datos.
+     *
+     * @param id                Identificador de la comunidad.
+     * @param archivo           Archivo con la copia de sus datos; puede no existir aún.
+     * @param hilos             Grupo de hilos compartido donde se ejecutan las tareas.
+     * @param hilosPorComunidad Máximo de tareas de esta comunidad en curso a la vez.
+     * @param maximoPendientes  Máximo de tareas en espera antes de rechazar nuevas.
+     * @param vencimientos      Temporizador compartido para las reservas.
+     * @param alCargar          Aviso al gestor cada vez que se cargan los datos.
+     */
+    Comunidad(String id, Path archivo, Executor hilos, int hilosPorComunidad, int maximoPendientes,
+            ScheduledExecutorService vencimientos, Runnable alCargar) {
+        this.id = id;
+        this.archivo = archivo;
+        this.hilos = hilos;
+        this.hilosPorComunidad = hilosPorComunidad;
+        this.maximoPendientes = maximoPendientes;
+        this.vencimientos = vencimientos;
+        this.alCargar = alCargar;
+    }
+
+    /**
+     * Encola una tarea sobre los servicios de la comunidad, cargando los datos
+     * si hace falta. Los servicios recibidos solo son válidos durante la tarea.
+     *
+     * @param <T>   Tipo del resultado.
+     * @param tarea Tarea a ejecutar.
+     * @return El resultado de la tarea; termina con {@link RejectedExecutionException}
+     *         si la cola de la comunidad está llena.
+     */
+    <T> CompletableFuture<T> ejecutar(Function<Servicios, T> tarea) {
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        long encolada = System.nanoTime();
+        Runnable envoltura = () -> {
+            esperaNanos.add(System.nanoTime() - encolada);
+            ultimoAcceso = System.currentTimeMillis();
+            try {
+                Servicios actuales = adquirir();
+                try {
+                    resultado.complete(tarea.apply(actuales));
+                } finally {
+                    candado.readLock().unlock();
+                }
+            } catch (Throwable e) {
+                resultado.completeExceptionally(e);
+            }
+            completadas.increment();
+            ultimoAcceso = System.currentTimeMillis();
+        };
+        synchronized (pendientes) {
+            if (pendientes.size() >= maximoPendientes) {
+                rechazadas.increment();
+                resultado.completeExceptionally(new RejectedExecutionException(
+                        "Cola llena en la comunidad " + id));
+                return resultado;
+            }
+            pendientes.add(envoltura);
+            if (enCurso == hilosPorComunidad) {
+                return resultado;
+            }
+            enCurso++;
+        }
+        try {
+            hilos.execute(this::ejecutarSiguiente);
+        } catch (RejectedExecutionException e) {
+            // El gestor se está deteniendo
+            synchronized (pendientes) {
+                pendientes.remove(envoltura);
+                enCurso--;
+            }
+            resultado.completeExceptionally(e);
+        }
+        return resultado;
+    }
+
+    /**
+     * Ejecuta una tarea de la cola y vuelve a enviarse al final del grupo
+     * compartido, para alternar con las demás comunidades. Si el grupo ya no
+     * acepta envíos, termina en este hilo las tareas que quedan.
+     */
+    private void ejecutarSiguiente() {
+        while (true) {
+            Runnable tarea;
+            synchronized (pendientes) {
+                tarea = pendientes.poll();
+                if (tarea == null) {
+                    enCurso--;
+                    return;
+                }
+            }
+            tarea.run();
+            try {
+                hilos.execute(this::ejecutarSiguiente);
+                return;
+            } catch (RejectedExecutionException e) {
+                // El gestor se está deteniendo
+            }
+        }
+    }
+
+    /**
+     * Devuelve los servicios con el bloqueo de lectura tomado, cargando los
+     * datos bajo el de escritura si no están en memoria.
+     */
+    private Servicios adquirir() throws IOException {
+        while (true) {
+            candado.readLock().lock();
+            Servicios actuales = servicios;
+            if (actuales != null) {
+                return actuales;
+            }
+            candado.readLock().unlock();
+            candado.writeLock().lock();
+            try {
+                if (servicios == null) {
+                    servicios = new Servicios(archivo, vencimientos);
+                    cargas++;
+                    alCargar.run();
+                }
+            } finally {
+                candado.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Guarda y descarga los datos si la comunidad está inactiva: sin tareas en
+     * curso ni en espera, sin reservas vigentes y sin accesos desde el momento
+     * indicado. No espera: si hay una tarea en curso, no descarga.
+     *
+     * @param inactivaDesde Último acceso permitido, en milisegundos desde la época.
+     * @return {@code true} si los datos se descargaron.
+     * @throws IOException Si falla la escritura; los datos siguen en memoria.
+     */
+    boolean descargar(long inactivaDesde) throws IOException {
+        if (!candado.writeLock().tryLock()) {
+            return false;
+        }
+        try {
+            Servicios actuales = servicios;
+            if (actuales == null || ultimoAcceso > inactivaDesde || getPendientes() > 0
+                    || actuales.prestamoService.hayReservas()) {
+                return false;
+            }
+            actuales.guardar(archivo);
+            servicios = null;
+            descargas++;
+            return true;
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Guarda y descarga los datos aunque haya reservas vigentes, que se
+     * pierden. Espera a que terminen las tareas en curso.
+     *
+     * @throws IOException Si falla la escritura; los datos siguen en memoria.
+     */
+    void cerrar() throws IOException {
+        candado.writeLock().lock();
+        try {
+            if (servicios != null) {
+                servicios.guardar(archivo);
+                servicios = null;
+                descargas++;
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Obtiene el identificador de la comunidad.
+     *
+     * @return ID de la comunidad.
+     */
+    public String getId() { return id; }
+
+    /**
+     * Indica si los datos de la comunidad están en memoria.
+     *
+     * @return {@code true} si están cargados.
+     */
+    public boolean estaCargada() { return servicios != null; }
+
+    /**
+     * Estima la memoria que ocupan los datos de la comunidad, a partir del
+     * número de bicicletas, usuarios y préstamos. No recorre los datos.
+     *
+     * @return Bytes aproximados, o 0 si los datos no están en memoria.
+     */
+    public long getMemoriaEstimada() {
+        Servicios actuales = servicios;
+        return actuales != null ? actuales.memoriaEstimada() : 0;
+    }
+
+    /**
+     * Obtiene el momento del último acceso de una tarea.
+     *
+     * @return Milisegundos desde la época.
+     */
+    public long getUltimoAcceso() { return ultimoAcceso; }
+
+    /**
+     * Obtiene cuántas tareas esperan en la cola de la comunidad.
+     *
+     * @return Tareas en espera.
+     */
+    public int getPendientes() {
+        synchronized (pendientes) {
+            return pendientes.size();
+        }
+    }
+
+    /**
+     * Obtiene cuántas tareas terminaron, con o sin error.
+     *
+     * @return Tareas completadas.
+     */
+    public long getCompletadas() { return completadas.sum(); }
+
+    /**
+     * Obtiene cuántas tareas se rechazaron por tener la cola llena.
+     *
+     * @return Tareas rechazadas.
+     */
+    public long getRechazadas() { return rechazadas.sum(); }
+
+    /**
+     * Obtiene la espera media de las tareas en cola hasta empezar, que muestra
+     * si la comunidad está esperando por su propia carga o por la de otras.
+     *
+     * @return Milisegundos de espera promedio, o 0 si no hay tareas.
+     */
+    public double getEsperaPromedioMilisegundos() {
+        long tareas = completadas.sum();
+        return tareas == 0 ? 0 : esperaNanos.sum() / 1e6 / tareas;
+    }
+
+    /**
+     * Obtiene cuántas veces se cargaron los datos desde disco o vacíos.
+     *
+     * @return Número de cargas.
+     */
+    public long getCargas() { return cargas; }
+
+    /**
+     * Obtiene cuántas veces se descargaron los datos.
+     *
+     * @return Número de descargas.
+     */
+    public long getDescargas() { return descargas; }
+
+    /**
+     * DAOs y servicios de una comunidad cargada. Se reciben dentro de las
+     * tareas y no deben guardarse fuera de ellas: tras una descarga quedan
+     * desconectados de la comunidad.
+     */
+    public static final class Servicios {
+        private final BicicletaDAO bicicletaDAO = new BicicletaDAO();
+        private final UsuarioDAO usuarioDAO = new UsuarioDAO();
+        private final PrestamoDAO prestamoDAO = new PrestamoDAO();
+        private final BicicletaService bicicletaService = new BicicletaService(bicicletaDAO);
+        private final UsuarioService usuarioService = new UsuarioService(usuarioDAO);
+        private final PrestamoService prestamoService;
+        private final PlanificadorConsultas consultas = new PlanificadorConsultas(bicicletaDAO, usuarioDAO, prestamoDAO);
+
+        private Servicios(Path archivo, ScheduledExecutorService vencimientos) throws IOException {
+            InstantaneaComunidad.cargar(archivo, bicicletaDAO, usuarioDAO, prestamoDAO);
+            prestamoService = new PrestamoService(prestamoDAO, usuarioDAO, bicicletaDAO,
+                    Clock.systemDefaultZone(), vencimientos);
+        }
+
+        private void guardar(Path archivo) throws IOException {
+            InstantaneaComunidad.guardar(archivo, bicicletaDAO, usuarioDAO, prestamoDAO);
+        }
+
+        private long memoriaEstimada() {
+            return BYTES_BASE + bicicletaDAO.limiteClaves() * BYTES_BICICLETA
+                    + usuarioDAO.limiteClaves() * BYTES_USUARIO
+                    + prestamoDAO.limiteClaves() * BYTES_PRESTAMO;
+        }
+
+        /**
+         * Obtiene el servicio de bicicletas de la comunidad.
+         *
+         * @return Servicio de bicicletas.
+         */
+        public BicicletaService getBicicletaService() { return bicicletaService; }
+
+        /**
+         * Obtiene el servicio de usuarios de la comunidad.
+         *
+         * @return Servicio de usuarios.
+         */
+        public UsuarioService getUsuarioService() { return usuarioService; }
+
+        /**
+         * Obtiene el servicio de préstamos de la comunidad.
+         *
+         * @return Servicio de préstamos.
+         */
+        public PrestamoService getPrestamoService() { return prestamoService; }
+
+        /**
+         * Obtiene el planificador de consultas sobre los datos de la comunidad.
+         *
+         * @return Planificador de consultas.
+         */
+        public PlanificadorConsultas getConsultas() { return consultas; }
+    }
+}
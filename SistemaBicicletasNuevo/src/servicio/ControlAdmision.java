@@ -0,0 +1,324 @@
+
+package servicio;
+
+import modelo.OperacionKiosco;
+import modelo.ResultadoKiosco;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Control de admisión delante de {@link PrestamoService}: limita cuántas
+ * solicitudes puede hacer cada usuario y cada estación (kiosco), para que un
+ * cliente que reintenta en un ciclo no sature el servicio para los demás.
+ *
+ * Cada usuario y cada estación tiene una cubeta de fichas: cada solicitud
+ * toma una ficha y las fichas se recargan con el tiempo hasta la capacidad.
+ * La recarga es perezosa, se calcula al tomar la ficha a partir del tiempo
+ * transcurrido, así que no hay ningún hilo recorriendo las cubetas. El estado
+ * de una cubeta cabe en un solo {@code long} (milésimas de ficha y momento de
+ * la última recarga) que se actualiza con compare-and-set.
+ *
+ * Sin fichas, la solicitud se rechaza de inmediato, sin esperar; los
+ * rechazos se cuentan por motivo. Las solicitudes de usuarios que no existen
+ * se rechazan antes de crearles una cubeta, así que enviar IDs al azar no
+ * hace crecer el mapa.
+ *
+ * Las cubetas llenas se descartan poco a poco: cuando hay
+ * {@code MAXIMO_CUBETAS}, cada cubeta nueva revisa unas cuantas de las
+ * guardadas en lugar de recorrerlas todas. Si aun así no hay lugar, las IDs
+ * nuevas comparten una sola cubeta hasta que se libere espacio, de modo que
+ * el mapa nunca pasa de ese tamaño.
+ */
+public class ControlAdmision {
+
+    /** Resultado de pedir admisión. */
+    public enum Decision {
+        /** La solicitud puede continuar. */
+        ADMITIDA,
+        /** El usuario excedió su límite. */
+        RECHAZADA_USUARIO,
+        /** La estación excedió su límite. */
+        RECHAZADA_ESTACION,
+        /** El usuario no está registrado. */
+        USUARIO_INEXISTENTE
+    }
+
+    /** Ráfaga de solicitudes que se permite a un usuario si no se indica otra. */
+    public static final int CAPACIDAD_USUARIO = 5;
+    /** Fichas por segundo que recupera un usuario si no se indica otra recarga. */
+    public static final double RECARGA_USUARIO = 0.2;
+    /** Ráfaga de solicitudes que se permite a una estación si no se indica otra. */
+    public static final int CAPACIDAD_ESTACION = 60;
+    /** Fichas por segundo que recupera una estación si no se indica otra recarga. */
+    public static final double RECARGA_ESTACION = 10;
+    /** Cubetas guardadas a partir de las cuales se descartan las que están llenas. */
+    private static final int MAXIMO_CUBETAS = 100_000;
+    /** Cubetas guardadas que revisa cada cubeta nueva cuando se alcanzó el máximo. */
+    private static final int CUBETAS_POR_PURGA = 256;
+
+    // Estado de la cubeta: milisegundos de la última recarga en los bits altos,
+    // milésimas de ficha en los 20 bits bajos
+    private static final int BITS_FICHAS = 20;
+    private static final long MASCARA_FICHAS = (1L << BITS_FICHAS) - 1;
+    private static final long FICHA = 1000;
+
+    private final PrestamoService prestamoService;
+    private final Limite usuarios;
+    private final Limite estaciones;
+    private final long origen = System.nanoTime();
+
+    private final LongAdder admitidas = new LongAdder();
+    private final LongAdder rechazadasPorUsuario = new LongAdder();
+    private final LongAdder rechazadasPorEstacion = new LongAdder();
+    private final LongAdder rechazadasPorInexistente = new LongAdder();
+
+    /**
+     * Crea el control de admisión con los límites predeterminados.
+     *
+     * @param prestamoService Servicio de préstamos protegido.
+     */
+    public ControlAdmision(PrestamoService prestamoService) {
+        this(prestamoService, CAPACIDAD_USUARIO, RECARGA_USUARIO, CAPACIDAD_ESTACION, RECARGA_ESTACION);
+    }
+
+    /**
+     * Crea el control de admisión con los límites indicados.
+     *
+     * @param prestamoService   Servicio de préstamos protegido.
+     * @param capacidadUsuario  Solicitudes seguidas que puede hacer un usuario (1 a 1000).
+     * @param recargaUsuario    Fichas por segundo que recupera un usuario.
+     * @param capacidadEstacion Solicitudes seguidas que puede hacer una estación (1 a 1000).
+     * @param recargaEstacion   Fichas por segundo que recupera una estación.
+     */
+    public ControlAdmision(PrestamoService prestamoService, int capacidadUsuario, double recargaUsuario,
+            int capacidadEstacion, double recargaEstacion) {
+        this.prestamoService = prestamoService;
+        this.usuarios = new Limite(capacidadUsuario, recargaUsuario);
+        this.estaciones = new Limite(capacidadEstacion, recargaEstacion);
+    }
+
+    /**
+     * Realiza un préstamo si el usuario y la estación están dentro de su límite.
+     *
+     * @param idEstacion  ID de la estación o kiosco que hace la solicitud, o {@code null} si no aplica.
+     * @param idPrestamo  ID único para el préstamo.
+     * @param idUsuario   ID del usuario que solicita el préstamo.
+     * @param idBicicleta ID de la bicicleta a prestar.
+     * @return true si se admitió y el préstamo se realizó, false en caso contrario.
+     */
+    public boolean realizarPrestamo(String idEstacion, String idPrestamo, String idUsuario, String idBicicleta) {
+        return admitir(idEstacion, idUsuario) == Decision.ADMITIDA
+                && prestamoService.realizarPrestamo(idEstacion != null ? idEstacion : PrestamoService.ESTACION_PREDETERMINADA,
+                        idPrestamo, idUsuario, idBicicleta);
+    }
+
+    /**
+     * Reserva una bicicleta si el usuario y la estación están dentro de su límite.
+     *
+     * @param idEstacion  ID de la estación o kiosco que hace la solicitud, o {@code null} si no aplica.
+     * @param idUsuario   ID del usuario que reserva.
+     * @param idBicicleta ID de la bicicleta a reservar.
+     * @return true si se admitió y la reserva se realizó, false en caso contrario.
+     */
+    public boolean reservarBicicleta(String idEstacion, String idUsuario, String idBicicleta) {
+        return admitir(idEstacion, idUsuario) == Decision.ADMITIDA
+                && prestamoService.reservarBicicleta(idUsuario, idBicicleta);
+    }
+
+    /**
+     * Aplica un lote de operaciones de kiosco si la estación está dentro de su
+     * límite. El lote cuenta como una sola solicitud de la estación; los
+     * usuarios no se limitan, porque sus operaciones ya ocurrieron sin conexión.
+     *
+     * @param idEstacion  ID de la estación del kiosco.
+     * @param operaciones Operaciones del kiosco.
+     * @return El resultado de cada operación, o {@link ResultadoKiosco#LIMITE_EXCEDIDO}
+     *         en todas si el lote no se admitió.
+     */
+    public List<ResultadoKiosco> procesarLote(String idEstacion, List<OperacionKiosco> operaciones) {
+        long ahora = (System.nanoTime() - origen) / 1_000_000;
+        if (estaciones.tomar(idEstacion, ahora) == null) {
+            rechazadasPorEstacion.increment();
+            return Collections.nCopies(operaciones.size(), ResultadoKiosco.LIMITE_EXCEDIDO);
+        }
+        admitidas.increment();
+        return prestamoService.procesarLote(idEstacion, operaciones);
+    }
+
+    /**
+     * Toma una ficha del usuario y otra de la estación. Si la estación no tiene
+     * fichas, se le devuelve la suya al usuario. Un usuario que no existe se
+     * rechaza sin tocar ninguna cubeta.
+     *
+     * @param idEstacion ID de la estación, o {@code null} si no aplica.
+     * @param idUsuario  ID del usuario.
+     * @return La decisión tomada.
+     */
+    public Decision admitir(String idEstacion, String idUsuario) {
+        if (!prestamoService.existeUsuario(idUsuario)) {
+            rechazadasPorInexistente.increment();
+            return Decision.USUARIO_INEXISTENTE;
+        }
+        long ahora = (System.nanoTime() - origen) / 1_000_000;
+        AtomicLong cubetaUsuario = usuarios.tomar(idUsuario, ahora);
+        if (cubetaUsuario == null) {
+            rechazadasPorUsuario.increment();
+            return Decision.RECHAZADA_USUARIO;
+        }
+        if (idEstacion != null && estaciones.tomar(idEstacion, ahora) == null) {
+            usuarios.devolver(cubetaUsuario);
+            rechazadasPorEstacion.increment();
+            return Decision.RECHAZADA_ESTACION;
+        }
+        admitidas.increment();
+        return Decision.ADMITIDA;
+    }
+
+    /**
+     * Obtiene cuántas solicitudes se han admitido.
+     *
+     * @return Solicitudes admitidas.
+     */
+    public long getAdmitidas() { return admitidas.sum(); }
+
+    /**
+     * Obtiene cuántas solicitudes se rechazaron por el límite del usuario.
+     *
+     * @return Rechazos por usuario.
+     */
+    public long getRechazadasPorUsuario() { return rechazadasPorUsuario.sum(); }
+
+    /**
+     * Obtiene cuántas solicitudes se rechazaron por el límite de la estación.
+     *
+     * @return Rechazos por estación.
+     */
+    public long getRechazadasPorEstacion() { return rechazadasPorEstacion.sum(); }
+
+    /**
+     * Obtiene cuántas solicitudes se rechazaron por venir de un usuario inexistente.
+     *
+     * @return Rechazos por usuario inexistente.
+     */
+    public long getRechazadasPorInexistente() { return rechazadasPorInexistente.sum(); }
+
+    /**
+     * Cubetas de fichas de un mismo tipo (usuarios o estaciones) con su capacidad y recarga.
+     */
+    private final class Limite {
+        private final long capacidad;
+        private final double recargaPorMilisegundo;
+        private final ConcurrentHashMap<String, AtomicLong> cubetas = new ConcurrentHashMap<>();
+        // Cubeta que comparten las IDs nuevas mientras el mapa está lleno
+        private final AtomicLong desborde;
+        private final AtomicBoolean purgando = new AtomicBoolean();
+        // Posición de la purga en el mapa; solo se usa con purgando tomado
+        private Iterator<String> barrido;
+
+        Limite(int capacidad, double fichasPorSegundo) {
+            if (capacidad < 1 || capacidad * FICHA > MASCARA_FICHAS || fichasPorSegundo <= 0) {
+                throw new IllegalArgumentException("Límite inválido: " + capacidad + " fichas, "
+                        + fichasPorSegundo + " por segundo");
+            }
+            this.capacidad = capacidad * FICHA;
+            // Milésimas de ficha por milisegundo equivalen a fichas por segundo
+            this.recargaPorMilisegundo = fichasPorSegundo;
+            this.desborde = new AtomicLong(this.capacidad);
+        }
+
+        AtomicLong cubeta(String id) {
+            AtomicLong cubeta = cubetas.get(id);
+            if (cubeta != null) {
+                return cubeta;
+            }
+            if (cubetas.size() >= MAXIMO_CUBETAS) {
+                purgarLlenas();
+                if (cubetas.size() >= MAXIMO_CUBETAS) {
+                    return desborde;
+                }
+            }
+            long ahora = (System.nanoTime() - origen) / 1_000_000;
+            return cubetas.computeIfAbsent(id, k -> new AtomicLong(ahora << BITS_FICHAS | capacidad));
+        }
+
+        /**
+         * Toma una ficha de la cubeta del ID indicado. Si la cubeta se purgó
+         * mientras tanto, se vuelve a intentar con la que la reemplaza, para
+         * que la ficha no se tome de una cubeta que ya nadie ve. La cubeta de
+         * desborde no está en el mapa y no se comprueba.
+         *
+         * @return La cubeta de la que se tomó la ficha, o null si no había fichas.
+         */
+        AtomicLong tomar(String id, long ahora) {
+            while (true) {
+                AtomicLong cubeta = cubeta(id);
+                boolean tomada = tomar(cubeta, ahora);
+                if (cubeta == desborde || cubetas.get(id) == cubeta) {
+                    return tomada ? cubeta : null;
+                }
+            }
+        }
+
+        private boolean tomar(AtomicLong cubeta, long ahora) {
+            while (true) {
+                long actual = cubeta.get();
+                long fichas = disponibles(actual, ahora);
+                if (fichas < FICHA) {
+                    return false;
+                }
+                long ultima = Math.max(actual >>> BITS_FICHAS, ahora);
+                if (cubeta.compareAndSet(actual, ultima << BITS_FICHAS | (fichas - FICHA))) {
+                    return true;
+                }
+            }
+        }
+
+        void devolver(AtomicLong cubeta) {
+            while (true) {
+                long actual = cubeta.get();
+                long fichas = Math.min(capacidad, (actual & MASCARA_FICHAS) + FICHA);
+                if (cubeta.compareAndSet(actual, (actual & ~MASCARA_FICHAS) | fichas)) {
+                    return;
+                }
+            }
+        }
+
+        private long disponibles(long estado, long ahora) {
+            long transcurrido = Math.max(0, ahora - (estado >>> BITS_FICHAS));
+            return Math.min(capacidad, (estado & MASCARA_FICHAS) + (long) (transcurrido * recargaPorMilisegundo));
+        }
+
+        /**
+         * Revisa las siguientes {@code CUBETAS_POR_PURGA} cubetas guardadas,
+         * continuando donde quedó la revisión anterior, y descarta las que ya
+         * se recargaron por completo: volver a crearlas da el mismo resultado.
+         * Cada cubeta se comprueba y se quita en una sola operación del mapa,
+         * así que nunca se quita una a la que otro hilo acaba de tomar una ficha.
+         * Si otro hilo ya está purgando, no se espera.
+         */
+        private void purgarLlenas() {
+            if (!purgando.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                long ahora = (System.nanoTime() - origen) / 1_000_000;
+                for (int i = 0; i < CUBETAS_POR_PURGA; i++) {
+                    if (barrido == null || !barrido.hasNext()) {
+                        barrido = cubetas.keySet().iterator();
+                        if (!barrido.hasNext()) {
+                            return;
+                        }
+                    }
+                    cubetas.computeIfPresent(barrido.next(), (k, c) -> disponibles(c.get(), ahora) == capacidad ? null : c);
+                }
+            } finally {
+                purgando.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+
+package servicio;
+
+import dao.AlmacenEstados;
+import dao.BicicletaDAO;
+import dao.Cambio;
+import dao.PrestamoDAO;
+import dao.RegistroCambios;
+import dao.UsuarioDAO;
+import modelo.Bicicleta;
+import modelo.EstadoBicicleta;
+import modelo.Prestamo;
+import modelo.Usuario;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Servicio que guarda en disco, en segundo plano, el estado de bicicletas y
+ * usuarios (escritura diferida).
+ *
+ * Los préstamos y devoluciones no escriben nada: ya publican sus cambios en
+ * el {@link RegistroCambios}. Cada ventana, un hilo de fondo lee los cambios
+ * nuevos, se queda solo con el último estado de cada bicicleta y de cada
+ * usuario, y los escribe como un único lote en el {@link AlmacenEstados}.
+ * Una bicicleta que se presta y se devuelve varias veces dentro de la
+ * ventana se escribe una sola vez.
+ *
+ * Lo guardado nunca está más atrasado que la ventana más el tiempo de una
+ * escritura. Los lotes se escriben en el orden del registro y cada uno
+ * avanza la secuencia guardada, así que tras una caída el archivo refleja el
+ * estado en alguna secuencia anterior, nunca una mezcla.
+ *
+ * Si el registro descarta cambios que aún no se guardaron, se toma el estado
+ * completo desde los DAOs y se sigue desde la última secuencia.
+ *
+ * El almacén debe pertenecer a esta ejecución (ver
+ * {@link AlmacenEstados#crear(java.nio.file.Path)}): sus secuencias son las
+ * del registro, que empieza en 0 en cada arranque.
+ */
+public class EscrituraDiferidaService {
+    /** Máximo de cambios que se leen del registro por consulta. */
+    private static final int CAMBIOS_POR_LECTURA = 4096;
+
+    private final RegistroCambios registro;
+    private BicicletaDAO bicicletaDAO;
+    private UsuarioDAO usuarioDAO;
+    private PrestamoDAO prestamoDAO;
+    private final AlmacenEstados almacen;
+    private ScheduledExecutorService programador;
+    private long secuencia;
+    private volatile long cambiosLeidos;
+    private volatile long estadosEscritos;
+    private volatile long resincronizaciones;
+    private volatile IOException ultimoError;
+
+    /**
+     * Constructor que recibe el registro a seguir, los DAOs y el almacén de destino.
+     *
+     * @param registro     Registro de cambios donde publican los DAOs.
+     * @param bicicletaDAO DAO de bicicletas, para resincronizar.
+     * @param usuarioDAO   DAO de usuarios, para resincronizar.
+     * @param prestamoDAO  DAO de préstamos, para saber a qué usuario pertenece cada préstamo.
+     * @param almacen      Almacén donde se escriben los lotes.
+     * @throws IllegalArgumentException Si el almacén llega a una secuencia que
+     *                                  el registro aún no tiene, es decir, es
+     *                                  de otra ejecución.
+     */
+    public EscrituraDiferidaService(RegistroCambios registro, BicicletaDAO bicicletaDAO,
+            UsuarioDAO usuarioDAO, PrestamoDAO prestamoDAO, AlmacenEstados almacen) {
+        this.registro = registro;
+        this.bicicletaDAO = bicicletaDAO;
+        this.usuarioDAO = usuarioDAO;
+        this.prestamoDAO = prestamoDAO;
+        this.almacen = almacen;
+        if (almacen.getUltimaSecuencia() > registro.ultimaSecuencia()) {
+            throw new IllegalArgumentException("El almacén llega a la secuencia " + almacen.getUltimaSecuencia()
+                    + " y el registro a " + registro.ultimaSecuencia() + "; es de otra ejecución");
+        }
+        this.secuencia = almacen.getUltimaSecuencia();
+    }
+
+    /**
+     * Lee los cambios pendientes del registro y los escribe como un lote.
+     *
+     * @return Número de bicicletas y usuarios escritos; 0 si no había cambios.
+     * @throws IOException Si ocurre un error al escribir; los cambios se reintentan.
+     */
+    public synchronized int escribirAhora() throws IOException {
+        Map<String, String> bicicletas = new HashMap<>();
+        Map<String, Boolean> usuarios = new HashMap<>();
+        long hasta = secuencia;
+        try {
+            List<Cambio> cambios;
+            while (!(cambios = registro.cambiosDesde(hasta, CAMBIOS_POR_LECTURA)).isEmpty()) {
+                for (Cambio cambio : cambios) {
+                    acumular(cambio, bicicletas, usuarios);
+                }
+                hasta = cambios.get(cambios.size() - 1).getSecuencia();
+                cambiosLeidos += cambios.size();
+            }
+        } catch (IllegalStateException e) {
+            // El registro ya descartó cambios pendientes: se guarda el estado completo
+            hasta = tomarEstadoCompleto(bicicletas, usuarios);
+            resincronizaciones++;
+        }
+        if (hasta == secuencia) {
+            return 0;
+        }
+        almacen.escribirLote(hasta, bicicletas, usuarios);
+        secuencia = hasta;
+        estadosEscritos += bicicletas.size() + usuarios.size();
+        return bicicletas.size() + usuarios.size();
+    }
+
+    private void acumular(Cambio cambio, Map<String, String> bicicletas, Map<String, Boolean> usuarios) {
+        switch (cambio.getTipo()) {
+            case BICICLETA_REGISTRADA:
+                bicicletas.put(cambio.getId(), EstadoBicicleta.DISPONIBLE.name());
+                break;
+            case ESTADO_BICICLETA:
+                bicicletas.put(cambio.getId(), cambio.getValor());
+                break;
+            case USUARIO_REGISTRADO:
+                usuarios.put(cambio.getId(), false);
+                break;
+            case MARCA_USUARIO:
+                usuarios.put(cambio.getId(), Boolean.valueOf(cambio.getValor()));
+                break;
+            default:
+                // El cambio trae el ID del préstamo; el usuario sale del préstamo
+                Prestamo prestamo = prestamoDAO.buscarPorId(cambio.getId());
+                if (prestamo != null) {
+                    usuarios.put(prestamo.getIdUsuario(), cambio.getTipo() == Cambio.Tipo.PRESTAMO_REGISTRADO);
+                }
+        }
+    }
+
+    /**
+     * Copia el estado de todas las bicicletas y usuarios. La secuencia se lee
+     * antes de recorrer, así que lo copiado es igual o más nuevo que ella.
+     */
+    private long tomarEstadoCompleto(Map<String, String> bicicletas, Map<String, Boolean> usuarios) {
+        long hasta = registro.ultimaSecuencia();
+        bicicletas.clear();
+        usuarios.clear();
+        for (Bicicleta bicicleta : bicicletaDAO.recorrerTodas()) {
+            bicicletas.put(bicicleta.getId(), bicicleta.getEstado().name());
+        }
+        for (Usuario usuario : usuarioDAO.obtenerTodos()) {
+            usuarios.put(usuario.getId(), usuario.tienePrestamo());
+        }
+        return hasta;
+    }
+
+    /**
+     * Programa la escritura periódica en un hilo de fondo.
+     *
+     * @param ventana Tiempo entre un lote y el siguiente; acota el atraso de lo guardado.
+     */
+    public synchronized void iniciar(Duration ventana) {
+        if (programador != null) {
+            return;
+        }
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "escritura-diferida");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleWithFixedDelay(() -> {
+            try {
+                escribirAhora();
+                ultimoError = null;
+            } catch (IOException e) {
+                // Los cambios siguen en el registro y se reintentan en la siguiente ventana
+                ultimoError = e;
+            }
+        }, ventana.toMillis(), ventana.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Detiene la escritura periódica y escribe lo que quede pendiente.
+     *
+     * @throws IOException Si falla la última escritura.
+     */
+    public void detener() throws IOException {
+        synchronized (this) {
+            if (programador != null) {
+                programador.shutdown();
+                programador = null;
+            }
+        }
+        escribirAhora();
+    }
+
+    /**
+     * Obtiene la última secuencia del registro que ya está en disco.
+     *
+     * @return Secuencia guardada.
+     */
+    public synchronized long getSecuenciaGuardada() { return secuencia; }
+
+    /**
+     * Obtiene cuántos cambios se leyeron del registro.
+     *
+     * @return Total de cambios leídos.
+     */
+    public long getCambiosLeidos() { return cambiosLeidos; }
+
+    /**
+     * Obtiene cuántos estados se escribieron; la diferencia con los cambios
+     * leídos es lo que se ahorró al agrupar.
+     *
+     * @return Total de estados escritos.
+     */
+    public long getEstadosEscritos() { return estadosEscritos; }
+
+    /**
+     * Obtiene cuántas veces hubo que copiar el estado completo porque el
+     * registro ya había descartado cambios pendientes.
+     *
+     * @return Número de resincronizaciones.
+     */
+    public long getResincronizaciones() { return resincronizaciones; }
+
+    /**
+     * Obtiene el error de la última escritura fallida, si la hubo.
+     *
+     * @return El error, o null si la última escritura terminó bien.
+     */
+    public IOException getUltimoError() { return ultimoError; }
+}
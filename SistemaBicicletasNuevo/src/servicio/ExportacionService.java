@@ -0,0 +1,300 @@
+
+package servicio;
+
+import dao.BicicletaDAO;
+import dao.PrestamoDAO;
+import dao.UsuarioDAO;
+import modelo.Bicicleta;
+import modelo.Prestamo;
+import modelo.Usuario;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Servicio que exporta el historial de préstamos y la disponibilidad de
+ * bicicletas a archivos CSV o JSON Lines.
+ *
+ * La exportación es en flujo: cada registro se escribe en una línea
+ * reutilizable, se codifica a UTF-8 en un búfer directo y se vacía al
+ * {@link FileChannel} cuando se llena. La memoria usada es constante sin
+ * importar cuántos registros se exporten.
+ */
+public class ExportacionService {
+    /** Formatos de archivo soportados. */
+    public enum Formato { CSV, JSONL }
+
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final int TAMANIO_BUFER = 1 << 16;
+
+    private PrestamoDAO prestamoDAO;
+    private UsuarioDAO usuarioDAO;
+    private BicicletaDAO bicicletaDAO;
+    private final ZoneId zona;
+
+    // Búferes reutilizados entre exportaciones
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(TAMANIO_BUFER);
+    private final CharBuffer caracteres = CharBuffer.allocate(TAMANIO_BUFER / 4);
+    private final CharsetEncoder codificador = StandardCharsets.UTF_8.newEncoder();
+    private final StringBuilder linea = new StringBuilder(256);
+
+    /**
+     * Constructor que recibe los DAOs de los que se leen los datos.
+     *
+     * @param prestamoDAO  DAO de préstamos.
+     * @param usuarioDAO   DAO de usuarios.
+     * @param bicicletaDAO DAO de bicicletas.
+     * @param zona         Zona horaria en que se escriben las fechas, la del
+     *                     reloj del servicio de préstamos.
+     */
+    public ExportacionService(PrestamoDAO prestamoDAO, UsuarioDAO usuarioDAO, BicicletaDAO bicicletaDAO,
+            ZoneId zona) {
+        this.prestamoDAO = prestamoDAO;
+        this.usuarioDAO = usuarioDAO;
+        this.bicicletaDAO = bicicletaDAO;
+        this.zona = zona;
+    }
+
+    /**
+     * Exporta el historial completo de préstamos.
+     *
+     * @param destino Archivo de destino; se sobrescribe si existe.
+     * @param formato Formato de salida.
+     * @return Número de préstamos exportados.
+     * @throws IOException Si ocurre un error al escribir el archivo.
+     */
+    public synchronized long exportarHistorial(Path destino, Formato formato) throws IOException {
+        return exportarPrestamos(prestamoDAO.recorrerTodos(), destino, formato);
+    }
+
+    /**
+     * Exporta el historial de préstamos de un usuario.
+     *
+     * @param idUsuario ID del usuario.
+     * @param destino   Archivo de destino; se sobrescribe si existe.
+     * @param formato   Formato de salida.
+     * @return Número de préstamos exportados, o -1 si el usuario no existe.
+     * @throws IOException Si ocurre un error al escribir el archivo.
+     */
+    public synchronized long exportarHistorialUsuario(String idUsuario, Path destino, Formato formato) throws IOException {
+        Usuario usuario = usuarioDAO.buscarPorId(idUsuario);
+        if (usuario == null) {
+            return -1;
+        }
+        return exportarPrestamos(prestamoDAO.obtenerPorUsuario(usuario.getClave()), destino, formato);
+    }
+
+    /**
+     * Exporta el estado de disponibilidad de todas las bicicletas.
+     *
+     * @param destino Archivo de destino; se sobrescribe si existe.
+     * @param formato Formato de salida.
+     * @return Número de bicicletas exportadas.
+     * @throws IOException Si ocurre un error al escribir el archivo.
+     */
+    public synchronized long exportarDisponibilidad(Path destino, Formato formato) throws IOException {
+        long total = 0;
+        try (FileChannel canal = abrir(destino)) {
+            if (formato == Formato.CSV) {
+                linea.append("id_bicicleta,modelo,estado");
+                escribirLinea(canal);
+            }
+            for (Bicicleta b : bicicletaDAO.recorrerTodas()) {
+                iniciarRegistro(formato);
+                campo(formato, "id_bicicleta", b.getId());
+                campo(formato, "modelo", b.getModelo());
+                campo(formato, "estado", b.getEstado().name());
+                terminarRegistro(formato, canal);
+                total++;
+            }
+            vaciar(canal);
+        }
+        return total;
+    }
+
+    private long exportarPrestamos(Iterable<Prestamo> prestamos, Path destino, Formato formato) throws IOException {
+        long total = 0;
+        try (FileChannel canal = abrir(destino)) {
+            if (formato == Formato.CSV) {
+                linea.append("id_prestamo,id_usuario,nombre_usuario,id_bicicleta,modelo,fecha_prestamo,fecha_devolucion");
+                escribirLinea(canal);
+            }
+            for (Prestamo p : prestamos) {
+                Usuario usuario = usuarioDAO.buscarPorClave(p.getClaveUsuario());
+                Bicicleta bici = bicicletaDAO.buscarPorClave(p.getClaveBicicleta());
+
+                iniciarRegistro(formato);
+                campo(formato, "id_prestamo", p.getId());
+                campo(formato, "id_usuario", p.getIdUsuario());
+                campo(formato, "nombre_usuario", usuario != null ? usuario.getNombre() : null);
+                campo(formato, "id_bicicleta", p.getIdBicicleta());
+                campo(formato, "modelo", bici != null ? bici.getModelo() : null);
+                campoFecha(formato, "fecha_prestamo", p.getFechaPrestamo(zona));
+                campoFecha(formato, "fecha_devolucion", p.getFechaDevolucion(zona));
+                terminarRegistro(formato, canal);
+                total++;
+            }
+            vaciar(canal);
+        }
+        return total;
+    }
+
+    private FileChannel abrir(Path destino) throws IOException {
+        // Una exportación que falló pudo dejar los búferes a medias
+        bytes.clear();
+        caracteres.clear();
+        codificador.reset();
+        linea.setLength(0);
+        return FileChannel.open(destino, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    private void iniciarRegistro(Formato formato) {
+        if (formato == Formato.JSONL) {
+            linea.append('{');
+        }
+    }
+
+    private void terminarRegistro(Formato formato, FileChannel canal) throws IOException {
+        if (formato == Formato.JSONL) {
+            linea.append('}');
+        } else {
+            // Quitar la coma que dejó el último campo
+            linea.setLength(linea.length() - 1);
+        }
+        escribirLinea(canal);
+    }
+
+    private void campo(Formato formato, String nombre, String valor) {
+        if (formato == Formato.JSONL) {
+            if (linea.length() > 1) {
+                linea.append(',');
+            }
+            linea.append('"').append(nombre).append("\":");
+            if (valor == null) {
+                linea.append("null");
+            } else {
+                linea.append('"');
+                escaparJson(valor);
+                linea.append('"');
+            }
+        } else {
+            if (valor != null) {
+                escaparCsv(valor);
+            }
+            linea.append(',');
+        }
+    }
+
+    private void campoFecha(Formato formato, String nombre, LocalDateTime fecha) {
+        if (fecha == null) {
+            campo(formato, nombre, null);
+            return;
+        }
+        if (formato == Formato.JSONL) {
+            linea.append(",\"").append(nombre).append("\":\"");
+            FORMATO_FECHA.formatTo(fecha, linea);
+            linea.append('"');
+        } else {
+            FORMATO_FECHA.formatTo(fecha, linea);
+            linea.append(',');
+        }
+    }
+
+    private void escaparCsv(String valor) {
+        boolean comillas = false;
+        for (int i = 0; i < valor.length() && !comillas; i++) {
+            char c = valor.charAt(i);
+            comillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!comillas) {
+            linea.append(valor);
+            return;
+        }
+        linea.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '"') {
+                linea.append('"');
+            }
+            linea.append(c);
+        }
+        linea.append('"');
+    }
+
+    private void escaparJson(String valor) {
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"':  linea.append("\\\""); break;
+                case '\\': linea.append("\\\\"); break;
+                case '\n': linea.append("\\n"); break;
+                case '\r': linea.append("\\r"); break;
+                case '\t': linea.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        linea.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        linea.append(c);
+                    }
+            }
+        }
+    }
+
+    /**
+     * Codifica la línea acumulada en el búfer de bytes, por tramos del tamaño
+     * del búfer de caracteres, y la deja lista para la siguiente.
+     */
+    private void escribirLinea(FileChannel canal) throws IOException {
+        linea.append('\n');
+        int inicio = 0;
+        int largo = linea.length();
+        while (inicio < largo) {
+            int fin = Math.min(largo, inicio + caracteres.remaining());
+            linea.getChars(inicio, fin, caracteres.array(), caracteres.position());
+            caracteres.position(caracteres.position() + (fin - inicio));
+            inicio = fin;
+
+            caracteres.flip();
+            CoderResult resultado;
+            while ((resultado = codificador.encode(caracteres, bytes, false)).isOverflow()) {
+                escribirBytes(canal);
+            }
+            if (resultado.isError()) {
+                resultado.throwException();
+            }
+            // Conservar un posible sustituto alto pendiente
+            caracteres.compact();
+        }
+        linea.setLength(0);
+    }
+
+    private void vaciar(FileChannel canal) throws IOException {
+        caracteres.flip();
+        while (codificador.encode(caracteres, bytes, true).isOverflow()) {
+            escribirBytes(canal);
+        }
+        while (codificador.flush(bytes).isOverflow()) {
+            escribirBytes(canal);
+        }
+        caracteres.clear();
+        escribirBytes(canal);
+    }
+
+    private void escribirBytes(FileChannel canal) throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            canal.write(bytes);
+        }
+        bytes.clear();
+    }
+}
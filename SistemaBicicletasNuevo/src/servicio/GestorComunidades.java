@@ -0,0 +1,307 @@
+
+package servicio;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Atiende a varias comunidades en un mismo proceso, cada una con sus propios
+ * DAOs y servicios (ver {@link Comunidad}).
+ *
+ * Los datos de una comunidad se cargan desde su archivo en el directorio del
+ * gestor con la primera tarea que los usa, y se descargan (guardándolos
+ * antes) cuando pasa el tiempo de inactividad indicado en {@link #iniciar}.
+ * Si la memoria estimada de las comunidades cargadas supera el presupuesto,
+ * se descargan primero las usadas hace más tiempo, sin esperar a la
+ * inactividad. Las descargas se hacen en un único hilo de mantenimiento.
+ *
+ * Todas las comunidades comparten un grupo fijo de hilos y un temporizador
+ * para las reservas, así que el número de hilos no crece con el de
+ * comunidades; cada una tiene su propia cola con límite de tareas en espera
+ * y de hilos en uso, para que una comunidad muy activa no demore a las demás.
+ */
+public class GestorComunidades {
+    /** Máximo de tareas en espera por comunidad si no se indica otro. */
+    public static final int PENDIENTES_PREDETERMINADAS = 1024;
+    /** Tiempo sin accesos tras el que se descarga una comunidad si no se indica otro. */
+    public static final Duration INACTIVIDAD_PREDETERMINADA = Duration.ofMinutes(15);
+    private static final Pattern ID_VALIDO = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final Path directorio;
+    private final int hilosPorComunidad;
+    private final int maximoPendientes;
+    private final long presupuestoMemoria;
+    private final ExecutorService hilos;
+    private final ScheduledExecutorService vencimientos;
+    private final ScheduledExecutorService mantenimiento;
+    private final ConcurrentHashMap<String, Comunidad> comunidades = new ConcurrentHashMap<>();
+    private final AtomicBoolean ajustePendiente = new AtomicBoolean();
+    private boolean iniciado;
+    private volatile IOException ultimoError;
+
+    /**
+     * Crea un gestor con un hilo por procesador, un hilo por comunidad y un
+     * presupuesto de la mitad de la memoria máxima del proceso.
+     *
+     * @param directorio Directorio donde se guardan las comunidades; se crea si no existe.
+     * @throws IOException Si no se puede crear el directorio.
+     */
+    public GestorComunidades(Path directorio) throws IOException {
+        this(directorio, Runtime.getRuntime().availableProcessors(), 1,
+                PENDIENTES_PREDETERMINADAS, Runtime.getRuntime().maxMemory() / 2);
+    }
+
+    /**
+     * Crea un gestor con los límites indicados.
+     *
+     * @param directorio         Directorio donde se guardan las comunidades; se crea si no existe.
+     * @param hilos              Hilos compartidos entre todas las comunidades.
+     * @param hilosPorComunidad  Máximo de hilos que usa una comunidad a la vez.
+     * @param maximoPendientes   Máximo de tareas en espera por comunidad.
+     * @param presupuestoMemoria Bytes estimados que pueden ocupar las comunidades cargadas.
+     * @throws IOException Si no se puede crear el directorio.
+     */
+    public GestorComunidades(Path directorio, int hilos, int hilosPorComunidad, int maximoPendientes,
+            long presupuestoMemoria) throws IOException {
+        if (hilosPorComunidad < 1 || hilosPorComunidad > hilos) {
+            throw new IllegalArgumentException("Hilos por comunidad fuera de rango: " + hilosPorComunidad);
+        }
+        this.directorio = Files.createDirectories(directorio);
+        this.hilosPorComunidad = hilosPorComunidad;
+        this.maximoPendientes = maximoPendientes;
+        this.presupuestoMemoria = presupuestoMemoria;
+        this.hilos = Executors.newFixedThreadPool(hilos, hilosDemonio("comunidades-"));
+        // Las reservas cancelan su vencimiento al consumirse; se quitan de la cola enseguida
+        ScheduledThreadPoolExecutor temporizador = new ScheduledThreadPoolExecutor(1, hilosDemonio("vencimiento-reservas-"));
+        temporizador.setRemoveOnCancelPolicy(true);
+        this.vencimientos = temporizador;
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(hilosDemonio("mantenimiento-comunidades-"));
+    }
+
+    private static ThreadFactory hilosDemonio(String prefijo) {
+        AtomicInteger numero = new AtomicInteger();
+        return r -> {
+            Thread hilo = new Thread(r, prefijo + numero.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+
+    /**
+     * Obtiene una comunidad, creándola sin cargar sus datos si es la primera
+     * vez que se pide.
+     *
+     * @param idComunidad ID de la comunidad: letras, dígitos, '-' o '_'.
+     * @return La comunidad.
+     */
+    public Comunidad obtener(String idComunidad) {
+        Comunidad comunidad = comunidades.get(idComunidad);
+        if (comunidad != null) {
+            return comunidad;
+        }
+        if (!ID_VALIDO.matcher(idComunidad).matches()) {
+            throw new IllegalArgumentException("ID de comunidad no válido: " + idComunidad);
+        }
+        return comunidades.computeIfAbsent(idComunidad, id -> new Comunidad(id, directorio.resolve(id + ".com"),
+                hilos, hilosPorComunidad, maximoPendientes, vencimientos, this::programarAjuste));
+    }
+
+    /**
+     * Ejecuta una tarea sobre los servicios de una comunidad, en su cola.
+     * Los servicios recibidos solo son válidos durante la tarea.
+     *
+     * @param <T>         Tipo del resultado.
+     * @param idComunidad ID de la comunidad.
+     * @param tarea       Tarea a ejecutar.
+     * @return El resultado de la tarea; termina con {@link RejectedExecutionException}
+     *         si la cola de la comunidad está llena.
+     */
+    public <T> CompletableFuture<T> ejecutar(String idComunidad, Function<Comunidad.Servicios, T> tarea) {
+        return obtener(idComunidad).ejecutar(tarea);
+    }
+
+    /**
+     * Empieza a descargar en segundo plano las comunidades que pasan
+     * {@link #INACTIVIDAD_PREDETERMINADA} sin accesos, revisando cada minuto.
+     */
+    public void iniciar() {
+        iniciar(Duration.ofMinutes(1), INACTIVIDAD_PREDETERMINADA);
+    }
+
+    /**
+     * Empieza a descargar en segundo plano las comunidades inactivas.
+     *
+     * @param revision    Tiempo entre revisiones.
+     * @param inactividad Tiempo sin accesos tras el que se descarga una comunidad.
+     */
+    public synchronized void iniciar(Duration revision, Duration inactividad) {
+        if (iniciado) {
+            return;
+        }
+        iniciado = true;
+        mantenimiento.scheduleWithFixedDelay(() -> descargarInactivas(inactividad),
+                revision.toMillis(), revision.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Descarga las comunidades sin accesos durante el tiempo indicado y sin
+     * tareas ni reservas pendientes.
+     *
+     * @param inactividad Tiempo sin accesos.
+     * @return Número de comunidades descargadas.
+     */
+    public int descargarInactivas(Duration inactividad) {
+        long inactivaDesde = System.currentTimeMillis() - inactividad.toMillis();
+        int descargadas = 0;
+        for (Comunidad comunidad : comunidades.values()) {
+            if (descargar(comunidad, inactivaDesde)) {
+                descargadas++;
+            }
+        }
+        return descargadas;
+    }
+
+    private boolean descargar(Comunidad comunidad, long inactivaDesde) {
+        try {
+            return comunidad.descargar(inactivaDesde);
+        } catch (IOException e) {
+            // La comunidad sigue en memoria y se reintenta en la siguiente revisión
+            ultimoError = e;
+            return false;
+        }
+    }
+
+    /**
+     * Pide un ajuste de memoria tras cargar una comunidad. Los ajustes se
+     * hacen en el hilo de mantenimiento y nunca hay más de uno pendiente.
+     */
+    private void programarAjuste() {
+        if (memoriaEstimada() > presupuestoMemoria && ajustePendiente.compareAndSet(false, true)) {
+            try {
+                mantenimiento.execute(() -> {
+                    ajustePendiente.set(false);
+                    ajustarMemoria();
+                });
+            } catch (RejectedExecutionException e) {
+                // El gestor se está deteniendo y guardará todas las comunidades
+                ajustePendiente.set(false);
+            }
+        }
+    }
+
+    /**
+     * Descarga comunidades desocupadas, de la usada hace más tiempo a la más
+     * reciente, hasta volver al presupuesto de memoria.
+     *
+     * @return Número de comunidades descargadas.
+     */
+    public int ajustarMemoria() {
+        long memoria = memoriaEstimada();
+        if (memoria <= presupuestoMemoria) {
+            return 0;
+        }
+        List<Comunidad> cargadas = new ArrayList<>();
+        for (Comunidad comunidad : comunidades.values()) {
+            if (comunidad.estaCargada()) {
+                cargadas.add(comunidad);
+            }
+        }
+        cargadas.sort(Comparator.comparingLong(Comunidad::getUltimoAcceso));
+        int descargadas = 0;
+        for (Comunidad comunidad : cargadas) {
+            if (memoria <= presupuestoMemoria) {
+                break;
+            }
+            long ocupada = comunidad.getMemoriaEstimada();
+            if (descargar(comunidad, Long.MAX_VALUE)) {
+                memoria -= ocupada;
+                descargadas++;
+            }
+        }
+        return descargadas;
+    }
+
+    /**
+     * Estima la memoria que ocupan todas las comunidades cargadas.
+     *
+     * @return Bytes aproximados.
+     */
+    public long memoriaEstimada() {
+        long total = 0;
+        for (Comunidad comunidad : comunidades.values()) {
+            total += comunidad.getMemoriaEstimada();
+        }
+        return total;
+    }
+
+    /**
+     * Obtiene las comunidades conocidas, cargadas o no.
+     *
+     * @return Vista de solo lectura de las comunidades.
+     */
+    public Collection<Comunidad> getComunidades() {
+        return Collections.unmodifiableCollection(comunidades.values());
+    }
+
+    /**
+     * Obtiene el presupuesto de memoria de las comunidades cargadas.
+     *
+     * @return Bytes estimados permitidos.
+     */
+    public long getPresupuestoMemoria() { return presupuestoMemoria; }
+
+    /**
+     * Obtiene el error de la última descarga fallida, si la hubo.
+     *
+     * @return El error, o null si no hubo fallos.
+     */
+    public IOException getUltimoError() { return ultimoError; }
+
+    /**
+     * Deja de aceptar tareas, espera las que están en curso y guarda todas las
+     * comunidades cargadas. Las reservas vigentes se pierden.
+     *
+     * @throws IOException Si falla el guardado de alguna comunidad; las demás se guardan igual.
+     */
+    public void detener() throws IOException {
+        mantenimiento.shutdownNow();
+        hilos.shutdown();
+        try {
+            hilos.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        vencimientos.shutdownNow();
+        IOException error = null;
+        for (Comunidad comunidad : comunidades.values()) {
+            try {
+                comunidad.cerrar();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
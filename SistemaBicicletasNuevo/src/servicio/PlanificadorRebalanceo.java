@@ -0,0 +1,304 @@
+
+package servicio;
+
+import dao.BicicletaDAO;
+import modelo.MovimientoRebalanceo;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Planifica traslados de bicicletas entre estaciones para reducir los
+ * faltantes esperados, es decir, las veces que alguien llega a una estación
+ * y no encuentra bicicleta.
+ *
+ * La demanda de cada estación se modela como una variable de Poisson con la
+ * media indicada, así que los faltantes esperados de una estación con
+ * {@code t} bicicletas son {@code E[max(0, D - t)]}. A eso se suma un costo
+ * fijo por cada bicicleta que sale de su estación. Ambos términos son
+ * convexos y separables por estación, de modo que el método voraz es óptimo:
+ * mientras quitar una bicicleta a la estación que menos pierde y dársela a la
+ * que más gana mejore el total, se hace el traslado. Dos montículos guardan
+ * la mejor ganancia y la menor pérdida, así que cada paso cuesta O(log n).
+ *
+ * La disponibilidad se lee de {@link BicicletaDAO} recorriendo la tabla en
+ * paralelo, y las ganancias y pérdidas iniciales de todas las estaciones
+ * también se calculan en paralelo. Como el óptimo no depende del punto de
+ * partida, {@link #replanificar(Map)} parte del plan anterior, ajustado a la
+ * nueva disponibilidad, y solo hace los pocos pasos que faltan.
+ */
+public class PlanificadorRebalanceo {
+    /** Faltantes esperados que debe evitar un traslado para que valga la pena, si no se indica otro costo. */
+    public static final double COSTO_POR_BICICLETA = 0.1;
+    private static final double TOLERANCIA = 1e-9;
+
+    private final BicicletaDAO bicicletaDAO;
+    private final double costoPorBicicleta;
+
+    // Estado del último plan, por índice de estación
+    private final Map<String, Integer> indices = new HashMap<>();
+    private String[] estaciones = new String[16];
+    private int[] disponibles = new int[16];
+    private double[] demanda = new double[16];
+    private int[] objetivo = new int[16];
+    private int[] version = new int[16];
+    private int total;
+    private boolean planificado;
+
+    /**
+     * Crea un planificador con el costo por bicicleta predeterminado.
+     *
+     * @param bicicletaDAO DAO de donde se lee la disponibilidad.
+     */
+    public PlanificadorRebalanceo(BicicletaDAO bicicletaDAO) {
+        this(bicicletaDAO, COSTO_POR_BICICLETA);
+    }
+
+    /**
+     * Crea un planificador.
+     *
+     * @param bicicletaDAO      DAO de donde se lee la disponibilidad.
+     * @param costoPorBicicleta Faltantes esperados que debe evitar cada bicicleta trasladada.
+     */
+    public PlanificadorRebalanceo(BicicletaDAO bicicletaDAO, double costoPorBicicleta) {
+        this.bicicletaDAO = bicicletaDAO;
+        this.costoPorBicicleta = costoPorBicicleta;
+    }
+
+    /**
+     * Calcula un plan nuevo con la disponibilidad actual.
+     *
+     * @param demanda Bicicletas que se espera que salgan de cada estación en el
+     *                horizonte del plan (por ejemplo,
+     *                {@link PronosticoDemanda#demandaNetaProximaHora}); las
+     *                estaciones que no aparecen tienen demanda cero.
+     * @return Los traslados propuestos, de mayor a menor.
+     */
+    public synchronized List<MovimientoRebalanceo> planificar(Map<String, Double> demanda) {
+        Arrays.fill(this.demanda, 0, total, 0);
+        leerDisponibilidad();
+        actualizarDemanda(demanda);
+        System.arraycopy(disponibles, 0, objetivo, 0, total);
+        planificado = true;
+        return optimizar();
+    }
+
+    /**
+     * Recalcula el plan después de que cambió la disponibilidad o la demanda
+     * de algunas estaciones, partiendo del plan anterior.
+     *
+     * @param demandaCambiada Demanda nueva de las estaciones que cambiaron;
+     *                        las demás conservan la anterior.
+     * @return Los traslados propuestos, de mayor a menor.
+     */
+    public synchronized List<MovimientoRebalanceo> replanificar(Map<String, Double> demandaCambiada) {
+        if (!planificado) {
+            return planificar(demandaCambiada);
+        }
+        int[] anteriores = Arrays.copyOf(disponibles, total);
+        leerDisponibilidad();
+        actualizarDemanda(demandaCambiada);
+        // Las bicicletas que llegaron o salieron desde el plan anterior se
+        // suman o restan al objetivo de su estación
+        for (int i = 0; i < total; i++) {
+            int anterior = i < anteriores.length ? anteriores[i] : 0;
+            objetivo[i] = Math.max(0, objetivo[i] + disponibles[i] - anterior);
+        }
+        return optimizar();
+    }
+
+    private void leerDisponibilidad() {
+        Map<String, Integer> conteo = bicicletaDAO.contarDisponiblesPorEstacion();
+        Arrays.fill(disponibles, 0, total, 0);
+        conteo.forEach((estacion, cantidad) -> {
+            int i = indice(estacion);
+            disponibles[i] = cantidad;
+        });
+    }
+
+    private void actualizarDemanda(Map<String, Double> nueva) {
+        nueva.forEach((estacion, valor) -> {
+            int i = indice(estacion);
+            demanda[i] = Math.max(0, valor);
+        });
+    }
+
+    private int indice(String estacion) {
+        Integer i = indices.get(estacion);
+        if (i != null) {
+            return i;
+        }
+        if (total == estaciones.length) {
+            int capacidad = total << 1;
+            estaciones = Arrays.copyOf(estaciones, capacidad);
+            disponibles = Arrays.copyOf(disponibles, capacidad);
+            demanda = Arrays.copyOf(demanda, capacidad);
+            objetivo = Arrays.copyOf(objetivo, capacidad);
+            version = Arrays.copyOf(version, capacidad);
+        }
+        estaciones[total] = estacion;
+        indices.put(estacion, total);
+        return total++;
+    }
+
+    /**
+     * Lleva el objetivo de cada estación al óptimo con el método voraz y
+     * devuelve la diferencia con la disponibilidad como traslados.
+     */
+    private List<MovimientoRebalanceo> optimizar() {
+        int n = total;
+        Marginal[] ganancias = new Marginal[n];
+        Marginal[] perdidas = new Marginal[n];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            // La cola de receptores se ordena de mayor a menor ganancia
+            ganancias[i] = new Marginal(-ganancia(i), i, version[i]);
+            perdidas[i] = objetivo[i] > 0 ? new Marginal(perdida(i), i, version[i]) : null;
+        });
+        PriorityQueue<Marginal> receptores = new PriorityQueue<>(Arrays.asList(ganancias));
+        PriorityQueue<Marginal> donantes = new PriorityQueue<>(n + 1);
+        for (Marginal m : perdidas) {
+            if (m != null) {
+                donantes.add(m);
+            }
+        }
+
+        // Al partir de un plan anterior el total puede no cuadrar con las
+        // bicicletas disponibles; se ajusta por donde menos afecta
+        long sobrantes = 0;
+        for (int i = 0; i < n; i++) {
+            sobrantes += objetivo[i] - disponibles[i];
+        }
+        for (; sobrantes > 0; sobrantes--) {
+            mover(cima(donantes).estacion, -1, receptores, donantes);
+        }
+        for (; sobrantes < 0; sobrantes++) {
+            mover(cima(receptores).estacion, 1, receptores, donantes);
+        }
+
+        while (true) {
+            Marginal receptor = cima(receptores);
+            Marginal donante = cima(donantes);
+            if (receptor == null || donante == null || receptor.estacion == donante.estacion
+                    || -receptor.valor - donante.valor <= TOLERANCIA) {
+                break;
+            }
+            mover(donante.estacion, -1, receptores, donantes);
+            mover(receptor.estacion, 1, receptores, donantes);
+        }
+        return traslados();
+    }
+
+    private void mover(int i, int cambio, PriorityQueue<Marginal> receptores, PriorityQueue<Marginal> donantes) {
+        objetivo[i] += cambio;
+        version[i]++;
+        receptores.add(new Marginal(-ganancia(i), i, version[i]));
+        if (objetivo[i] > 0) {
+            donantes.add(new Marginal(perdida(i), i, version[i]));
+        }
+    }
+
+    /** Devuelve el mejor elemento vigente de la cola, descartando los que ya cambiaron. */
+    private Marginal cima(PriorityQueue<Marginal> cola) {
+        Marginal m = cola.peek();
+        while (m != null && m.version != version[m.estacion]) {
+            cola.poll();
+            m = cola.peek();
+        }
+        return m;
+    }
+
+    /** Faltantes evitados (más costo ahorrado) al dar una bicicleta más a la estación. */
+    private double ganancia(int i) {
+        int t = objetivo[i];
+        return colaPoisson(demanda[i], t + 1) + (t < disponibles[i] ? costoPorBicicleta : 0);
+    }
+
+    /** Faltantes agregados (más costo de traslado) al quitarle una bicicleta a la estación. */
+    private double perdida(int i) {
+        int t = objetivo[i];
+        return colaPoisson(demanda[i], t) + (t <= disponibles[i] ? costoPorBicicleta : 0);
+    }
+
+    /**
+     * Probabilidad de que una variable de Poisson con la media dada sea al
+     * menos {@code k}. La suma se corta en cuanto la acumulada llega a 1, así
+     * que su costo depende de la media y no de {@code k}.
+     */
+    static double colaPoisson(double media, int k) {
+        if (k <= 0) {
+            return 1;
+        }
+        if (media <= 0) {
+            return 0;
+        }
+        double p = Math.exp(-media);
+        double acumulada = 0;
+        for (int j = 0; j < k; j++) {
+            acumulada += p;
+            if (acumulada >= 1 - 1e-12) {
+                return 0;
+            }
+            p *= media / (j + 1);
+        }
+        return Math.max(0, 1 - acumulada);
+    }
+
+    /**
+     * Empareja las estaciones que sobran con las que faltan, de mayor a menor.
+     */
+    private List<MovimientoRebalanceo> traslados() {
+        List<Integer> origenes = new ArrayList<>();
+        List<Integer> destinos = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            if (objetivo[i] < disponibles[i]) {
+                origenes.add(i);
+            } else if (objetivo[i] > disponibles[i]) {
+                destinos.add(i);
+            }
+        }
+        origenes.sort((a, b) -> Integer.compare(disponibles[b] - objetivo[b], disponibles[a] - objetivo[a]));
+        destinos.sort((a, b) -> Integer.compare(objetivo[b] - disponibles[b], objetivo[a] - disponibles[a]));
+
+        List<MovimientoRebalanceo> movimientos = new ArrayList<>();
+        int o = 0;
+        int d = 0;
+        int sobra = o < origenes.size() ? disponibles[origenes.get(0)] - objetivo[origenes.get(0)] : 0;
+        int falta = d < destinos.size() ? objetivo[destinos.get(0)] - disponibles[destinos.get(0)] : 0;
+        while (o < origenes.size() && d < destinos.size()) {
+            int cantidad = Math.min(sobra, falta);
+            movimientos.add(new MovimientoRebalanceo(estaciones[origenes.get(o)], estaciones[destinos.get(d)], cantidad));
+            sobra -= cantidad;
+            falta -= cantidad;
+            if (sobra == 0 && ++o < origenes.size()) {
+                sobra = disponibles[origenes.get(o)] - objetivo[origenes.get(o)];
+            }
+            if (falta == 0 && ++d < destinos.size()) {
+                falta = objetivo[destinos.get(d)] - disponibles[destinos.get(d)];
+            }
+        }
+        return movimientos;
+    }
+
+    /** Ganancia o pérdida de una estación, válida mientras su versión no cambie. */
+    private static final class Marginal implements Comparable<Marginal> {
+        final double valor;
+        final int estacion;
+        final int version;
+
+        Marginal(double valor, int estacion, int version) {
+            this.valor = valor;
+            this.estacion = estacion;
+            this.version = version;
+        }
+
+        @Override
+        public int compareTo(Marginal otro) {
+            int c = Double.compare(valor, otro.valor);
+            return c != 0 ? c : Integer.compare(estacion, otro.estacion);
+        }
+    }
+}
@@ -1,123 +1,765 @@
-
-package servicio;
-
-import dao.BicicletaDAO;
-import dao.PrestamoDAO;
-import dao.UsuarioDAO;
-import modelo.Prestamo;
-import modelo.Bicicleta;
-import java.time.LocalDateTime;
-import java.util.List;
-
-/**
- * Servicio encargado de gestionar los préstamos y devoluciones
- * de bicicletas en el sistema.
- *
- * Esta clase centraliza la lógica de negocio relacionada con los préstamos,
- * validando usuarios, bicicletas y el estado de cada transacción.
- */
-public class PrestamoService {
-    private PrestamoDAO prestamoDAO;
-    private UsuarioDAO usuarioDAO;
-    private BicicletaDAO bicicletaDAO;
-
-    /**
-     * Constructor que inicializa las dependencias de acceso a datos.
-     *
-     * @param prestamoDAO   DAO para acceder y modificar préstamos.
-     * @param usuarioDAO    DAO para consultar o actualizar usuarios.
-     * @param bicicletaDAO  DAO para consultar o actualizar bicicletas.
-     */
-    public PrestamoService(PrestamoDAO prestamoDAO, UsuarioDAO usuarioDAO, BicicletaDAO bicicletaDAO) {
-        this.prestamoDAO = prestamoDAO;
-        this.usuarioDAO = usuarioDAO;
-        this.bicicletaDAO = bicicletaDAO;
-    }
-
-    /**
-     * Realiza un nuevo préstamo si se cumplen todas las condiciones:
-     * - El usuario existe.
-     * - La bicicleta existe y está disponible.
-     * - El usuario no tiene un préstamo activo.
-     *
-     * @param idPrestamo  ID único para el préstamo.
-     * @param idUsuario   ID del usuario que solicita el préstamo.
-     * @param idBicicleta ID de la bicicleta a prestar.
-     * @return true si el préstamo se realizó correctamente, false en caso contrario.
-     */
-    public boolean realizarPrestamo(String idPrestamo, String idUsuario, String idBicicleta) {
-        // Validar que el usuario existe
-        if (usuarioDAO.buscarPorId(idUsuario) == null) {
-            return false;
-        }
-        
-        // Validar que la bicicleta existe y está disponible
-        Bicicleta bicicleta = bicicletaDAO.buscarPorId(idBicicleta);
-        if (bicicleta == null || !bicicleta.isDisponible()) {
-            return false;
-        }
-        
-        // Validar que el usuario no tiene préstamo activo
-        if (prestamoDAO.buscarPrestamoActivo(idUsuario) != null) {
-            return false;
-        }
-        
-        // Realizar el préstamo
-        Prestamo prestamo = new Prestamo(idPrestamo, idUsuario, idBicicleta);
-        prestamoDAO.agregarPrestamo(prestamo);
-        
-        // Actualizar estados
-        bicicleta.setDisponible(false);
-        usuarioDAO.buscarPorId(idUsuario).setTienePrestamo(true);
-        
-        return true;
-    }
-
-    /**
-     * Registra la devolución de una bicicleta previamente prestada.
-     * Si el préstamo no existe o ya fue devuelto, no realiza cambios.
-     *
-     * @param idPrestamo ID del préstamo a cerrar.
-     * @return true si la devolución se registró con éxito, false si no aplica.
-     */
-    public boolean registrarDevolucion(String idPrestamo) {
-        Prestamo prestamo = prestamoDAO.buscarPorId(idPrestamo);
-        if (prestamo == null || prestamo.getFechaDevolucion() != null) {
-            return false;
-        }
-        
-        // Registrar devolución
-        prestamo.setFechaDevolucion(LocalDateTime.now());
-        
-        // Actualizar estados
-        bicicletaDAO.buscarPorId(prestamo.getIdBicicleta()).setDisponible(true);
-        usuarioDAO.buscarPorId(prestamo.getIdUsuario()).setTienePrestamo(false);
-        
-        return true;
-    }
-    
-    /**
-     * Obtiene el historial de todos los préstamos realizados por un usuario.
-     *
-     * @param idUsuario ID del usuario a consultar.
-     * @return Lista de objetos Prestamo asociados al usuario.
-     */
-    public List<Prestamo> obtenerHistorialUsuario(String idUsuario) {
-        return prestamoDAO.obtenerPorUsuario(idUsuario);
-    }
-
-    /**
-     * Busca el préstamo activo actual (si existe) de un usuario.
-     *
-     * @param idUsuario ID del usuario.
-     * @return Objeto Prestamo si hay uno activo, o null si no lo hay.
-     */
-    public Prestamo buscarPrestamoActivo(String idUsuario) {
-        for (Prestamo p : prestamoDAO.obtenerTodos()) {
-            if (p.getIdUsuario().equals(idUsuario) && p.getFechaDevolucion() == null) {
-                return p;
-            }
-        }
-        return null;
-    }
+
+package servicio;
+
+import dao.BicicletaDAO;
+import dao.PrestamoDAO;
+import dao.UsuarioDAO;
+import modelo.Prestamo;
+import modelo.Reserva;
+import modelo.Bicicleta;
+import modelo.EstadoBicicleta;
+import modelo.EstadoUsuario;
+import modelo.OperacionKiosco;
+import modelo.ResultadoKiosco;
+import modelo.Usuario;
+import monitoreo.EventoServicio;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Servicio encargado de gestionar los préstamos y devoluciones
+ * de bicicletas en el sistema.
+ *
+ * Esta clase centraliza la lógica de negocio relacionada con los préstamos,
+ * validando usuarios, bicicletas y el estado de cada transacción.
+ *
+ * Cada préstamo y devolución se cuenta en el {@link PronosticoDemanda} de
+ * la estación donde ocurre, para estimar la demanda de la próxima hora.
+ *
+ * Los préstamos, devoluciones y lotes validan y aplican sus cambios bajo un
+ * mismo bloqueo, de modo que el préstamo activo de cada usuario, el estado de
+ * cada bicicleta y la marca {@link Usuario#tienePrestamo()} nunca se
+ * contradicen una vez terminada la operación. El punto en que una operación
+ * se vuelve visible es el cambio del préstamo activo en {@link PrestamoDAO};
+ * {@link #buscarPrestamoActivo(String)} lo lee sin bloquear. El programa
+ * {@code estres.EstresPrestamos} comprueba estas garantías con muchos hilos.
+ *
+ * Cada operación pública emite un {@link EventoServicio} de Java Flight
+ * Recorder con los IDs involucrados y su resultado.
+ *
+ * Mantiene además una vista con el {@link EstadoUsuario} de cada usuario
+ * (su préstamo activo y el modelo de la bicicleta, ya unidos). Cada préstamo,
+ * devolución o lote reemplaza el estado de los usuarios afectados bajo el
+ * mismo bloqueo, así que {@link #consultarEstadoUsuario(String)} responde
+ * con una sola lectura de un mapa. Un usuario que aún no está en la vista se
+ * arma desde los DAOs la primera vez que se consulta.
+ *
+ * También administra las reservas temporales: cada reserva programa su propio
+ * vencimiento en un temporizador, por lo que nunca se recorren las reservas
+ * activas para encontrar las vencidas. El temporizador puede ser propio o
+ * compartido entre varias instancias, como las de cada comunidad.
+ */
+public class PrestamoService {
+    /** Tiempo que una bicicleta permanece apartada si no se indica otro. */
+    public static final Duration DURACION_RESERVA = Duration.ofMinutes(5);
+    /** Estación a la que se atribuyen las operaciones que no indican una. */
+    public static final String ESTACION_PREDETERMINADA = "CENTRAL";
+    private static final String SERVICIO = "PrestamoService";
+
+    private PrestamoDAO prestamoDAO;
+    private UsuarioDAO usuarioDAO;
+    private BicicletaDAO bicicletaDAO;
+
+    // Reservas vigentes, indexadas por bicicleta y por usuario
+    private final ConcurrentHashMap<String, Reserva> reservasPorBicicleta = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Reserva> reservasPorUsuario = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService vencimientos;
+    // Vista materializada de la consulta de usuario, indexada por ID de usuario
+    private final ConcurrentHashMap<String, EstadoUsuario> estadosUsuarios = new ConcurrentHashMap<>();
+    // Serializa préstamos, devoluciones y lotes: la validación y los cambios
+    // en DAO, bicicleta y usuario ocurren como un solo paso
+    private final Object candado = new Object();
+    private final Clock reloj;
+    private final PronosticoDemanda pronostico;
+
+    /**
+     * Constructor que inicializa las dependencias de acceso a datos.
+     *
+     * @param prestamoDAO   DAO para acceder y modificar préstamos.
+     * @param usuarioDAO    DAO para consultar o actualizar usuarios.
+     * @param bicicletaDAO  DAO para consultar o actualizar bicicletas.
+     */
+    public PrestamoService(PrestamoDAO prestamoDAO, UsuarioDAO usuarioDAO, BicicletaDAO bicicletaDAO) {
+        this(prestamoDAO, usuarioDAO, bicicletaDAO, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Constructor que además indica el reloj del que se toman las fechas de
+     * préstamos, devoluciones y reservas, por ejemplo un reloj fijo para
+     * reproducir un escenario.
+     *
+     * @param prestamoDAO   DAO para acceder y modificar préstamos.
+     * @param usuarioDAO    DAO para consultar o actualizar usuarios.
+     * @param bicicletaDAO  DAO para consultar o actualizar bicicletas.
+     * @param reloj         Fuente de la hora actual; su zona se usa para el pronóstico.
+     */
+    public PrestamoService(PrestamoDAO prestamoDAO, UsuarioDAO usuarioDAO, BicicletaDAO bicicletaDAO, Clock reloj) {
+        this(prestamoDAO, usuarioDAO, bicicletaDAO, reloj, crearTemporizador());
+    }
+
+    /**
+     * Constructor que además indica el temporizador donde se programan los
+     * vencimientos de las reservas, para compartir un solo hilo entre muchas
+     * instancias del servicio.
+     *
+     * @param prestamoDAO   DAO para acceder y modificar préstamos.
+     * @param usuarioDAO    DAO para consultar o actualizar usuarios.
+     * @param bicicletaDAO  DAO para consultar o actualizar bicicletas.
+     * @param reloj         Fuente de la hora actual; su zona se usa para el pronóstico.
+     * @param vencimientos  Temporizador de vencimientos; el servicio no lo detiene.
+     */
+    public PrestamoService(PrestamoDAO prestamoDAO, UsuarioDAO usuarioDAO, BicicletaDAO bicicletaDAO, Clock reloj,
+            ScheduledExecutorService vencimientos) {
+        this.prestamoDAO = prestamoDAO;
+        this.usuarioDAO = usuarioDAO;
+        this.bicicletaDAO = bicicletaDAO;
+        this.reloj = reloj;
+        this.vencimientos = vencimientos;
+        this.pronostico = new PronosticoDemanda(reloj.getZone());
+    }
+
+    /**
+     * Realiza un nuevo préstamo si se cumplen todas las condiciones:
+     * - El usuario existe.
+     * - La bicicleta existe y está disponible, o está reservada por el mismo usuario.
+     * - El usuario no tiene un préstamo activo.
+     * - No existe otro préstamo con el mismo ID, ni siquiera archivado.
+     *
+     * Los IDs de texto se convierten a claves enteras una sola vez aquí;
+     * a partir de ese punto todas las búsquedas usan las claves. Las
+     * validaciones solo consultan tablas, así que un rechazo no crea objetos.
+     * Si el usuario ya tiene un préstamo activo se rechaza sin tomar el
+     * bloqueo; el resto de las condiciones se comprueba bajo el bloqueo.
+     *
+     * Si la bicicleta estaba reservada, la reserva se consume de forma atómica:
+     * si vence en el mismo instante, solo una de las dos operaciones tiene efecto.
+     * Si el usuario tenía reservada otra bicicleta, esa reserva se libera.
+     *
+     * @param idPrestamo  ID único para el préstamo.
+     * @param idUsuario   ID del usuario que solicita el préstamo.
+     * @param idBicicleta ID de la bicicleta a prestar.
+     * @return true si el préstamo se realizó correctamente, false en caso contrario.
+     */
+    public boolean realizarPrestamo(String idPrestamo, String idUsuario, String idBicicleta) {
+        return realizarPrestamo(ESTACION_PREDETERMINADA, idPrestamo, idUsuario, idBicicleta);
+    }
+
+    /**
+     * Realiza un nuevo préstamo en una estación, con las mismas condiciones
+     * que {@link #realizarPrestamo(String, String, String)}, y lo cuenta en
+     * el pronóstico de demanda de esa estación.
+     *
+     * @param idEstacion  ID de la estación donde se presta la bicicleta.
+     * @param idPrestamo  ID único para el préstamo.
+     * @param idUsuario   ID del usuario que solicita el préstamo.
+     * @param idBicicleta ID de la bicicleta a prestar.
+     * @return true si el préstamo se realizó correctamente, false en caso contrario.
+     */
+    public boolean realizarPrestamo(String idEstacion, String idPrestamo, String idUsuario, String idBicicleta) {
+        EventoServicio evento = new EventoServicio(SERVICIO, "realizarPrestamo");
+        boolean realizado = prestar(idEstacion, idPrestamo, idUsuario, idBicicleta);
+        evento.terminar(idUsuario, idBicicleta, realizado ? 1 : 0);
+        return realizado;
+    }
+
+    private boolean prestar(String idEstacion, String idPrestamo, String idUsuario, String idBicicleta) {
+        // Validar que el usuario existe
+        Usuario usuario = usuarioDAO.buscarPorId(idUsuario);
+        if (usuario == null) {
+            return false;
+        }
+        
+        // Validar que la bicicleta existe
+        Bicicleta bicicleta = bicicletaDAO.buscarPorId(idBicicleta);
+        if (bicicleta == null) {
+            return false;
+        }
+        
+        // Rechazo rápido: el usuario ya tiene un préstamo activo
+        if (prestamoDAO.buscarPrestamoActivo(usuario.getClave()) != null) {
+            return false;
+        }
+        
+        Prestamo prestamo;
+        synchronized (candado) {
+            // Validar de nuevo bajo el bloqueo, y que el ID sea nuevo
+            if (prestamoDAO.buscarPrestamoActivo(usuario.getClave()) != null
+                    || idEnUso(idPrestamo)) {
+                return false;
+            }
+            
+            // Tomar la bicicleta: disponible, o reservada por este mismo usuario
+            if (!tomarBicicleta(usuario, bicicleta)) {
+                return false;
+            }
+            
+            // Realizar el préstamo y actualizar estados
+            prestamo = new Prestamo(idPrestamo, usuario, bicicleta, reloj.millis());
+            prestamoDAO.agregarPrestamo(prestamo);
+            usuario.setTienePrestamo(true);
+            estadosUsuarios.put(usuario.getId(), EstadoUsuario.conPrestamo(usuario, prestamo, bicicleta));
+        }
+        pronostico.registrarPrestamo(idEstacion, prestamo.getMarcaPrestamo());
+        
+        return true;
+    }
+
+    /**
+     * Pasa una bicicleta a prestada si está disponible o si la tiene reservada
+     * el mismo usuario, en cuyo caso la reserva se consume. Si el usuario
+     * tenía reservada otra bicicleta, esa reserva se libera: nunca quedan a
+     * la vez un préstamo y una reserva del mismo usuario.
+     */
+    private boolean tomarBicicleta(Usuario usuario, Bicicleta bicicleta) {
+        if (bicicleta.getEstado() == EstadoBicicleta.RESERVADA) {
+            Reserva reserva = reservasPorBicicleta.get(bicicleta.getId());
+            if (reserva == null || !reserva.getIdUsuario().equals(usuario.getId())
+                    || !reservasPorBicicleta.remove(bicicleta.getId(), reserva)) {
+                return false;
+            }
+            reservasPorUsuario.remove(usuario.getId(), reserva);
+            reserva.cancelarVencimiento();
+            return bicicletaDAO.cambiarEstado(bicicleta, EstadoBicicleta.RESERVADA, EstadoBicicleta.PRESTADA);
+        }
+        if (!bicicletaDAO.cambiarEstado(bicicleta, EstadoBicicleta.DISPONIBLE, EstadoBicicleta.PRESTADA)) {
+            return false;
+        }
+        Reserva otra = reservasPorUsuario.get(usuario.getId());
+        if (otra != null) {
+            vencerReserva(bicicletaDAO.buscarPorId(otra.getIdBicicleta()), otra);
+        }
+        return true;
+    }
+
+    /**
+     * Aplica de una sola vez las operaciones que un kiosco registró sin conexión.
+     *
+     * Las operaciones se aplican por fecha y, a igual fecha, en el orden de la
+     * lista, así que los conflictos siempre se resuelven igual: si una
+     * bicicleta se prestó dos veces sin conexión, gana el préstamo más antiguo
+     * y el otro se rechaza con {@link ResultadoKiosco#BICICLETA_NO_DISPONIBLE}.
+     *
+     * Cada usuario y cada bicicleta del lote se busca una sola vez. Una
+     * bicicleta se toma en su primer préstamo y solo se libera al final si
+     * quedó devuelta; los préstamos y devoluciones se registran en el DAO bajo
+     * un único bloqueo. Mientras se aplica el lote no avanza ningún otro
+     * préstamo ni devolución.
+     *
+     * @param operaciones Operaciones del kiosco.
+     * @return El resultado de cada operación, en la misma posición que en la lista recibida.
+     */
+    public List<ResultadoKiosco> procesarLote(List<OperacionKiosco> operaciones) {
+        return procesarLote(ESTACION_PREDETERMINADA, operaciones);
+    }
+
+    /**
+     * Aplica un lote de operaciones de kiosco como
+     * {@link #procesarLote(List)} y cuenta las aplicadas en el pronóstico de
+     * demanda de la estación del kiosco, con la hora en que ocurrieron.
+     *
+     * @param idEstacion  ID de la estación del kiosco.
+     * @param operaciones Operaciones del kiosco.
+     * @return El resultado de cada operación, en la misma posición que en la lista recibida.
+     */
+    public List<ResultadoKiosco> procesarLote(String idEstacion, List<OperacionKiosco> operaciones) {
+        EventoServicio evento = new EventoServicio(SERVICIO, "procesarLote");
+        Integer[] orden = new Integer[operaciones.size()];
+        boolean ordenadas = true;
+        for (int i = 0; i < orden.length; i++) {
+            orden[i] = i;
+            ordenadas &= i == 0 || !operaciones.get(i).getFecha().isBefore(operaciones.get(i - 1).getFecha());
+        }
+        // Los kioscos suelen enviar las operaciones ya ordenadas; si no, el
+        // ordenamiento es estable y a igual fecha se respeta el orden recibido
+        if (!ordenadas) {
+            Arrays.sort(orden, Comparator.comparing(i -> operaciones.get(i).getFecha()));
+        }
+        
+        // Las fechas del kiosco se pasan a milisegundos una sola vez, en la zona del reloj
+        long[] marcas = new long[orden.length];
+        for (int i = 0; i < marcas.length; i++) {
+            marcas[i] = operaciones.get(i).getFecha().atZone(reloj.getZone()).toInstant().toEpochMilli();
+        }
+        
+        ResultadoKiosco[] resultados = new ResultadoKiosco[orden.length];
+        int aplicadas = 0;
+        synchronized (candado) {
+            Lote lote = new Lote(idEstacion, orden.length);
+            for (int i : orden) {
+                OperacionKiosco operacion = operaciones.get(i);
+                resultados[i] = operacion.getTipo() == OperacionKiosco.Tipo.PRESTAMO
+                        ? lote.prestar(operacion, marcas[i]) : lote.devolver(operacion, marcas[i]);
+            }
+            lote.confirmar();
+        }
+        for (int i = 0; i < resultados.length; i++) {
+            if (resultados[i] == ResultadoKiosco.APLICADA) {
+                aplicadas++;
+                if (operaciones.get(i).getTipo() == OperacionKiosco.Tipo.PRESTAMO) {
+                    pronostico.registrarPrestamo(idEstacion, marcas[i]);
+                } else {
+                    pronostico.registrarDevolucion(idEstacion, marcas[i]);
+                }
+            }
+        }
+        evento.terminar(idEstacion, aplicadas);
+        return Arrays.asList(resultados);
+    }
+
+    /**
+     * Estado de un lote de kiosco mientras se aplica: qué usuarios y
+     * bicicletas ya se buscaron, cómo quedan según el lote y los cambios
+     * pendientes de registrar en el DAO.
+     */
+    private final class Lote {
+        private final Map<String, Usuario> usuarios;
+        private final Map<String, Bicicleta> bicicletas;
+        // Préstamo activo de cada usuario según el lote (null si no tiene)
+        private final Map<Usuario, Prestamo> activos;
+        // Bicicletas que controla el lote y si siguen prestadas
+        private final Map<Bicicleta, Boolean> prestadas;
+        private final Map<String, Prestamo> nuevos;
+        private final Set<Prestamo> devueltos;
+        // Préstamos a registrar, en orden; la marca es SIN_FECHA para un préstamo
+        // nuevo y la de devolución para una devolución
+        private final List<Prestamo> cambios;
+        private final long[] marcas;
+        private final String estacion;
+
+        Lote(String estacion, int operaciones) {
+            this.estacion = estacion;
+            int capacidad = operaciones * 4 / 3 + 1;
+            usuarios = new HashMap<>(capacidad);
+            bicicletas = new HashMap<>(capacidad);
+            activos = new HashMap<>(capacidad);
+            prestadas = new HashMap<>(capacidad);
+            nuevos = new HashMap<>(capacidad);
+            devueltos = new HashSet<>(capacidad);
+            cambios = new ArrayList<>(operaciones);
+            marcas = new long[operaciones];
+        }
+
+        ResultadoKiosco prestar(OperacionKiosco operacion, long marca) {
+            Usuario usuario = usuario(operacion.getIdUsuario());
+            if (usuario == null) {
+                return ResultadoKiosco.USUARIO_INEXISTENTE;
+            }
+            Bicicleta bicicleta = bicicleta(operacion.getIdBicicleta());
+            if (bicicleta == null) {
+                return ResultadoKiosco.BICICLETA_INEXISTENTE;
+            }
+            if (nuevos.containsKey(operacion.getIdPrestamo())
+                    || idEnUso(operacion.getIdPrestamo())) {
+                return ResultadoKiosco.PRESTAMO_DUPLICADO;
+            }
+            if (!activos.containsKey(usuario)) {
+                activos.put(usuario, prestamoDAO.buscarPrestamoActivo(usuario.getClave()));
+            }
+            if (activos.get(usuario) != null) {
+                return ResultadoKiosco.USUARIO_CON_PRESTAMO;
+            }
+            Boolean prestada = prestadas.get(bicicleta);
+            if (prestada == null ? !tomarBicicleta(usuario, bicicleta) : prestada) {
+                return ResultadoKiosco.BICICLETA_NO_DISPONIBLE;
+            }
+            
+            Prestamo prestamo = new Prestamo(operacion.getIdPrestamo(), usuario, bicicleta, marca);
+            prestadas.put(bicicleta, true);
+            activos.put(usuario, prestamo);
+            nuevos.put(prestamo.getId(), prestamo);
+            marcas[cambios.size()] = Prestamo.SIN_FECHA;
+            cambios.add(prestamo);
+            return ResultadoKiosco.APLICADA;
+        }
+
+        ResultadoKiosco devolver(OperacionKiosco operacion, long marca) {
+            Prestamo prestamo = nuevos.get(operacion.getIdPrestamo());
+            if (prestamo == null) {
+                prestamo = prestamoDAO.buscarPorId(operacion.getIdPrestamo());
+            }
+            if (prestamo == null) {
+                return ResultadoKiosco.PRESTAMO_INEXISTENTE;
+            }
+            if (prestamo.estaDevuelto() || !devueltos.add(prestamo)) {
+                return ResultadoKiosco.YA_DEVUELTO;
+            }
+            
+            Prestamo devuelto = prestamo;
+            Bicicleta bicicleta = bicicletas.computeIfAbsent(devuelto.getIdBicicleta(),
+                    id -> bicicletaDAO.buscarPorClave(devuelto.getClaveBicicleta()));
+            Usuario usuario = usuarios.computeIfAbsent(devuelto.getIdUsuario(),
+                    id -> usuarioDAO.buscarPorClave(devuelto.getClaveUsuario()));
+            prestadas.put(bicicleta, false);
+            activos.put(usuario, null);
+            marcas[cambios.size()] = marca;
+            cambios.add(devuelto);
+            return ResultadoKiosco.APLICADA;
+        }
+
+        /**
+         * Registra todos los cambios en el DAO y deja bicicletas y usuarios
+         * en el estado final del lote.
+         */
+        void confirmar() {
+            if (cambios.isEmpty()) {
+                return;
+            }
+            prestamoDAO.aplicarEnLote(() -> {
+                for (int i = 0; i < cambios.size(); i++) {
+                    if (marcas[i] == Prestamo.SIN_FECHA) {
+                        prestamoDAO.agregarPrestamo(cambios.get(i));
+                    } else {
+                        prestamoDAO.registrarDevolucion(cambios.get(i), marcas[i]);
+                    }
+                }
+            });
+            prestadas.forEach((bicicleta, prestada) -> {
+                if (!prestada) {
+                    bicicleta.setEstacion(estacion);
+                    bicicletaDAO.cambiarEstado(bicicleta, EstadoBicicleta.PRESTADA, EstadoBicicleta.DISPONIBLE);
+                }
+            });
+            activos.forEach((usuario, activo) -> {
+                usuario.setTienePrestamo(activo != null);
+                estadosUsuarios.put(usuario.getId(), activo == null ? EstadoUsuario.sinPrestamo(usuario)
+                        : EstadoUsuario.conPrestamo(usuario, activo, bicicletaDAO.buscarPorClave(activo.getClaveBicicleta())));
+            });
+        }
+
+        private Usuario usuario(String id) {
+            if (!usuarios.containsKey(id)) {
+                usuarios.put(id, usuarioDAO.buscarPorId(id));
+            }
+            return usuarios.get(id);
+        }
+
+        private Bicicleta bicicleta(String id) {
+            if (!bicicletas.containsKey(id)) {
+                bicicletas.put(id, bicicletaDAO.buscarPorId(id));
+            }
+            return bicicletas.get(id);
+        }
+    }
+
+    /**
+     * Aparta una bicicleta disponible para un usuario durante {@link #DURACION_RESERVA}.
+     *
+     * @param idUsuario   ID del usuario que reserva.
+     * @param idBicicleta ID de la bicicleta a reservar.
+     * @return true si la reserva se realizó, false si no se cumplen las condiciones.
+     */
+    public boolean reservarBicicleta(String idUsuario, String idBicicleta) {
+        return reservarBicicleta(idUsuario, idBicicleta, DURACION_RESERVA);
+    }
+
+    /**
+     * Aparta una bicicleta disponible para un usuario durante el tiempo indicado.
+     * El usuario debe existir, no tener préstamo activo ni otra reserva vigente.
+     * Al vencer, la bicicleta vuelve a quedar disponible automáticamente.
+     *
+     * @param idUsuario   ID del usuario que reserva.
+     * @param idBicicleta ID de la bicicleta a reservar.
+     * @param duracion    Tiempo que la bicicleta permanece apartada.
+     * @return true si la reserva se realizó, false si no se cumplen las condiciones.
+     */
+    public boolean reservarBicicleta(String idUsuario, String idBicicleta, Duration duracion) {
+        EventoServicio evento = new EventoServicio(SERVICIO, "reservarBicicleta");
+        boolean reservada = reservar(idUsuario, idBicicleta, duracion);
+        evento.terminar(idUsuario, idBicicleta, reservada ? 1 : 0);
+        return reservada;
+    }
+
+    private boolean reservar(String idUsuario, String idBicicleta, Duration duracion) {
+        Usuario usuario = usuarioDAO.buscarPorId(idUsuario);
+        if (usuario == null) {
+            return false;
+        }
+        
+        Bicicleta bicicleta = bicicletaDAO.buscarPorId(idBicicleta);
+        if (bicicleta == null) {
+            return false;
+        }
+        
+        Reserva reserva = new Reserva(usuario.getId(), bicicleta.getId(), reloj.millis() + duracion.toMillis());
+        // Bajo el bloqueo de los préstamos, para que no se cruce con un préstamo del mismo usuario
+        synchronized (candado) {
+            if (prestamoDAO.buscarPrestamoActivo(usuario.getClave()) != null
+                    || reservasPorUsuario.putIfAbsent(usuario.getId(), reserva) != null) {
+                return false;
+            }
+            if (!bicicletaDAO.cambiarEstado(bicicleta, EstadoBicicleta.DISPONIBLE, EstadoBicicleta.RESERVADA)) {
+                reservasPorUsuario.remove(usuario.getId(), reserva);
+                return false;
+            }
+            reservasPorBicicleta.put(bicicleta.getId(), reserva);
+            reserva.setVencimiento(vencimientos.schedule(() -> vencerReserva(bicicleta, reserva),
+                    duracion.toMillis(), TimeUnit.MILLISECONDS));
+        }
+        return true;
+    }
+
+    /**
+     * Cancela la reserva vigente de una bicicleta y la deja disponible de nuevo.
+     *
+     * @param idBicicleta ID de la bicicleta reservada.
+     * @return true si había una reserva vigente y se canceló.
+     */
+    public boolean cancelarReserva(String idBicicleta) {
+        EventoServicio evento = new EventoServicio(SERVICIO, "cancelarReserva");
+        Reserva reserva = reservasPorBicicleta.get(idBicicleta);
+        Bicicleta bicicleta = bicicletaDAO.buscarPorId(idBicicleta);
+        boolean cancelada = reserva != null && bicicleta != null && vencerReserva(bicicleta, reserva);
+        evento.terminar(idBicicleta, cancelada ? 1 : 0);
+        return cancelada;
+    }
+
+    /**
+     * Busca la reserva vigente de una bicicleta.
+     *
+     * @param idBicicleta ID de la bicicleta.
+     * @return La reserva vigente, o null si la bicicleta no está reservada.
+     */
+    public Reserva buscarReserva(String idBicicleta) {
+        return reservasPorBicicleta.get(idBicicleta);
+    }
+
+    /**
+     * Indica si un ID de préstamo ya se usó, esté el préstamo en memoria o
+     * archivado: los IDs nunca se reutilizan.
+     */
+    private boolean idEnUso(String idPrestamo) {
+        return prestamoDAO.buscarPorId(idPrestamo) != null || prestamoDAO.estaArchivado(idPrestamo);
+    }
+
+    /**
+     * Indica si un usuario está registrado. Los IDs inexistentes casi siempre
+     * se descartan con el filtro del DAO, sin buscar en la tabla.
+     */
+    boolean existeUsuario(String idUsuario) {
+        return usuarioDAO.buscarPorId(idUsuario) != null;
+    }
+
+    /**
+     * Indica si queda alguna reserva vigente. Las reservas solo viven en
+     * memoria, así que mientras haya alguna los datos no pueden descargarse.
+     */
+    boolean hayReservas() {
+        return !reservasPorBicicleta.isEmpty();
+    }
+
+    /**
+     * Libera una reserva si sigue vigente. Si ya se convirtió en préstamo,
+     * la eliminación condicional falla y la bicicleta no se modifica.
+     */
+    private boolean vencerReserva(Bicicleta bicicleta, Reserva reserva) {
+        if (!reservasPorBicicleta.remove(reserva.getIdBicicleta(), reserva)) {
+            return false;
+        }
+        reservasPorUsuario.remove(reserva.getIdUsuario(), reserva);
+        reserva.cancelarVencimiento();
+        bicicletaDAO.cambiarEstado(bicicleta, EstadoBicicleta.RESERVADA, EstadoBicicleta.DISPONIBLE);
+        return true;
+    }
+
+    /**
+     * Crea el temporizador de vencimientos. Usa un hilo demonio para no impedir
+     * que la aplicación termine y descarta las tareas canceladas de inmediato.
+     */
+    private static ScheduledThreadPoolExecutor crearTemporizador() {
+        ScheduledThreadPoolExecutor temporizador = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread hilo = new Thread(r, "vencimiento-reservas");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        temporizador.setRemoveOnCancelPolicy(true);
+        return temporizador;
+    }
+
+    /**
+     * Registra la devolución de una bicicleta previamente prestada.
+     * Si el préstamo no existe o ya fue devuelto, no realiza cambios.
+     *
+     * @param idPrestamo ID del préstamo a cerrar.
+     * @return true si la devolución se registró con éxito, false si no aplica.
+     */
+    public boolean registrarDevolucion(String idPrestamo) {
+        return registrarDevolucion(ESTACION_PREDETERMINADA, idPrestamo);
+    }
+
+    /**
+     * Registra la devolución de una bicicleta en una estación y la cuenta en
+     * el pronóstico de demanda de esa estación.
+     *
+     * @param idEstacion ID de la estación donde se devuelve la bicicleta.
+     * @param idPrestamo ID del préstamo a cerrar.
+     * @return true si la devolución se registró con éxito, false si no aplica.
+     */
+    public boolean registrarDevolucion(String idEstacion, String idPrestamo) {
+        EventoServicio evento = new EventoServicio(SERVICIO, "registrarDevolucion");
+        boolean devuelto = devolver(idEstacion, idPrestamo);
+        evento.terminar(idPrestamo, idEstacion, devuelto ? 1 : 0);
+        return devuelto;
+    }
+
+    private boolean devolver(String idEstacion, String idPrestamo) {
+        Prestamo prestamo = prestamoDAO.buscarPorId(idPrestamo);
+        if (prestamo == null) {
+            return false;
+        }
+        
+        long marcaDevolucion;
+        synchronized (candado) {
+            // Dos devoluciones del mismo préstamo: solo la primera tiene efecto
+            if (prestamo.estaDevuelto()) {
+                return false;
+            }
+            
+            // Registrar devolución
+            marcaDevolucion = reloj.millis();
+            prestamoDAO.registrarDevolucion(prestamo, marcaDevolucion);
+            
+            // Actualizar estados; la bicicleta queda en la estación donde se devolvió
+            Bicicleta bicicleta = bicicletaDAO.buscarPorClave(prestamo.getClaveBicicleta());
+            bicicleta.setEstacion(idEstacion);
+            bicicletaDAO.cambiarEstado(bicicleta, EstadoBicicleta.PRESTADA, EstadoBicicleta.DISPONIBLE);
+            Usuario usuario = usuarioDAO.buscarPorClave(prestamo.getClaveUsuario());
+            usuario.setTienePrestamo(false);
+            estadosUsuarios.put(usuario.getId(), EstadoUsuario.sinPrestamo(usuario));
+        }
+        pronostico.registrarDevolucion(idEstacion, marcaDevolucion);
+        
+        return true;
+    }
+    
+    /**
+     * Ejecuta una acción bajo el mismo bloqueo que préstamos, devoluciones y
+     * lotes. Lo usa {@link VerificadorConsistencia} para confirmar y reparar
+     * marcas sin que cambien a mitad de camino.
+     */
+    <T> T bajoBloqueo(Supplier<T> accion) {
+        synchronized (candado) {
+            return accion.get();
+        }
+    }
+
+    /**
+     * Corrige la marca de préstamo de un usuario para que coincida con su
+     * préstamo abierto: cambia la marca, la publica en el registro de cambios
+     * y reemplaza su estado en la vista. Se llama dentro de
+     * {@link #bajoBloqueo(Supplier)}.
+     *
+     * @param usuario Usuario cuya marca no coincide.
+     * @param abierto Préstamo abierto del usuario, o null si no tiene.
+     */
+    void repararMarcaUsuario(Usuario usuario, Prestamo abierto) {
+        usuarioDAO.cambiarMarcaPrestamo(usuario, abierto != null);
+        estadosUsuarios.put(usuario.getId(), abierto == null ? EstadoUsuario.sinPrestamo(usuario)
+                : EstadoUsuario.conPrestamo(usuario, abierto, bicicletaDAO.buscarPorClave(abierto.getClaveBicicleta())));
+    }
+
+    /**
+     * Pronostica cuántos préstamos habrá en una estación durante la próxima hora.
+     *
+     * @param idEstacion ID de la estación.
+     * @return Préstamos esperados, según los préstamos y devoluciones registrados hasta ahora.
+     */
+    public double prestamosEsperadosProximaHora(String idEstacion) {
+        return pronostico.prestamosEsperados(idEstacion, reloj.millis());
+    }
+
+    /**
+     * Obtiene la zona horaria del reloj del servicio. Es la zona en que se
+     * interpretan las horas de kiosco y en la que deben mostrarse las fechas
+     * de préstamos y devoluciones.
+     *
+     * @return Zona horaria del reloj.
+     */
+    public ZoneId getZona() {
+        return reloj.getZone();
+    }
+
+    /**
+     * Obtiene el pronóstico de demanda que alimenta este servicio.
+     *
+     * @return El pronóstico de demanda por estación y hora.
+     */
+    public PronosticoDemanda getPronostico() {
+        return pronostico;
+    }
+
+    /**
+     * Obtiene el historial de todos los préstamos realizados por un usuario.
+     *
+     * @param idUsuario ID del usuario a consultar.
+     * @return Lista de objetos Prestamo asociados al usuario.
+     */
+    public List<Prestamo> obtenerHistorialUsuario(String idUsuario) {
+        EventoServicio evento = new EventoServicio(SERVICIO, "obtenerHistorialUsuario");
+        Usuario usuario = usuarioDAO.buscarPorId(idUsuario);
+        List<Prestamo> historial = usuario != null ? prestamoDAO.obtenerPorUsuario(usuario.getClave()) : new ArrayList<>();
+        evento.terminar(idUsuario, historial.size());
+        return historial;
+    }
+
+    /**
+     * Busca el préstamo activo actual (si existe) de un usuario.
+     *
+     * @param idUsuario ID del usuario.
+     * @return Objeto Prestamo si hay uno activo, o null si no lo hay.
+     */
+    public Prestamo buscarPrestamoActivo(String idUsuario) {
+        EventoServicio evento = new EventoServicio(SERVICIO, "buscarPrestamoActivo");
+        Usuario usuario = usuarioDAO.buscarPorId(idUsuario);
+        Prestamo activo = usuario != null ? prestamoDAO.buscarPrestamoActivo(usuario.getClave()) : null;
+        evento.terminar(idUsuario, activo != null ? 1 : 0);
+        return activo;
+    }
+
+    /**
+     * Obtiene el estado de un usuario para la pantalla de consulta: sus datos,
+     * su préstamo activo, la bicicleta y su modelo, sin unir tablas.
+     *
+     * @param idUsuario ID del usuario.
+     * @return Estado del usuario, o null si el usuario no existe.
+     */
+    public EstadoUsuario consultarEstadoUsuario(String idUsuario) {
+        EventoServicio evento = new EventoServicio(SERVICIO, "consultarEstadoUsuario");
+        EstadoUsuario estado = estadosUsuarios.get(idUsuario);
+        if (estado == null) {
+            estado = materializarEstado(idUsuario);
+        }
+        evento.terminar(idUsuario, estado != null ? 1 : 0);
+        return estado;
+    }
+
+    /**
+     * Arma desde los DAOs el estado de un usuario que aún no está en la vista.
+     * Si mientras tanto un préstamo o devolución publicó su estado, se queda
+     * el publicado: se agrega solo si sigue ausente.
+     */
+    private EstadoUsuario materializarEstado(String idUsuario) {
+        Usuario usuario = usuarioDAO.buscarPorId(idUsuario);
+        if (usuario == null) {
+            return null;
+        }
+        Prestamo activo = prestamoDAO.buscarPrestamoActivo(usuario.getClave());
+        EstadoUsuario estado = activo == null ? EstadoUsuario.sinPrestamo(usuario)
+                : EstadoUsuario.conPrestamo(usuario, activo, bicicletaDAO.buscarPorClave(activo.getClaveBicicleta()));
+        EstadoUsuario publicado = estadosUsuarios.putIfAbsent(idUsuario, estado);
+        return publicado != null ? publicado : estado;
+    }
 }
\ No newline at end of file
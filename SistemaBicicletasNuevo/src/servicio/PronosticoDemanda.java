@@ -0,0 +1,221 @@
+
+package servicio;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pronóstico en línea de la demanda por estación y hora.
+ *
+ * Cada préstamo y cada devolución se cuenta en la hora en curso de su
+ * estación. Los conteos de las últimas {@value #HORAS_GUARDADAS} horas se
+ * guardan en un arreglo circular de enteros, y al cerrar cada hora se
+ * actualiza un modelo de Holt-Winters aditivo con estacionalidad diaria
+ * (nivel, tendencia y un ajuste por hora del día). Registrar un evento cuesta
+ * O(1) y pronosticar no recorre el historial ni los DAOs.
+ *
+ * Los eventos llegan como milisegundos desde la época y las horas se cuentan
+ * con la hora local de la zona indicada, así que la hora del día del modelo
+ * coincide con la del reloj de la estación. Un evento de una hora
+ * que ya se cerró (por ejemplo, de un kiosco que estuvo sin conexión) se suma
+ * a su conteo si sigue guardado, pero no modifica el modelo.
+ */
+public class PronosticoDemanda {
+    /** Horas de conteos que se guardan por estación (una semana). */
+    public static final int HORAS_GUARDADAS = 24 * 7;
+
+    private static final int HORAS_DIA = 24;
+    private static final double ALFA = 0.3;
+    private static final double BETA = 0.05;
+    private static final double GAMMA = 0.2;
+
+    private final ConcurrentHashMap<String, Estacion> estaciones = new ConcurrentHashMap<>();
+    private final TimeZone zona;
+
+    /**
+     * Crea un pronóstico que cuenta las horas en la zona horaria del sistema.
+     */
+    public PronosticoDemanda() {
+        this(ZoneId.systemDefault());
+    }
+
+    /**
+     * Crea un pronóstico que cuenta las horas en la zona indicada.
+     *
+     * @param zona Zona horaria de las estaciones.
+     */
+    public PronosticoDemanda(ZoneId zona) {
+        this.zona = TimeZone.getTimeZone(zona);
+    }
+
+    /**
+     * Registra un préstamo hecho en una estación.
+     *
+     * @param idEstacion ID de la estación.
+     * @param marca      Momento del préstamo, en milisegundos desde la época.
+     */
+    public void registrarPrestamo(String idEstacion, long marca) {
+        estacion(idEstacion).prestamos.registrar(hora(marca));
+    }
+
+    /**
+     * Registra una devolución hecha en una estación.
+     *
+     * @param idEstacion ID de la estación.
+     * @param marca      Momento de la devolución, en milisegundos desde la época.
+     */
+    public void registrarDevolucion(String idEstacion, long marca) {
+        estacion(idEstacion).devoluciones.registrar(hora(marca));
+    }
+
+    /**
+     * Pronostica cuántos préstamos habrá en una estación durante la hora
+     * siguiente a la hora en curso.
+     *
+     * @param idEstacion ID de la estación.
+     * @param ahora      Momento de la consulta, en milisegundos desde la época.
+     * @return Préstamos esperados, o 0 si la estación no tiene historial.
+     */
+    public double prestamosEsperados(String idEstacion, long ahora) {
+        Estacion estacion = estaciones.get(idEstacion);
+        return estacion != null ? estacion.prestamos.pronosticar(hora(ahora)) : 0;
+    }
+
+    /**
+     * Pronostica cuántas devoluciones habrá en una estación durante la hora
+     * siguiente a la hora en curso.
+     *
+     * @param idEstacion ID de la estación.
+     * @param ahora      Momento de la consulta, en milisegundos desde la época.
+     * @return Devoluciones esperadas, o 0 si la estación no tiene historial.
+     */
+    public double devolucionesEsperadas(String idEstacion, long ahora) {
+        Estacion estacion = estaciones.get(idEstacion);
+        return estacion != null ? estacion.devoluciones.pronosticar(hora(ahora)) : 0;
+    }
+
+    /**
+     * Pronostica, para cada estación con historial, cuántas bicicletas saldrán
+     * de más durante la próxima hora: préstamos esperados menos devoluciones
+     * esperadas, sin bajar de cero.
+     *
+     * @param ahora Momento de la consulta, en milisegundos desde la época.
+     * @return Demanda neta esperada por ID de estación.
+     */
+    public Map<String, Double> demandaNetaProximaHora(long ahora) {
+        long hora = hora(ahora);
+        Map<String, Double> demanda = new HashMap<>();
+        estaciones.forEach((id, estacion) -> demanda.put(id,
+                Math.max(0, estacion.prestamos.pronosticar(hora) - estacion.devoluciones.pronosticar(hora))));
+        return demanda;
+    }
+
+    /**
+     * Obtiene los préstamos contados en cada una de las últimas horas de una estación.
+     *
+     * @param idEstacion ID de la estación.
+     * @param horas      Número de horas, hasta {@value #HORAS_GUARDADAS}.
+     * @param ahora      Momento de la consulta, en milisegundos desde la época;
+     *                   la hora en curso es la última.
+     * @return Conteos de la más antigua a la hora en curso.
+     */
+    public int[] prestamosPorHora(String idEstacion, int horas, long ahora) {
+        Estacion estacion = estaciones.get(idEstacion);
+        int cuantas = Math.max(0, Math.min(horas, HORAS_GUARDADAS));
+        return estacion != null ? estacion.prestamos.ultimas(cuantas, hora(ahora)) : new int[cuantas];
+    }
+
+    private Estacion estacion(String idEstacion) {
+        return estaciones.computeIfAbsent(idEstacion, id -> new Estacion());
+    }
+
+    /** Número de hora desde la época, contada con la hora local de la zona. */
+    private long hora(long marca) {
+        return Math.floorDiv(marca + zona.getOffset(marca), 3_600_000L);
+    }
+
+    /** Series de préstamos y devoluciones de una estación. */
+    private static final class Estacion {
+        final Serie prestamos = new Serie();
+        final Serie devoluciones = new Serie();
+    }
+
+    /**
+     * Conteos por hora de un tipo de evento y su modelo de Holt-Winters.
+     */
+    private static final class Serie {
+        private final int[] conteos = new int[HORAS_GUARDADAS];
+        private final double[] estacional = new double[HORAS_DIA];
+        private double nivel;
+        private double tendencia;
+        // Hora en curso; -1 mientras no haya eventos
+        private long horaActual = -1;
+
+        synchronized void registrar(long hora) {
+            avanzarHasta(hora);
+            if (hora > horaActual - HORAS_GUARDADAS) {
+                conteos[(int) (hora % HORAS_GUARDADAS)]++;
+            }
+        }
+
+        synchronized double pronosticar(long hora) {
+            avanzarHasta(hora);
+            // La hora en curso está a un paso de la última cerrada; la siguiente, a dos
+            long siguiente = horaActual + 1;
+            return Math.max(0, nivel + 2 * tendencia + estacional[(int) (siguiente % HORAS_DIA)]);
+        }
+
+        synchronized int[] ultimas(int horas, long hora) {
+            avanzarHasta(hora);
+            int[] resultado = new int[horas];
+            for (int i = 0; i < horas; i++) {
+                resultado[i] = conteos[(int) ((horaActual - horas + 1 + i) % HORAS_GUARDADAS)];
+            }
+            return resultado;
+        }
+
+        /**
+         * Cierra las horas transcurridas hasta la indicada: actualiza el
+         * modelo con el conteo de la hora en curso y con cero por cada hora
+         * sin eventos, y deja en cero las casillas que se reutilizan. Si pasó
+         * más de una semana sin eventos, el modelo y los conteos se reinician
+         * en lugar de recorrer cada hora.
+         */
+        private void avanzarHasta(long hora) {
+            if (horaActual < 0) {
+                horaActual = hora;
+                return;
+            }
+            if (hora <= horaActual) {
+                return;
+            }
+            if (hora - horaActual >= HORAS_GUARDADAS) {
+                Arrays.fill(conteos, 0);
+                Arrays.fill(estacional, 0);
+                nivel = 0;
+                tendencia = 0;
+                horaActual = hora;
+                return;
+            }
+            actualizarModelo(horaActual, conteos[(int) (horaActual % HORAS_GUARDADAS)]);
+            for (long h = horaActual + 1; h < hora; h++) {
+                actualizarModelo(h, 0);
+                conteos[(int) (h % HORAS_GUARDADAS)] = 0;
+            }
+            conteos[(int) (hora % HORAS_GUARDADAS)] = 0;
+            horaActual = hora;
+        }
+
+        private void actualizarModelo(long hora, int observado) {
+            int h = (int) (hora % HORAS_DIA);
+            double nivelAnterior = nivel;
+            nivel = ALFA * (observado - estacional[h]) + (1 - ALFA) * (nivel + tendencia);
+            tendencia = BETA * (nivel - nivelAnterior) + (1 - BETA) * tendencia;
+            estacional[h] = GAMMA * (observado - nivel) + (1 - GAMMA) * estacional[h];
+        }
+    }
+}
@@ -0,0 +1,383 @@
+
+package servicio;
+
+import dao.BicicletaDAO;
+import dao.PrestamoDAO;
+import dao.UsuarioDAO;
+import modelo.Bicicleta;
+import modelo.Discrepancia;
+import modelo.EstadoBicicleta;
+import modelo.InformeConsistencia;
+import modelo.Prestamo;
+import modelo.Usuario;
+import monitoreo.EventoServicio;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Verificador de consistencia entre los préstamos registrados y las marcas
+ * que se derivan de ellos: {@link Usuario#tienePrestamo()} y el estado
+ * {@link EstadoBicicleta#PRESTADA} de cada bicicleta.
+ *
+ * La verdad se recalcula desde los registros de {@link PrestamoDAO}, no
+ * desde su índice de préstamos activos: un préstamo sin devolución está
+ * abierto, y los archivados siempre están devueltos. Una pasada recorre
+ * préstamos, usuarios y bicicletas por tramos de {@value #TRAMO} claves sin
+ * bloquear, y anota como sospechosa cada marca que no coincide.
+ *
+ * Como las operaciones siguen corriendo, cada sospecha se confirma bajo el
+ * bloqueo de {@link PrestamoService} antes de informarla o repararla. Los
+ * préstamos que ya existían al empezar la pasada solo pueden haberse
+ * devuelto desde entonces, y eso se vuelve a mirar; los creados durante la
+ * pasada se leen aparte. Así nunca se informa ni se repara una operación en
+ * curso. Un préstamo abierto dos veces para el mismo usuario o la misma
+ * bicicleta se informa pero no se repara. Las marcas de usuario se reparan
+ * a través del servicio, que además actualiza su vista de usuarios y publica
+ * la corrección en el registro de cambios.
+ *
+ * {@link #verificar(boolean)} recorre los tramos en paralelo. {@link #iniciar}
+ * repite las pasadas en segundo plano, un tramo a la vez en un hilo de baja
+ * prioridad, descansando tras cada tramo lo necesario para no usar más que
+ * una fracción de un procesador.
+ */
+public class VerificadorConsistencia {
+    /** Claves que se revisan de una vez. */
+    public static final int TRAMO = 4096;
+    /** Fracción de un procesador que usa la verificación en segundo plano si no se indica otra. */
+    public static final double FRACCION_PREDETERMINADA = 0.05;
+    private static final String SERVICIO = "VerificadorConsistencia";
+
+    private final PrestamoService prestamoService;
+    private final PrestamoDAO prestamoDAO;
+    private final UsuarioDAO usuarioDAO;
+    private final BicicletaDAO bicicletaDAO;
+    private Thread hilo;
+    private volatile boolean enFondo;
+    private volatile InformeConsistencia ultimoInforme;
+    private final LongAdder pasadas = new LongAdder();
+    private final LongAdder reparadas = new LongAdder();
+
+    /**
+     * Constructor que recibe el servicio cuyo bloqueo se respeta y los DAOs a verificar.
+     *
+     * @param prestamoService Servicio de préstamos; sus operaciones no se cruzan con las reparaciones.
+     * @param prestamoDAO     DAO de préstamos, fuente de la verdad.
+     * @param usuarioDAO      DAO de usuarios a verificar.
+     * @param bicicletaDAO    DAO de bicicletas a verificar.
+     */
+    public VerificadorConsistencia(PrestamoService prestamoService, PrestamoDAO prestamoDAO,
+            UsuarioDAO usuarioDAO, BicicletaDAO bicicletaDAO) {
+        this.prestamoService = prestamoService;
+        this.prestamoDAO = prestamoDAO;
+        this.usuarioDAO = usuarioDAO;
+        this.bicicletaDAO = bicicletaDAO;
+    }
+
+    /**
+     * Hace una pasada completa, recorriendo los tramos en paralelo.
+     *
+     * @param reparar {@code true} para corregir las marcas que no coinciden.
+     * @return Informe con las discrepancias confirmadas.
+     */
+    public InformeConsistencia verificar(boolean reparar) {
+        EventoServicio evento = new EventoServicio(SERVICIO, "verificar");
+        Pasada pasada = prestamoService.bajoBloqueo(() -> new Pasada());
+        IntStream.range(0, tramos(pasada.limitePrestamos)).parallel().forEach(pasada::revisarPrestamos);
+        IntStream.range(0, tramos(pasada.limiteUsuarios)).parallel().forEach(pasada::revisarUsuarios);
+        IntStream.range(0, tramos(pasada.limiteBicicletas)).parallel().forEach(pasada::revisarBicicletas);
+        InformeConsistencia informe = terminar(pasada, reparar);
+        evento.terminar(informe.getDiscrepancias().size());
+        return informe;
+    }
+
+    /**
+     * Empieza a verificar en segundo plano: una pasada tras otra, separadas
+     * por la pausa indicada.
+     *
+     * @param pausa    Tiempo entre el fin de una pasada y el inicio de la siguiente.
+     * @param fraccion Fracción de un procesador que puede usar una pasada (mayor que 0, hasta 1).
+     * @param reparar  {@code true} para corregir las marcas que no coinciden.
+     */
+    public synchronized void iniciar(Duration pausa, double fraccion, boolean reparar) {
+        if (fraccion <= 0 || fraccion > 1) {
+            throw new IllegalArgumentException("La fracción debe estar entre 0 y 1: " + fraccion);
+        }
+        if (hilo != null) {
+            return;
+        }
+        enFondo = true;
+        hilo = new Thread(() -> verificarEnFondo(pausa, fraccion, reparar), "verificacion-consistencia");
+        hilo.setDaemon(true);
+        hilo.setPriority(Thread.MIN_PRIORITY);
+        hilo.start();
+    }
+
+    /**
+     * Detiene la verificación en segundo plano; la pasada en curso se abandona.
+     */
+    public synchronized void detener() {
+        if (hilo != null) {
+            enFondo = false;
+            hilo.interrupt();
+            hilo = null;
+        }
+    }
+
+    private void verificarEnFondo(Duration pausa, double fraccion, boolean reparar) {
+        try {
+            while (enFondo) {
+                EventoServicio evento = new EventoServicio(SERVICIO, "verificarEnFondo");
+                Pasada pasada = prestamoService.bajoBloqueo(() -> new Pasada());
+                revisarPausado(pasada::revisarPrestamos, tramos(pasada.limitePrestamos), fraccion);
+                revisarPausado(pasada::revisarUsuarios, tramos(pasada.limiteUsuarios), fraccion);
+                revisarPausado(pasada::revisarBicicletas, tramos(pasada.limiteBicicletas), fraccion);
+                evento.terminar(terminar(pasada, reparar).getDiscrepancias().size());
+                Thread.sleep(pausa.toMillis());
+            }
+        } catch (InterruptedException e) {
+            // detener() interrumpe el hilo para no esperar a que termine la pasada
+        }
+    }
+
+    /**
+     * Revisa los tramos uno por uno y, después de cada uno, descansa lo
+     * necesario para que el tiempo ocupado sea la fracción indicada del total.
+     */
+    private void revisarPausado(IntConsumer revision, int tramos, double fraccion) throws InterruptedException {
+        for (int tramo = 0; tramo < tramos; tramo++) {
+            long inicio = System.nanoTime();
+            revision.accept(tramo);
+            long ocupado = System.nanoTime() - inicio;
+            TimeUnit.NANOSECONDS.sleep((long) (ocupado * (1 - fraccion) / fraccion));
+            if (!enFondo) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    private InformeConsistencia terminar(Pasada pasada, boolean reparar) {
+        InformeConsistencia informe = pasada.confirmar(reparar);
+        ultimoInforme = informe;
+        pasadas.increment();
+        reparadas.add(informe.getReparadas());
+        return informe;
+    }
+
+    private static int tramos(int limite) {
+        return (limite + TRAMO - 1) / TRAMO;
+    }
+
+    /**
+     * Obtiene el informe de la última pasada terminada.
+     *
+     * @return El informe, o null si aún no termina ninguna.
+     */
+    public InformeConsistencia getUltimoInforme() { return ultimoInforme; }
+
+    /**
+     * Obtiene cuántas pasadas terminaron, en paralelo o en segundo plano.
+     *
+     * @return Pasadas terminadas.
+     */
+    public long getPasadas() { return pasadas.sum(); }
+
+    /**
+     * Obtiene cuántas marcas se repararon en total.
+     *
+     * @return Discrepancias reparadas.
+     */
+    public long getReparadas() { return reparadas.sum(); }
+
+    /**
+     * Estado de una pasada: los límites de claves tomados al empezar, el
+     * préstamo abierto de cada usuario y bicicleta según los registros, y las
+     * marcas sospechosas pendientes de confirmar.
+     */
+    private final class Pasada {
+        final long inicio = System.nanoTime();
+        // Se toman bajo el bloqueo del servicio: ningún préstamo queda a medio registrar
+        final int limitePrestamos = prestamoDAO.limiteClaves();
+        final int limiteUsuarios = usuarioDAO.limiteClaves();
+        final int limiteBicicletas = bicicletaDAO.limiteClaves();
+        final AtomicReferenceArray<Prestamo> abiertoPorUsuario = new AtomicReferenceArray<>(limiteUsuarios);
+        final AtomicReferenceArray<Prestamo> abiertoPorBicicleta = new AtomicReferenceArray<>(limiteBicicletas);
+        // Préstamos abiertos que comparten usuario o bicicleta con otro ya anotado
+        final Queue<Prestamo> duplicados = new ConcurrentLinkedQueue<>();
+        final Queue<Usuario> usuariosSospechosos = new ConcurrentLinkedQueue<>();
+        final Queue<Bicicleta> bicicletasSospechosas = new ConcurrentLinkedQueue<>();
+        final LongAdder prestamosRevisados = new LongAdder();
+        final LongAdder usuariosRevisados = new LongAdder();
+        final LongAdder bicicletasRevisadas = new LongAdder();
+        // Préstamos abiertos creados durante la pasada, por clave de usuario y de bicicleta
+        final Map<Integer, Prestamo> nuevosPorUsuario = new HashMap<>();
+        final Map<Integer, Prestamo> nuevosPorBicicleta = new HashMap<>();
+
+        void revisarPrestamos(int tramo) {
+            int revisados = 0;
+            for (int clave = tramo * TRAMO, fin = Math.min(clave + TRAMO, limitePrestamos); clave < fin; clave++) {
+                Prestamo prestamo = prestamoDAO.buscarPorClave(clave);
+                if (prestamo == null) {
+                    continue;
+                }
+                revisados++;
+                if (prestamo.estaDevuelto()) {
+                    continue;
+                }
+                int usuario = prestamo.getClaveUsuario();
+                int bicicleta = prestamo.getClaveBicicleta();
+                boolean repetido = usuario < limiteUsuarios && !abiertoPorUsuario.compareAndSet(usuario, null, prestamo);
+                repetido |= bicicleta < limiteBicicletas && !abiertoPorBicicleta.compareAndSet(bicicleta, null, prestamo);
+                if (repetido) {
+                    duplicados.add(prestamo);
+                }
+            }
+            prestamosRevisados.add(revisados);
+        }
+
+        void revisarUsuarios(int tramo) {
+            int revisados = 0;
+            for (int clave = tramo * TRAMO, fin = Math.min(clave + TRAMO, limiteUsuarios); clave < fin; clave++) {
+                Usuario usuario = usuarioDAO.buscarPorClave(clave);
+                if (usuario == null) {
+                    continue;
+                }
+                revisados++;
+                if (usuario.tienePrestamo() != (abiertoPorUsuario.get(clave) != null)) {
+                    usuariosSospechosos.add(usuario);
+                }
+            }
+            usuariosRevisados.add(revisados);
+        }
+
+        void revisarBicicletas(int tramo) {
+            int revisadas = 0;
+            for (int clave = tramo * TRAMO, fin = Math.min(clave + TRAMO, limiteBicicletas); clave < fin; clave++) {
+                Bicicleta bicicleta = bicicletaDAO.buscarPorClave(clave);
+                if (bicicleta == null) {
+                    continue;
+                }
+                revisadas++;
+                if ((bicicleta.getEstado() == EstadoBicicleta.PRESTADA) != (abiertoPorBicicleta.get(clave) != null)) {
+                    bicicletasSospechosas.add(bicicleta);
+                }
+            }
+            bicicletasRevisadas.add(revisadas);
+        }
+
+        /**
+         * Confirma las sospechas bajo el bloqueo del servicio y, si se pide,
+         * repara las marcas. Los préstamos creados durante la pasada se leen
+         * casi todos antes de tomar el bloqueo, para tenerlo el menor tiempo posible.
+         */
+        InformeConsistencia confirmar(boolean reparar) {
+            int leidos = leerNuevos(limitePrestamos);
+            List<Discrepancia> discrepancias = prestamoService.bajoBloqueo(() -> {
+                leerNuevos(leidos);
+                List<Discrepancia> confirmadas = new ArrayList<>();
+                confirmarDuplicados(confirmadas);
+                for (Usuario usuario : usuariosSospechosos) {
+                    int clave = usuario.getClave();
+                    Prestamo abierto = buscarAbierto(abiertoPorUsuario.get(clave), nuevosPorUsuario.get(clave),
+                            p -> p.getClaveUsuario() == clave);
+                    if (usuario.tienePrestamo() != (abierto != null)) {
+                        String detalle = "tienePrestamo=" + usuario.tienePrestamo() + ", préstamo abierto: " + describir(abierto);
+                        if (reparar) {
+                            prestamoService.repararMarcaUsuario(usuario, abierto);
+                        }
+                        confirmadas.add(new Discrepancia(Discrepancia.Tipo.MARCA_USUARIO, usuario.getId(), detalle, reparar));
+                    }
+                }
+                for (Bicicleta bicicleta : bicicletasSospechosas) {
+                    int clave = bicicleta.getClave();
+                    Prestamo abierto = buscarAbierto(abiertoPorBicicleta.get(clave), nuevosPorBicicleta.get(clave),
+                            p -> p.getClaveBicicleta() == clave);
+                    EstadoBicicleta estado = bicicleta.getEstado();
+                    if ((estado == EstadoBicicleta.PRESTADA) != (abierto != null)) {
+                        String detalle = "estado " + estado + ", préstamo abierto: " + describir(abierto);
+                        // Falla si una reserva cambió el estado justo ahora; se verá en la siguiente pasada
+                        boolean reparada = reparar && bicicletaDAO.cambiarEstado(bicicleta, estado,
+                                abierto != null ? EstadoBicicleta.PRESTADA : EstadoBicicleta.DISPONIBLE);
+                        confirmadas.add(new Discrepancia(Discrepancia.Tipo.ESTADO_BICICLETA, bicicleta.getId(), detalle, reparada));
+                    }
+                }
+                return confirmadas;
+            });
+            return new InformeConsistencia(prestamosRevisados.intValue(), usuariosRevisados.intValue(),
+                    bicicletasRevisadas.intValue(), discrepancias, Duration.ofNanos(System.nanoTime() - inicio));
+        }
+
+        /**
+         * Anota los préstamos abiertos con clave desde la indicada hasta el
+         * límite actual del DAO.
+         *
+         * @return El límite hasta el que se leyó.
+         */
+        private int leerNuevos(int desde) {
+            int hasta = prestamoDAO.limiteClaves();
+            for (int clave = desde; clave < hasta; clave++) {
+                Prestamo prestamo = prestamoDAO.buscarPorClave(clave);
+                if (prestamo != null && !prestamo.estaDevuelto()) {
+                    anotarNuevo(nuevosPorUsuario, prestamo.getClaveUsuario(), prestamo);
+                    anotarNuevo(nuevosPorBicicleta, prestamo.getClaveBicicleta(), prestamo);
+                }
+            }
+            return hasta;
+        }
+
+        private void anotarNuevo(Map<Integer, Prestamo> nuevos, int clave, Prestamo prestamo) {
+            Prestamo anterior = nuevos.get(clave);
+            if (anterior == null || anterior.estaDevuelto()) {
+                nuevos.put(clave, prestamo);
+            }
+        }
+
+        /**
+         * Busca un préstamo que siga abierto entre el anotado en el recorrido,
+         * los duplicados y los creados durante la pasada.
+         */
+        private Prestamo buscarAbierto(Prestamo anotado, Prestamo nuevo, Predicate<Prestamo> delMismo) {
+            if (anotado != null && !anotado.estaDevuelto()) {
+                return anotado;
+            }
+            for (Prestamo prestamo : duplicados) {
+                if (delMismo.test(prestamo) && !prestamo.estaDevuelto()) {
+                    return prestamo;
+                }
+            }
+            return nuevo != null && !nuevo.estaDevuelto() ? nuevo : null;
+        }
+
+        private void confirmarDuplicados(List<Discrepancia> confirmadas) {
+            for (Prestamo prestamo : duplicados) {
+                if (prestamo.estaDevuelto()) {
+                    continue;
+                }
+                Prestamo otro = abiertoPorUsuario.get(prestamo.getClaveUsuario());
+                if (otro != null && otro != prestamo && !otro.estaDevuelto()) {
+                    confirmadas.add(new Discrepancia(Discrepancia.Tipo.PRESTAMOS_DUPLICADOS, prestamo.getIdUsuario(),
+                            "préstamos abiertos " + otro.getId() + " y " + prestamo.getId(), false));
+                }
+                otro = abiertoPorBicicleta.get(prestamo.getClaveBicicleta());
+                if (otro != null && otro != prestamo && !otro.estaDevuelto()) {
+                    confirmadas.add(new Discrepancia(Discrepancia.Tipo.PRESTAMOS_DUPLICADOS, prestamo.getIdBicicleta(),
+                            "préstamos abiertos " + otro.getId() + " y " + prestamo.getId(), false));
+                }
+            }
+        }
+
+        private String describir(Prestamo prestamo) {
+            return prestamo == null ? "ninguno" : prestamo.getId();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+
+package ui;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.swing.JMenuItem;
+import javax.swing.JPopupMenu;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+/*
+ * Agrega sugerencias mientras se escribe en un campo de texto.
+ *
+ * Cada cambio en el campo consulta al proveedor de sugerencias y las muestra
+ * en un menú emergente debajo del campo. El menú no toma el foco, así que se
+ * puede seguir escribiendo; al elegir una sugerencia se avisa al consumidor.
+ */
+public class Autocompletado<T> implements DocumentListener {
+
+    /** Caracteres mínimos escritos antes de sugerir. */
+    private static final int MINIMO_CARACTERES = 2;
+    /** Número máximo de sugerencias mostradas. */
+    public static final int MAXIMO_SUGERENCIAS = 8;
+
+    private final JTextField campo;
+    private final Function<String, List<T>> buscar;
+    private final Function<T, String> etiqueta;
+    private final Consumer<T> alElegir;
+    private JPopupMenu menu;
+    private boolean eligiendo;
+
+    /**
+     * Instala el autocompletado sobre un campo de texto.
+     *
+     * @param campo    Campo donde escribe el usuario.
+     * @param buscar   Devuelve las sugerencias para el texto escrito.
+     * @param etiqueta Texto que se muestra por cada sugerencia.
+     * @param alElegir Acción a realizar con la sugerencia elegida.
+     */
+    public Autocompletado(JTextField campo, Function<String, List<T>> buscar,
+            Function<T, String> etiqueta, Consumer<T> alElegir) {
+        this.campo = campo;
+        this.buscar = buscar;
+        this.etiqueta = etiqueta;
+        this.alElegir = alElegir;
+        campo.getDocument().addDocumentListener(this);
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) { actualizar(); }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) { actualizar(); }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) { }
+
+    /**
+     * Recalcula las sugerencias después de que el documento termine de cambiar.
+     */
+    private void actualizar() {
+        if (eligiendo) return;
+        SwingUtilities.invokeLater(() -> {
+            String texto = campo.getText().trim();
+            if (texto.length() < MINIMO_CARACTERES || !campo.isFocusOwner()) {
+                ocultar();
+                return;
+            }
+            mostrar(buscar.apply(texto));
+        });
+    }
+
+    private void mostrar(List<T> sugerencias) {
+        if (sugerencias.isEmpty()) {
+            ocultar();
+            return;
+        }
+        // El menú se crea la primera vez que hace falta
+        if (menu == null) {
+            menu = new JPopupMenu();
+            menu.setFocusable(false);
+        }
+        menu.removeAll();
+        for (T sugerencia : sugerencias) {
+            JMenuItem item = new JMenuItem(etiqueta.apply(sugerencia));
+            item.addActionListener(e -> elegir(sugerencia));
+            menu.add(item);
+        }
+        menu.pack();
+        menu.show(campo, 0, campo.getHeight());
+        campo.requestFocusInWindow();
+    }
+
+    private void elegir(T sugerencia) {
+        ocultar();
+        eligiendo = true;
+        try {
+            alElegir.accept(sugerencia);
+        } finally {
+            eligiendo = false;
+        }
+    }
+
+    private void ocultar() {
+        if (menu != null) {
+            menu.setVisible(false);
+        }
+    }
+}